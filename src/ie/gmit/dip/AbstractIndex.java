@@ -0,0 +1,560 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ * 
+ * The AbstractIndex class is an abstract class for implementations of the Indexable interface.
+ * <p>
+ * It implements the queries that only need the set of 'headings', the frequency of a 'heading' and the map of word definitions.
+ * The subclasses decide how the 'locators' are stored and count the frequency of every 'heading'.
+ * <p>
+ * The sorted views of the 'headings' are built when they are first queried: the 'headings' sorted alphanumerically (the term dictionary),
+ * sorted by their reversed text and grouped by frequency (the frequency histogram, a sorted map of frequencies and the sorted 'headings' with that frequency).
+ * After that the threads adding 'locators' only record which 'headings' changed, without a lock and without updating a shared sorted structure.
+ * The next query moves only the changed 'headings' to their new frequency, so the 'headings' are never sorted again.
+ * <p>
+ * The subclasses count the occurrences of the 'headings' on their 'locators'. The 'headings' with the most occurrences are selected with a heap.
+ */
+public abstract class AbstractIndex implements Indexable {
+	protected Map<String, List<WordDetails>> wordDefinitions;
+	private volatile SortedTerms terms; // Built by the first query of the sorted 'headings'
+	private Set<String> changed; // The 'headings' with 'locators' added since the terms were updated
+	private final Object termsLock = new Object();
+
+	/**
+	 * Constructs a new AbstractIndex object based on a map of word definitions passed as an argument.
+	 * 
+	 * @param wordDefinitions a map of word definitions
+	 */
+	protected AbstractIndex(Map<String, List<WordDetails>> wordDefinitions) {
+		super();
+		this.wordDefinitions = wordDefinitions;
+		this.changed = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Records that the frequency of the 'heading' changed, so the next query moves it to its new place in the sorted views of the 'headings'.
+	 * The subclasses must call it every time new 'locators' have been added, after the 'locators' and the frequency are updated.
+	 * <p>
+	 * It does nothing until the sorted views are first queried, and it writes only if the 'heading' was not recorded since the last query.
+	 * It does not lock, so it may be called from many threads at once.
+	 *
+	 * @param heading a word
+	 */
+	protected void locatorsAdded(String heading) {
+		if(terms != null && !changed.contains(heading)) changed.add(heading);
+	}
+
+	/**
+	 * Returns the set of 'headings' (the keys of the map of indices).
+	 * The set is not sorted.
+	 * 
+	 * @return set of 'headings'
+	 */
+	protected abstract Set<String> headings();
+
+	/**
+	 * Returns the PageQuery answering the Boolean queries of the index.
+	 * The subclasses may override it, e.g. if the next 'locator' is not always the next page.
+	 * 
+	 * @return a PageQuery of the index
+	 */
+	protected PageQuery pageQuery() {
+		return new PageQuery(this);
+	}
+
+	/** 
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the words definitions as a map of 'headings' and an associated list of 'wordDetails'.
+	 * <p>
+	 * The returned map is an unmodifiable view, it is not copied. It is not sorted.
+	 * The returned map may be empty.
+	 * 
+	 * @return a map of words definitions
+	 * 
+	 */
+	public Map<String, List<WordDetails>> getWordDefinitions() {		
+		return Collections.unmodifiableMap(this.wordDefinitions);
+	}
+	
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the list of 'wordDetails' (dictionary word definitions) of the given 'heading'.
+	 * 
+	 * @param heading a word
+	 * @return list of 'wordDetails' or null if the 'heading' does not exist
+	 * 
+	 */
+	public List<WordDetails> getWordDetails(String heading) {
+		return wordDefinitions.get(heading);
+	}
+
+	/**
+	 * Big-O notation - O(n log(n) + k), where k is the total number of 'locators'
+	 * <p>
+	 * Returns an immutable copy of the index that is optimized for queries (see <code>SealedIndex</code>).
+	 * <p>
+	 * It should be called when no more indices are going to be added, e.g. when parsing is completed.
+	 * 
+	 * @return an immutable Indexable
+	 * 
+	 */
+	public Indexable seal() {
+		return new SealedIndex(this);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns a total number of unique 'headings' (words).
+	 * <p>
+	 * It returns 0 if the map is empty.
+	 * 
+	 * @return int a total number of 'headings'
+	 * 
+	 */
+	public int indicesTotal() {
+		return headings().size();
+	}
+	
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a sorted list of 'headings' in the alphanumeric ascending order.
+	 * The 'headings' are copied from the sorted term dictionary, they are not sorted again.
+	 * 
+	 * @return 'headings' in the alphanumeric ascending order
+	 * 
+	 */
+	public List<String> getHeadingsSetAsc() {
+		return new ArrayList<String>(terms().headings);
+	}
+	
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a sorted list of 'headings' in the alphanumeric descending order.
+	 * The 'headings' are copied from the sorted term dictionary, they are not sorted again.
+	 * 
+	 * @return list of 'headings' in the alphanumeric ascending order
+	 * 
+	 */
+	public List<String> getHeadingsSetDesc() {
+		return new ArrayList<String>(terms().headings.descendingSet());
+	}	
+
+	/**
+	 * Big-O notation - O(c log(n)), where c is the number of 'headings' with 'locators' added since the last query of the sorted 'headings'
+	 * <p>
+	 * Returns the 'headings' as a sorted set in the alphanumeric ascending order.
+	 * <p>
+	 * The returned set is an unmodifiable view of the sorted term dictionary, it is not copied.
+	 * The 'headings' added after it was returned appear in it when a later query of the sorted 'headings' updates the term dictionary.
+	 * Iterating over it, over its descendingSet or over a range (e.g. subSet) takes O(k) for k 'headings'.
+	 * 
+	 * @return sorted set of 'headings'
+	 * 
+	 */
+	public NavigableSet<String> getHeadings() {
+		return terms().headings;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the 'headings' from 'fromHeading' (inclusive) to 'toHeading' (exclusive) as a sorted set in the alphanumeric ascending order.
+	 * <p>
+	 * The returned set is an unmodifiable view of the sorted term dictionary, it is not copied.
+	 * 
+	 * @param fromHeading the lowest 'heading' (inclusive)
+	 * @param toHeading the highest 'heading' (exclusive)
+	 * @return sorted set of 'headings' in the range
+	 * 
+	 */
+	public NavigableSet<String> getHeadingsRange(String fromHeading, String toHeading) {
+		return terms().headings.subSet(fromHeading, true, toHeading, false);
+	}
+	
+	/**
+	 * Big-O notation - O(n + c log(n)), where c is the number of 'headings' with 'locators' added since the last query of the sorted 'headings'
+	 * <p>
+	 * Returns sorted list of 'headings' in an ascending or descending order.
+	 * The 'headings' with the same frequency are sorted in the alphanumeric ascending order.
+	 * <p>
+	 * The 'headings' are read from the frequency histogram, where they are kept sorted by frequency and then alphanumerically, so they are not sorted again.
+	 * 
+	 * @param asc sorts ascending if true
+	 * @return list of 'headings' in the frequency order
+	 */
+	public List<String> sortFrequency(boolean asc) {
+		return getXFrequent(Integer.MAX_VALUE, asc);
+	}
+
+	/**
+	 * Big-O notation - O(k + c log(n)), where k is 'minAmount' and c is the number of 'headings' with 'locators' added since the last query of the sorted 'headings',
+	 * and O(n log(k)) before the sorted 'headings' are first queried
+	 * <p>
+	 * Returns list of 'headings' containing the most or less frequent 'headings' (words).
+	 * The list is in the same order as the one returned by sortFrequency: by frequency, then in the alphanumeric ascending order.
+	 * <p>
+	 * The first parameter sets the number of most or less frequent words returned.
+	 * <p>
+	 * Returns the less frequent 'headings' if the 'lessFrequent' parameter is true. Otherwise returns the most frequent 'headings'.
+	 * <p>
+	 * It walks the frequency histogram from the lowest or the highest frequency and stops after 'minAmount' 'headings'.
+	 * The histogram has no empty frequencies, so it reads at most 'minAmount' frequencies.
+	 * <p>
+	 * If the histogram has not been built yet, e.g. right after parsing, it selects the 'headings' with a heap of 'minAmount' 'headings' instead of building it.
+	 * 
+	 * @param minAmount number of returned 'headings'
+	 * @param lessFrequent if <code>true</code> it returns the less frequent 'headings'. If <code>false</code> it returns the most frequent 'headings'
+	 * @return list of the most or less frequent 'headings'
+	 * 
+	 */
+	public List<String> getXFrequent(int minAmount, boolean lessFrequent) {
+		if(terms == null && minAmount < indicesTotal()) return selectFrequent(minAmount, lessFrequent);
+		List<String> tempList = new ArrayList<String>();
+		synchronized(termsLock) {
+			SortedTerms order = terms();
+			// From the lowest or the highest frequency, each group of the same frequency in the alphanumeric ascending order
+			Collection<TreeSet<String>> buckets = lessFrequent ? order.byFrequency.values() : order.byFrequency.descendingMap().values();
+			for(TreeSet<String> bucket : buckets) {
+				for(String heading : bucket) {
+					if(tempList.size() >= minAmount) return tempList;
+					tempList.add(heading);
+				}
+			}
+		}
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(m + c log(n)), where m is the number of distinct frequencies
+	 * and c is the number of 'headings' with 'locators' added since the last query of the sorted 'headings'
+	 * <p>
+	 * Returns the frequency histogram: a map of frequencies and the number of 'headings' with that frequency.
+	 * Only the frequencies of existing 'headings' are included.
+	 * 
+	 * @return a map of frequencies and number of 'headings' in the ascending order of frequencies
+	 */
+	public SortedMap<Integer, Integer> getFrequencyHistogram() {
+		SortedMap<Integer, Integer> temp = new TreeMap<Integer, Integer>();
+		synchronized(termsLock) {
+			for(Map.Entry<Integer, TreeSet<String>> entry : terms().byFrequency.entrySet()) {
+				temp.put(entry.getKey(), entry.getValue().size());
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns list of 'headings' containing the searched words.
+	 * 
+	 * @param words words to be searched for in the map of indices
+	 * @return list of headings containing the searched words. It may be empty if no words given as an argument were found
+	 * 
+	 */
+	public List<String> getWord(Set<String> words) {
+		List<String> tempList = new ArrayList<String>();
+		for(String word : words) {
+			if(headings().contains(word.toLowerCase())) {
+				tempList.add(word);
+			}
+		}
+		return tempList;
+	}
+	
+	/**
+	 * Big-O notation - O(log(n) + k) for 'a.*' and '.*a' patterns, where k is the number of scanned 'headings', O(n) otherwise
+	 * <p>
+	 * Returns list of 'headings' containing the searched words based on a regex passed to the method as an argument.
+	 * The 'headings' are in the alphanumeric ascending order.
+	 * <p>
+	 * It uses <code>RegexSearch</code> with the sorted 'headings' and the sorted reversed 'headings'.
+	 * 
+	 * @param regex a regular expression that is used for searching a words in the map of indices
+	 * @return list of 'headings' containing the searched words. The size may be 0 if no words were found
+	 * 
+	 */
+	public List<String> getWordsWithRegex(String regex) {
+		synchronized(termsLock) {
+			return new RegexSearch().search(terms(), regex);
+		}
+	}
+
+	/**
+	 * Big-O notation - O(w k log(K)), where w is the number of words, k is the number of 'locators' of the least frequent word
+	 * and K is the number of 'locators' of the most frequent word
+	 * <p>
+	 * Returns the 'locators' containing all the given 'headings' (AND) in the ascending order.
+	 * 
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if there are no words or any of them does not exist
+	 */
+	public int[] getLocatorsAnd(Collection<String> headings) {
+		return pageQuery().and(headings);
+	}
+
+	/**
+	 * Big-O notation - O(w k), where w is the number of words and k is the total number of 'locators' of the words
+	 * <p>
+	 * Returns the 'locators' containing any of the given 'headings' (OR) in the ascending order.
+	 * 
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if none of the words exist
+	 */
+	public int[] getLocatorsOr(Collection<String> headings) {
+		return pageQuery().or(headings);
+	}
+
+	/**
+	 * Big-O notation - O(w^2 k log(K)), where w is the number of words of the phrase
+	 * <p>
+	 * Returns the 'locators' where the given 'headings' may follow each other as a phrase, in the ascending order.
+	 * 
+	 * @param headings the words of the phrase in order
+	 * @return array of 'locators' where the phrase may start
+	 */
+	public int[] getLocatorsAdjacent(List<String> headings) {
+		return pageQuery().adjacent(headings);
+	}
+
+	/**
+	 * Big-O notation - O(q w k log(K)), where q is the number of words of the query
+	 * <p>
+	 * Returns the 'locators' matching a Boolean query, see <code>PageQuery</code>.
+	 * 
+	 * @param query the query
+	 * @return array of 'locators' in the ascending order. It is empty if no 'locators' match the query
+	 */
+	public int[] searchLocators(String query) {
+		return pageQuery().search(query);
+	}
+	
+	/**
+	 * Big-O notation - O(n log(k)), where k is 'amount', if getOccurrences of a 'heading' is O(1)
+	 * <p>
+	 * Returns list of the 'headings' with the most occurrences.
+	 * The list is sorted by the number of occurrences in the descending order, then in the alphanumeric ascending order.
+	 * <p>
+	 * A min-heap keeps the 'amount' 'headings' with the most occurrences found so far, so the 'headings' are not sorted.
+	 * 
+	 * @param amount number of returned 'headings'
+	 * @return list of the most occurring 'headings'
+	 */
+	public List<String> getMostOccurring(int amount) {
+		List<String> tempList = new ArrayList<String>();
+		if(amount <= 0) return tempList;
+		// The root of the heap is the 'heading' that would be dropped first: the fewest occurrences, then the last alphanumerically
+		PriorityQueue<Occurring> heap = new PriorityQueue<Occurring>(Math.min(amount, Math.max(1, headings().size())), new Comparator<Occurring>() {
+			public int compare(Occurring o1, Occurring o2) {
+				if(o1.occurrences != o2.occurrences) return Long.compare(o1.occurrences, o2.occurrences);
+				return o2.heading.compareTo(o1.heading);
+			}
+		});
+		for(String heading : headings()) {
+			Occurring occurring = new Occurring(heading, getOccurrences(heading));
+			if(heap.size() < amount) {
+				heap.add(occurring);
+			}else if(heap.comparator().compare(occurring, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(occurring);
+			}
+		}
+		while(!heap.isEmpty()) {
+			tempList.add(heap.poll().heading);
+		}
+		Collections.reverse(tempList);
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(k + c log(n)), where k is the number of returned 'headings'
+	 * and c is the number of 'headings' with 'locators' added since the last query of the sorted 'headings'
+	 * <p>
+	 * Returns an list o 'headings' containing the searched words based on a frequency passed to the method as an argument.
+	 * The 'headings' are in the alphanumeric ascending order.
+	 * 
+	 * @param freq a frequency 
+	 * @return an list of 'headings' containing the searched words with the given frequency
+	 * 
+	 */
+	public List<String> getWordsGivenFrequency(int freq) {
+		synchronized(termsLock) {
+			TreeSet<String> bucket = terms().byFrequency.get(freq);
+			if(bucket == null) return new ArrayList<String>();
+			return new ArrayList<String>(bucket);
+		}
+	}
+
+	/*
+	 * Returns the 'amount' most or less frequent 'headings' in the order of getXFrequent, without sorting all the 'headings'.
+	 * A heap keeps the 'amount' best 'headings' found so far, its root is the one that would be dropped first.
+	 */
+	private List<String> selectFrequent(int amount, final boolean lessFrequent) {
+		List<String> tempList = new ArrayList<String>();
+		if(amount <= 0) return tempList;
+		// The order of the result: by frequency (ascending for the less frequent), then alphanumeric ascending
+		final Comparator<Frequent> order = new Comparator<Frequent>() {
+			public int compare(Frequent o1, Frequent o2) {
+				int result = Integer.compare(o1.frequency, o2.frequency);
+				if(!lessFrequent) result = -result;
+				if(result != 0) return result;
+				return o1.heading.compareTo(o2.heading);
+			}
+		};
+		PriorityQueue<Frequent> heap = new PriorityQueue<Frequent>(amount, Collections.reverseOrder(order));
+		for(String heading : headings()) {
+			Frequent frequent = new Frequent(heading, getFrequency(heading));
+			if(heap.size() < amount) {
+				heap.add(frequent);
+			}else if(order.compare(frequent, heap.peek()) < 0) { // Better than the worst kept 'heading'
+				heap.poll();
+				heap.add(frequent);
+			}
+		}
+		while(!heap.isEmpty()) {
+			tempList.add(heap.poll().heading);
+		}
+		Collections.reverse(tempList);
+		return tempList;
+	}
+
+	/*
+	 * Returns the sorted views of the 'headings'. They are built by the first query,
+	 * then every query moves only the 'headings' recorded by locatorsAdded to their new frequency.
+	 * The 'headings' added while they are updated are included by the next query.
+	 */
+	private SortedTerms terms() {
+		synchronized(termsLock) {
+			SortedTerms order = terms;
+			if(order == null) {
+				order = new SortedTerms();
+				terms = order; // From now on the threads adding 'locators' record the changed 'headings'
+				for(String heading : headings()) {
+					order.update(heading, getFrequency(heading));
+				}
+				return order;
+			}
+			for(Iterator<String> it = changed.iterator(); it.hasNext();) {
+				String heading = it.next();
+				it.remove(); // Before the frequency is read, so a 'locator' added meanwhile records the 'heading' again
+				order.update(heading, getFrequency(heading));
+			}
+			return order;
+		}
+	}
+
+	/*
+	 * The sorted views of the 'headings': the term dictionary, the 'headings' grouped by frequency and the sorted reversed 'headings'.
+	 * The term dictionary and the reversed 'headings' may be read by many threads at once, the other fields are guarded by termsLock.
+	 * The reversed 'headings' are only used for searching by the end of a word, so they are built by the first search.
+	 */
+	private static class SortedTerms implements RegexSearch.Terms {
+		private NavigableSet<String> dictionary = new ConcurrentSkipListSet<String>();
+		private NavigableSet<String> headings = Collections.unmodifiableNavigableSet(dictionary);
+		private Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		private TreeMap<Integer, TreeSet<String>> byFrequency = new TreeMap<Integer, TreeSet<String>>(); // No empty frequencies
+		private NavigableSet<String> reversedHeadings;
+
+		public void update(String heading, int freq) {
+			Integer previous = frequencies.put(heading, freq);
+			if(previous == null) {
+				dictionary.add(heading);
+				if(reversedHeadings != null) reversedHeadings.add(reverse(heading));
+			}else if(previous.intValue() == freq) {
+				return;
+			}else {
+				TreeSet<String> bucket = byFrequency.get(previous);
+				bucket.remove(heading);
+				if(bucket.isEmpty()) byFrequency.remove(previous);
+			}
+			TreeSet<String> bucket = byFrequency.get(freq);
+			if(bucket == null) {
+				bucket = new TreeSet<String>();
+				byFrequency.put(freq, bucket);
+			}
+			bucket.add(heading);
+		}
+
+		public boolean contains(String heading) {
+			return headings.contains(heading);
+		}
+
+		public Iterable<String> startingWith(String prefix) {
+			return range(headings, prefix);
+		}
+
+		public Iterable<String> reversedStartingWith(String reversedSuffix) {
+			if(reversedHeadings == null) {
+				NavigableSet<String> reversed = new ConcurrentSkipListSet<String>();
+				for(String heading : headings) {
+					reversed.add(reverse(heading));
+				}
+				reversedHeadings = reversed;
+			}
+			return range(reversedHeadings, reversedSuffix);
+		}
+
+		private static String reverse(String heading) {
+			return new StringBuilder(heading).reverse().toString();
+		}
+
+		private static Iterable<String> range(NavigableSet<String> set, String prefix) {
+			if(prefix.isEmpty()) return set;
+			return set.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+		}
+	}
+
+	/*
+	 * A 'heading' with its frequency, an element of the heap of selectFrequent.
+	 */
+	private static class Frequent {
+		private String heading;
+		private int frequency;
+
+		public Frequent(String heading, int frequency) {
+			this.heading = heading;
+			this.frequency = frequency;
+		}
+	}
+
+	/*
+	 * A 'heading' with its number of occurrences, an element of the heap of getMostOccurring.
+	 */
+	private static class Occurring {
+		private String heading;
+		private long occurrences;
+
+		public Occurring(String heading, long occurrences) {
+			this.heading = heading;
+			this.occurrences = occurrences;
+		}
+	}
+
+}
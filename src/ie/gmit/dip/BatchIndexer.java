@@ -0,0 +1,412 @@
+package ie.gmit.dip;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The BatchIndexer class indexes many documents (files and URLs) at once into a <code>CorpusIndex</code>.
+ * <p>
+ * The documents are indexed concurrently by a fixed pool of threads, every document by its own <code>QueryParser</code>.
+ * All the parsers share the same <code>TermTable</code>, so the 'dictionary' and 'ignore words' are loaded once.
+ * The processors are divided between the documents: when many documents are indexed at once, every parser uses fewer threads.
+ * <p>
+ * The documents are added to the corpus in the order of the given paths, so the document ids do not depend on the order in which the documents are completed.
+ * A document that cannot be indexed does not stop the others, its error is returned with the statistics of the documents.
+ * <p>
+ * If checkpoints are set, every indexed document is appended to the <code>IndexLog</code> of the index file
+ * and the corpus is saved to the index file every few documents.
+ * A checkpoint rewrites the whole index file, so the interval grows with the corpus (see setCheckpoints)
+ * and the total size of all the checkpoints is linear in the size of the final index file, not quadratic.
+ * An interrupted batch is resumed by recovering the corpus (see IndexLog.recover) and indexing the same documents again:
+ * the documents that the corpus already has are skipped.
+ * The parts of the documents are logged while the documents are being parsed (see QueryParser setLog),
+ * so the documents that were being indexed during a crash are indexed again only from the parts that have not been logged.
+ * <p>
+ * It may also be run from the command prompt, e.g. as a nightly job:
+ * java -cp .\indexer.jar ie.gmit.dip.BatchIndexer [-index corpus.idx] books [book.txt] [http://...]
+ */
+public class BatchIndexer {
+	/**
+	 * The default minimum number of documents between checkpoints.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 50;
+	private TermTable terms;
+	private CorpusIndex corpus;
+	private int documentsNumber = Runtime.getRuntime().availableProcessors();
+	private String indexPath; // null if there are no checkpoints
+	private int checkpointInterval;
+	private int skippedTotal;
+	private boolean positional;
+
+	/**
+	 * Creates a new BatchIndexer object that adds the documents to a new empty CorpusIndex.
+	 *
+	 * @param terms the words of a 'dictionary' that are not 'ignore words'
+	 */
+	public BatchIndexer(TermTable terms) {
+		this(terms, new CorpusIndex());
+	}
+
+	/**
+	 * Creates a new BatchIndexer object that adds the documents to the given CorpusIndex, e.g. a corpus of previously indexed documents.
+	 *
+	 * @param terms the words of a 'dictionary' that are not 'ignore words'
+	 * @param corpus the corpus that the documents are added to
+	 */
+	public BatchIndexer(TermTable terms, CorpusIndex corpus) {
+		super();
+		this.terms = terms;
+		this.corpus = corpus;
+	}
+
+	/**
+	 * Sets the number of documents indexed at once, i.e. the size of the pool of threads.
+	 * The default is the number of available processors.
+	 *
+	 * @param documentsNumber number of documents indexed at once, must be greater than 0
+	 */
+	public void setDocumentsNumber(int documentsNumber) {
+		if(documentsNumber < 1) throw new IllegalArgumentException("The number of documents must be greater than 0");
+		this.documentsNumber = documentsNumber;
+	}
+
+	/**
+	 * Sets the positional mode: every document is parsed in the positional mode (see QueryParser setPositional)
+	 * and added to the corpus with its <code>PositionalIndex</code>, so the phrases of its pages are found by the positions of the words.
+	 * The positions are not logged nor saved by the checkpoints, so the parts of the documents are not logged in the positional mode.
+	 *
+	 * @param positional true to record the positions of the words
+	 */
+	public void setPositional(boolean positional) {
+		this.positional = positional;
+	}
+
+	/**
+	 * Sets the checkpoints: the documents are logged to the IndexLog of the index file and the corpus is saved to the index file
+	 * when the batch is completed and whenever the number of documents logged since the last checkpoint reaches
+	 * 'checkpointInterval' or the number of documents saved by the last checkpoint, whichever is greater.
+	 * The interval doubles as the corpus grows, so a batch of n documents takes O(log(n)) checkpoints that write O(n) documents in total,
+	 * instead of n / checkpointInterval checkpoints that write O(n^2 / checkpointInterval) documents.
+	 * The log never has more documents than the index file, except during the first interval, so the recovery is not slower than the load.
+	 * <p>
+	 * The documents whose names are already in the corpus are skipped, so an interrupted batch may be resumed.
+	 * The corpus should be recovered from the same index file, see IndexLog.recover.
+	 *
+	 * @param indexPath the path of the index file
+	 * @param checkpointInterval minimum number of documents between checkpoints, must be greater than 0
+	 */
+	public void setCheckpoints(String indexPath, int checkpointInterval) {
+		if(checkpointInterval < 1) throw new IllegalArgumentException("The checkpoint interval must be greater than 0");
+		this.indexPath = indexPath;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Returns the number of documents skipped by the last batch, because they were already in the corpus.
+	 * Documents are skipped only if checkpoints are set.
+	 *
+	 * @return number of skipped documents
+	 */
+	public int getSkippedTotal() {
+		return skippedTotal;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the corpus that the documents are added to.
+	 *
+	 * @return the CorpusIndex
+	 */
+	public CorpusIndex getCorpus() {
+		return corpus;
+	}
+
+	/**
+	 * Big-O notation - O(n), where n is the total size of the documents
+	 * <p>
+	 * Indexes the documents and adds them to the corpus in the given order.
+	 * A path is a URL if it starts with "http://" or "https://", otherwise it is a local file encoded in UTF-8.
+	 * <p>
+	 * It returns when all the documents are indexed or failed.
+	 * If checkpoints are set, the records of the log are committed in groups: whenever the next document is not completed yet,
+	 * all the documents logged before are forced to the disk at once.
+	 * The parts of the documents being parsed are logged and committed by the parsers in the meantime.
+	 *
+	 * @param paths the paths of the files and the URLs of the documents
+	 * @return the statistics of every document that has not been skipped, in the given order
+	 * @throws InterruptedException if the thread is interrupted while waiting for the documents
+	 * @throws IOException if the log or the index file cannot be written
+	 */
+	public List<Statistics> index(List<String> paths) throws InterruptedException, IOException {
+		IndexLog log = null;
+		if(indexPath != null) {
+			Set<String> indexed = new HashSet<String>();
+			for(int id = 0; id < corpus.documentsTotal(); id++) {
+				indexed.add(corpus.getDocumentName(id));
+			}
+			List<String> temp = new ArrayList<String>(paths.size());
+			for(String path : paths) {
+				if(!indexed.contains(path)) temp.add(path);
+			}
+			skippedTotal = paths.size() - temp.size();
+			paths = temp;
+			log = new IndexLog(indexPath + IndexLog.EXTENSION);
+		}
+		int poolSize = Math.max(1, Math.min(documentsNumber, paths.size()));
+		final int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / poolSize);
+		ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+		final IndexLog partsLog = log;
+		List<Statistics> statistics = new ArrayList<Statistics>(paths.size());
+		try {
+			List<Future<Statistics>> futures = new ArrayList<Future<Statistics>>(paths.size());
+			for(final String path : paths) {
+				futures.add(pool.submit(new Callable<Statistics>() {
+					public Statistics call() throws Exception {
+						return indexDocument(path, parserThreads, partsLog);
+					}
+				}));
+			}
+			int logged = 0; // Documents logged since the last checkpoint
+			int interval = Math.max(checkpointInterval, corpus.documentsTotal());
+			for(int i = 0; i < futures.size(); i++) {
+				if(log != null && !futures.get(i).isDone()) log.commit(); // Group commit before waiting
+				Statistics document;
+				try {
+					document = futures.get(i).get();
+				}catch(ExecutionException e) {
+					document = new Statistics(paths.get(i));
+					document.error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+				if(document.error == null) {
+					document.documentId = corpus.addDocument(document.name, document.index, document.positions);
+					if(log != null) {
+						log.append(document.documentId, document.name, document.index);
+						if(++logged >= interval) {
+							log.checkpoint(corpus, indexPath);
+							logged = 0;
+							interval = Math.max(checkpointInterval, corpus.documentsTotal()); // Grows with the saved corpus
+						}
+					}
+				}
+				document.index = null; // Kept by the corpus
+				document.positions = null;
+				statistics.add(document);
+			}
+			if(log != null) log.checkpoint(corpus, indexPath); // Includes the documents recovered from the log of an interrupted batch
+		}finally {
+			pool.shutdownNow();
+			if(log != null) log.close();
+		}
+		return statistics;
+	}
+
+	/**
+	 * Big-O notation - O(n log(n)), where n is the number of files in the directories
+	 * <p>
+	 * Returns the paths of the documents: the paths of the files with the '.txt' extension in the given directories
+	 * (not in their subdirectories), in the alphanumeric order of their names, and the other given paths of files and URLs.
+	 *
+	 * @param paths the paths of directories, files and URLs
+	 * @return list of the paths of the documents
+	 * @throws FileNotFoundException if a given path is neither a URL nor an existing file or directory
+	 */
+	public static List<String> documents(List<String> paths) throws FileNotFoundException {
+		List<String> temp = new ArrayList<String>();
+		for(String path : paths) {
+			if(isURL(path)) {
+				temp.add(path);
+				continue;
+			}
+			File file = new File(path);
+			if(file.isDirectory()) {
+				File[] files = file.listFiles();
+				if(files == null) throw new FileNotFoundException(path + " cannot be read");
+				Arrays.sort(files);
+				for(File f : files) {
+					if(f.isFile() && f.getName().endsWith(".txt")) temp.add(f.getPath());
+				}
+			}else if(file.isFile()) {
+				temp.add(path);
+			}else {
+				throw new FileNotFoundException(path + " (No such file or directory)");
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Indexes the documents given as arguments and displays the statistics of every document.
+	 * The default dictionary and ignore words are used: ./dictionary.csv and ./stopwords.txt.
+	 *
+	 * @param args the paths of directories, files and URLs
+	 * @throws Exception if the dictionary cannot be loaded or a path does not exist
+	 */
+	public static void main(String[] args) throws Exception {
+		List<String> paths = new ArrayList<String>(Arrays.asList(args));
+		String index = null;
+		if(paths.size() > 1 && paths.get(0).equals("-index")) {
+			index = paths.get(1);
+			paths = paths.subList(2, paths.size());
+		}
+		if(paths.isEmpty()) {
+			System.out.println("Usage: BatchIndexer [-index corpus" + IndexFile.EXTENSION + "] directory | book.txt | URL ...");
+			return;
+		}
+		DictionaryCache dictionaryCache = new DictionaryCache();
+		new DictionaryCompiler().compileIfModified("./dictionary.csv", "./dictionary" + DictionaryCompiler.EXTENSION);
+		TermTable terms = dictionaryCache.getTermTable("./stopwords.txt", "./dictionary" + DictionaryCompiler.EXTENSION);
+		BatchIndexer batch;
+		if(index != null) {
+			// Resume from the last checkpoint and the log of the previous run, if it was interrupted
+			batch = new BatchIndexer(terms, IndexLog.recover(index, dictionaryCache.getDictionary("./dictionary" + DictionaryCompiler.EXTENSION)));
+			batch.setCheckpoints(index, CHECKPOINT_INTERVAL);
+		}else {
+			batch = new BatchIndexer(terms);
+		}
+		long start = System.nanoTime();
+		List<Statistics> statistics = batch.index(documents(paths));
+		new IndexOutput().printStatistics(statistics, batch.getCorpus(), System.nanoTime() - start);
+		if(batch.getSkippedTotal() > 0) System.out.println(batch.getSkippedTotal() + " documents were already indexed and have been skipped.");
+	}
+
+	/*
+	 * Indexes one document with its own QueryParser and returns its statistics with its index.
+	 * The parts of the document are logged if the log is not null.
+	 */
+	private Statistics indexDocument(String path, int parserThreads, IndexLog log) throws Exception {
+		Statistics document = new Statistics(path);
+		long start = System.nanoTime();
+		QueryParser parser = new QueryParser(terms);
+		parser.setThreadsNumber(parserThreads);
+		parser.setPositional(positional);
+		parser.setLog(log, path);
+		if(isURL(path)) {
+			parser.parse(parser.openBufferReader(path, true));
+		}else {
+			parser.parseFile(path);
+		}
+		document.index = parser.getIndexer();
+		document.positions = parser.getPositionalIndex();
+		document.time = System.nanoTime() - start;
+		document.wordsTotal = parser.getWordsTotal();
+		document.bytesRead = parser.getBytesRead();
+		document.uniqueWords = document.index.indicesTotal();
+		return document;
+	}
+
+	/*
+	 * Returns true if the path is a URL.
+	 */
+	private static boolean isURL(String path) {
+		return path.startsWith("http://") || path.startsWith("https://");
+	}
+
+	/**
+	 * The Statistics class holds the result of indexing one document.
+	 */
+	public static class Statistics {
+		private String name;
+		private int documentId = -1;
+		private long time;
+		private long wordsTotal;
+		private long bytesRead;
+		private int uniqueWords;
+		private Exception error;
+		private Indexable index;
+		private PositionalIndex positions;
+
+		private Statistics(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the path of the file or the URL of the document.
+		 *
+		 * @return the name of the document
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the id of the document in the corpus.
+		 *
+		 * @return the id of the document or -1 if the document has not been indexed
+		 */
+		public int getDocumentId() {
+			return documentId;
+		}
+
+		/**
+		 * Returns the time of indexing the document in nanoseconds, including reading or downloading it.
+		 *
+		 * @return time in nanoseconds
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Returns the number of words (tokens) read.
+		 *
+		 * @return number of words read
+		 */
+		public long getWordsTotal() {
+			return wordsTotal;
+		}
+
+		/**
+		 * Returns the number of words (tokens) read per second.
+		 *
+		 * @return words per second, 0 if the document has not been indexed
+		 */
+		public double getWordsPerSecond() {
+			if(time == 0) return 0;
+			return wordsTotal * 1_000_000_000.0 / time;
+		}
+
+		/**
+		 * Returns the number of bytes read or downloaded.
+		 *
+		 * @return number of bytes
+		 */
+		public long getBytesRead() {
+			return bytesRead;
+		}
+
+		/**
+		 * Returns the number of unique 'headings' (words) of the document.
+		 *
+		 * @return number of 'headings'
+		 */
+		public int getUniqueWords() {
+			return uniqueWords;
+		}
+
+		/**
+		 * Returns the reason why the document has not been indexed.
+		 *
+		 * @return an exception or null if the document has been indexed
+		 */
+		public Exception getError() {
+			return error;
+		}
+	}
+
+}
@@ -0,0 +1,239 @@
+package ie.gmit.dip;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The CompactIndex is an implementation of Indexable interface that stores 'locators' as primitive ints.
+ * <p>
+ * It behaves like the <code>Index</code>, but the set of 'locators' of a 'heading' is a <code>Postings</code> object instead of a set of boxed Integers:
+ * - <code>IntPostings</code>, sorted arrays of ints, 8 bytes per 'locator' with its count (default)
+ * - <code>CompressedPostings</code>, gaps between 'locators' and counts as variable-byte integers, about 2 or 3 bytes per 'locator' with its count
+ * <p>
+ * The Postings count the occurrences of the 'heading' on every 'locator', so the number of occurrences is not lost when a 'locator' is added again.
+ * <p>
+ * Both are suitable for indexing large texts.
+ * <p>
+ * It is safe to add indices from many threads at once.
+ */
+public class CompactIndex extends AbstractIndex {
+	private Map<String, Postings> indices;
+	private boolean compressed;
+
+	/**
+	 * Creates a new CompactIndex object with an empty map of indices and a map wordDefinitions.
+	 * The 'locators' are stored as arrays of ints.
+	 */
+	public CompactIndex() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new CompactIndex object with an empty map of indices and a map wordDefinitions.
+	 * 
+	 * @param compressed if <code>true</code> the 'locators' are compressed, otherwise they are stored as arrays of ints
+	 */
+	public CompactIndex(boolean compressed) {
+		super(new ConcurrentHashMap<String, List<WordDetails>>());
+		this.indices = new ConcurrentHashMap<String, Postings>();
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Big-O notation - O(1) for the next page, O(k) otherwise, where k is the number of 'locators'
+	 * <p>
+	 * Returns true if the 'heading' and associated 'locator' and 'wordDetails' was successfully added to the map of indices.
+	 * If the index already exists in the map, it adds a 'locator' (e.g. page or line) to the corresponding set of 'locators'.
+	 * <p>
+	 * It returns false if the 'locator' already existed in a associated set of 'locators'. The occurrence is counted in both cases.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param wordDetails word details
+	 * @return true if the 'heading' and 'locator' was added to the map of indices,
+	 * 			true if 'locator' was added to the set of 'locators',
+	 * 			otherwise false
+	 */
+	public boolean addIndex(String heading, Integer locator, List<WordDetails> wordDetails) {
+		return addIndex(heading, locator.intValue(), 1, wordDetails);
+	}
+
+	/**
+	 * Big-O notation - O(1) for the next page, O(k) otherwise, where k is the number of 'locators'
+	 * <p>
+	 * Returns true if the 'heading' and associated 'locator' and 'wordDetails' was successfully added to the map of indices.
+	 * It adds the given number of occurrences to the count of the 'locator' at once.
+	 * <p>
+	 * It returns false if the 'locator' already existed in a associated set of 'locators'.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param count the number of occurrences on the 'locator', greater than 0
+	 * @param wordDetails word details
+	 * @return true if the 'locator' was added to the set of 'locators', otherwise false
+	 */
+	public boolean addIndex(String heading, int locator, int count, List<WordDetails> wordDetails) {
+		Postings locators = indices.get(heading);
+		if(locators == null) {
+			wordDefinitions.putIfAbsent(heading, wordDetails); // Add wordDetails before the 'heading' becomes visible
+			locators = indices.computeIfAbsent(heading, k -> compressed ? new CompressedPostings() : new IntPostings());
+		}
+		if(!locators.add(locator, count)) return false;
+		locatorsAdded(heading);
+		return true;
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Returns the indices as a map of 'headings' and associated set of 'locators'.
+	 * <p>
+	 * The 'locators' are boxed to Integers, so the method should be used only if a map is needed.
+	 * Use getLocators to read 'locators' of a single 'heading'.
+	 * <p>
+	 * The returned map may be empty.
+	 *
+	 * @return a map of 'headings' and associated set of 'locators'
+	 *
+	 */
+	public Map<String, Set<Integer>> getIndices() {
+		Map<String, Set<Integer>> temp = new TreeMap<String, Set<Integer>>();
+		for(Map.Entry<String, Postings> entry : indices.entrySet()) {
+			Set<Integer> locators = new TreeSet<Integer>();
+			for(int locator : entry.getValue().toArray()) {
+				locators.add(locator);
+			}
+			temp.put(entry.getKey(), locators);
+		}
+		return temp;
+	}
+
+
+	/**
+	 * Big-O notation - O(k), where k is the number of 'locators'
+	 * <p>
+	 * Returns the 'locators' of the given 'heading' in the ascending order.
+	 *
+	 * @param heading a word
+	 * @return array of 'locators'. It is empty if the 'heading' does not exist
+	 *
+	 */
+	public int[] getLocators(String heading) {
+		Postings locators = indices.get(heading);
+		if(locators == null) return new int[0];
+		return locators.toArray();
+	}
+
+	/**
+	 * Big-O notation - O(k), where k is the number of 'locators'
+	 * <p>
+	 * Returns the counts of the 'locators' of the given 'heading' in the order of the 'locators'.
+	 *
+	 * @param heading a word
+	 * @return array of counts. It is empty if the 'heading' does not exist
+	 */
+	public int[] getCounts(String heading) {
+		Postings locators = indices.get(heading);
+		if(locators == null) return new int[0];
+		return locators.counts();
+	}
+
+	/**
+	 * Big-O notation - O(log(k)), where k is the number of 'locators'
+	 * <p>
+	 * Returns the number of occurrences of the given 'heading' on the given 'locator'.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @return number of occurrences, 0 if the 'heading' is not on the 'locator'
+	 */
+	public int getOccurrences(String heading, int locator) {
+		Postings locators = indices.get(heading);
+		if(locators == null) return 0;
+		return locators.count(locator);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the total number of occurrences of the given 'heading'. It is counted when the occurrences are added.
+	 *
+	 * @param heading a word
+	 * @return number of occurrences, 0 if the 'heading' does not exist
+	 */
+	public long getOccurrences(String heading) {
+		Postings locators = indices.get(heading);
+		if(locators == null) return 0;
+		return locators.occurrences();
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the frequency for the given 'heading' (word): the number of its 'locators'.
+	 *
+	 * @param heading a word
+	 * @return frequency of the given 'headings'
+	 */
+	public int getFrequency(String heading) {
+		Postings locators = indices.get(heading);
+		return locators == null ? 0 : locators.size();
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns an iterator over the 'locators' of the given 'heading' in the ascending order.
+	 * The compressed 'locators' are decoded by the iterator and skipped with their skip pointers.
+	 *
+	 * @param heading a word
+	 * @return iterator over the 'locators'. It has no 'locators' if the 'heading' does not exist
+	 */
+	public PostingsIterator getLocatorsIterator(String heading) {
+		Postings locators = indices.get(heading);
+		if(locators == null) return IntPostings.iterator(new int[0], 0, 0);
+		return locators.iterator();
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the set of 'locators' of the given 'heading'.
+	 * It may be used to iterate over the 'locators' without copying them, e.g. for an intersection of sets of 'locators'.
+	 * 
+	 * @param heading a word
+	 * @return set of 'locators' or null if the 'heading' does not exist
+	 * 
+	 */
+	public Postings getPostings(String heading) {
+		return indices.get(heading);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Releases the unused capacity of all the sets of 'locators'.
+	 * It should be called when no more indices are going to be added.
+	 */
+	public void trimToSize() {
+		for(Postings locators : indices.values()) {
+			locators.trimToSize();
+		}
+	}
+
+	/*
+	 * Returns the set of 'headings'.
+	 */
+	protected Set<String> headings() {
+		return indices.keySet();
+	}
+
+}
@@ -0,0 +1,389 @@
+package ie.gmit.dip;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The CompressedPostings class is an implementation of Postings interface that stores 'locators' compressed.
+ * <p>
+ * The 'locators' are kept in the ascending order, so only the gap (delta) to the previous 'locator' is stored.
+ * The gap is written as a variable-byte integer: 7 bits per byte, the highest bit set if more bytes follow.
+ * A gap lower than 128 takes a single byte, so a word that appears on most pages takes about 2 bytes per 'locator' with its count.
+ * <p>
+ * The count of a 'locator' (the number of occurrences on it) follows its gap as another variable-byte integer, usually a single byte.
+ * The count of the last 'locator' is written again when it is incremented, so a word repeated on the page being read is not re-encoded.
+ * <p>
+ * Every 64 'locators' a skip pointer is saved: the 'locator' preceding the block and the offset of the block.
+ * The contains method and the advance method of the iterator use the skip pointers,
+ * so at most one block of 64 'locators' is decoded instead of the whole set.
+ * The number of 'locators' is stored, so size is O(1).
+ * <p>
+ * Adding a 'locator' greater than the last one is an append. Other 'locators' are inserted (or their counts incremented) by re-encoding the set.
+ * All the methods are synchronized, so the object may be shared by many threads.
+ */
+public class CompressedPostings implements Postings {
+	private static final int SKIP_INTERVAL = 64;
+	private byte[] data;
+	private int length;
+	private int size;
+	private int last;
+	private int lastCount; // offset of the count of the last 'locator' in 'data'
+	private long occurrences;
+	private int[] skipLocators; // 'locator' preceding each block
+	private int[] skipOffsets; // offset of each block in 'data'
+
+	/**
+	 * Creates a new empty CompressedPostings object.
+	 */
+	public CompressedPostings() {
+		super();
+		this.data = new byte[4];
+		this.skipLocators = new int[1];
+		this.skipOffsets = new int[1];
+	}
+
+	/**
+	 * Big-O notation - O(1) for appending, O(n) for inserting
+	 * <p>
+	 * Adds an occurrence on a 'locator' to the set of 'locators'. If the 'locator' already exists, its count is incremented.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public boolean add(int locator) {
+		return add(locator, 1);
+	}
+
+	/**
+	 * Big-O notation - O(1) for appending or for the last 'locator', O(n) otherwise
+	 * <p>
+	 * Adds the given number of occurrences on a 'locator' to the set of 'locators'. If the 'locator' already exists, the number is added to its count.
+	 *
+	 * @param locator a page number
+	 * @param count the number of occurrences, greater than 0
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public synchronized boolean add(int locator, int count) {
+		occurrences += count;
+		if(size == 0 || locator > last) { // Append fast path
+			append(locator, count);
+			return true;
+		}
+		if(locator == last) { // The same page again: only the last count is written again
+			int total = readVarInt(data, new int[] {lastCount}) + count;
+			ensureCapacity(lastCount + 5);
+			length = writeVarInt(data, lastCount, total);
+			return false;
+		}
+		// Insert or increment: decode, update and encode again. Pages are read in order, so it is rare.
+		int[] tempLocators = toArray();
+		int[] tempCounts = counts();
+		int pos = Arrays.binarySearch(tempLocators, locator);
+		clear();
+		if(pos >= 0) {
+			tempCounts[pos] += count;
+			for(int i = 0; i < tempLocators.length; i++) append(tempLocators[i], tempCounts[i]);
+			return false;
+		}
+		pos = -pos - 1;
+		for(int i = 0; i < pos; i++) append(tempLocators[i], tempCounts[i]);
+		append(locator, count);
+		for(int i = pos; i < tempLocators.length; i++) append(tempLocators[i], tempCounts[i]);
+		return true;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns true if the set contains the given 'locator'.
+	 * Only the block of 'locators' that may contain the given 'locator' is decoded.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' exists, otherwise false
+	 */
+	public synchronized boolean contains(int locator) {
+		return count(locator) > 0;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the number of occurrences on the given 'locator'.
+	 * Only the block of 'locators' that may contain the given 'locator' is decoded.
+	 *
+	 * @param locator a page number
+	 * @return the count of the 'locator', 0 if it does not exist
+	 */
+	public synchronized int count(int locator) {
+		if(size == 0 || locator > last) return 0;
+		int block = findBlock(locator);
+		int offset = skipOffsets[block];
+		int value = skipLocators[block];
+		int end = Math.min(size, (block + 1) * SKIP_INTERVAL);
+		int[] pos = new int[] {offset};
+		for(int i = block * SKIP_INTERVAL; i < end; i++) {
+			value += readVarInt(data, pos);
+			int count = readVarInt(data, pos);
+			if(value >= locator) return value == locator ? count : 0;
+		}
+		return 0;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of 'locators'.
+	 *
+	 * @return number of 'locators'
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the total number of occurrences on all the 'locators'. It is counted when the occurrences are added.
+	 *
+	 * @return number of occurrences
+	 */
+	public synchronized long occurrences() {
+		return occurrences;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a copy of the 'locators' in the ascending order.
+	 *
+	 * @return array of 'locators'
+	 */
+	public synchronized int[] toArray() {
+		int[] temp = new int[size];
+		int[] pos = new int[1];
+		int value = 0;
+		for(int i = 0; i < size; i++) {
+			value += readVarInt(data, pos);
+			readVarInt(data, pos); // The count
+			temp[i] = value;
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a copy of the counts in the order of the 'locators'.
+	 *
+	 * @return array of counts
+	 */
+	public synchronized int[] counts() {
+		int[] temp = new int[size];
+		int[] pos = new int[1];
+		for(int i = 0; i < size; i++) {
+			readVarInt(data, pos); // The gap
+			temp[i] = readVarInt(data, pos);
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns an iterator over the 'locators' in the ascending order.
+	 * The advance method of the iterator uses the skip pointers.
+	 * <p>
+	 * The set must not be modified while the iterator is used.
+	 *
+	 * @return iterator over the 'locators'
+	 */
+	public synchronized PostingsIterator iterator() {
+		return new Iterator();
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Releases the unused capacity of the underlying arrays.
+	 */
+	public synchronized void trimToSize() {
+		if(data.length > length) data = Arrays.copyOf(data, length);
+		int blocks = blocks();
+		if(skipLocators.length > blocks) {
+			skipLocators = Arrays.copyOf(skipLocators, blocks);
+			skipOffsets = Arrays.copyOf(skipOffsets, blocks);
+		}
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of bytes taken by the compressed 'locators' with their counts and the skip pointers.
+	 *
+	 * @return number of bytes
+	 */
+	public synchronized int bytesUsed() {
+		return length + blocks() * 8;
+	}
+
+	/**
+	 * Writes an int as a variable-byte integer to the array at the given offset.
+	 * The value is treated as unsigned. The array must have at least 5 bytes left.
+	 *
+	 * @param buffer the array
+	 * @param offset the offset in the array
+	 * @param value the value to be written
+	 * @return the offset after the written bytes
+	 */
+	static int writeVarInt(byte[] buffer, int offset, int value) {
+		while((value & ~0x7F) != 0) {
+			buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Reads a variable-byte integer from the array.
+	 * The first element of 'pos' is the offset in the array. It is moved after the read bytes.
+	 *
+	 * @param buffer the array
+	 * @param pos a single element array with the offset
+	 * @return the read value
+	 */
+	static int readVarInt(byte[] buffer, int[] pos) {
+		int offset = pos[0];
+		int b = buffer[offset++];
+		int value = b & 0x7F;
+		for(int shift = 7; (b & 0x80) != 0; shift += 7) {
+			b = buffer[offset++];
+			value |= (b & 0x7F) << shift;
+		}
+		pos[0] = offset;
+		return value;
+	}
+
+	/*
+	 * Appends a 'locator' greater than the last one and its count. It saves a skip pointer at the start of each block.
+	 */
+	private void append(int locator, int count) {
+		if(size % SKIP_INTERVAL == 0) {
+			int block = size / SKIP_INTERVAL;
+			if(block == skipLocators.length) {
+				skipLocators = Arrays.copyOf(skipLocators, block * 2);
+				skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+			}
+			skipLocators[block] = size == 0 ? 0 : last;
+			skipOffsets[block] = length;
+		}
+		ensureCapacity(length + 10);
+		length = writeVarInt(data, length, locator - (size == 0 ? 0 : last));
+		lastCount = length;
+		length = writeVarInt(data, length, count);
+		last = locator;
+		size++;
+	}
+
+	/*
+	 * Grows the array of bytes by half of its size when it is too small.
+	 */
+	private void ensureCapacity(int capacity) {
+		if(capacity > data.length) {
+			data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+		}
+	}
+
+	/*
+	 * Removes all the 'locators' before they are encoded again. The total number of occurrences is kept.
+	 */
+	private void clear() {
+		length = 0;
+		size = 0;
+		last = 0;
+	}
+
+	/*
+	 * Returns the number of blocks.
+	 */
+	private int blocks() {
+		return (size + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+	}
+
+	/*
+	 * Returns the last block whose preceding 'locator' is lower than the given 'locator'.
+	 * The first block has no preceding 'locator', so it is returned if there is no such block.
+	 */
+	private int findBlock(int locator) {
+		int low = 1;
+		int high = blocks() - 1;
+		int block = 0;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(skipLocators[mid] < locator) {
+				block = mid;
+				low = mid + 1;
+			}else {
+				high = mid - 1;
+			}
+		}
+		return block;
+	}
+
+	/*
+	 * Iterator over the compressed 'locators'. It decodes a 'locator' at a time.
+	 */
+	private class Iterator implements PostingsIterator {
+		private int index; // index of the next 'locator'
+		private int[] pos = new int[1]; // offset of the next 'locator'
+		private int value; // the 'locator' preceding the next one
+		private int peeked;
+		private boolean hasPeeked;
+
+		public boolean hasNext() {
+			return hasPeeked || index < size;
+		}
+
+		public int next() {
+			if(hasPeeked) {
+				hasPeeked = false;
+				return peeked;
+			}
+			if(index >= size) throw new NoSuchElementException();
+			value += readVarInt(data, pos);
+			readVarInt(data, pos); // The count
+			index++;
+			return value;
+		}
+
+		public boolean advance(int target) {
+			if(hasPeeked && peeked >= target) return true;
+			hasPeeked = false;
+			if(index >= size || target > last) {
+				index = size;
+				return false;
+			}
+			// Jump to the block of the target if it is ahead of the current position
+			int block = findBlock(target);
+			if(block * SKIP_INTERVAL > index) {
+				index = block * SKIP_INTERVAL;
+				pos[0] = skipOffsets[block];
+				value = skipLocators[block];
+			}
+			while(index < size) {
+				int next = next();
+				if(next >= target) {
+					peeked = next;
+					hasPeeked = true;
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,739 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The CorpusIndex is an implementation of Indexable interface for many documents, e.g. a collection of e-books.
+ * <p>
+ * A document is indexed on its own (e.g. by <code>QueryParser</code>) and added to the corpus with an id: 0 for the first document, 1 for the second and so on.
+ * The documents can be added one by one at any time, the corpus is never rebuilt.
+ * <p>
+ * A 'locator' of the corpus is a pair of a document id and a page of the document.
+ * Every document takes a range of 'locators' following the range of the previous document, so the pair is stored as a single int:
+ * the 'locator' of a page is the first 'locator' of its document plus the page number.
+ * The documentOf and pageOf methods return the document id and the page of a 'locator'.
+ * <p>
+ * The 'locators' are stored in segments. A segment is an immutable <code>SealedIndex</code> of a range of adjacent documents:
+ * the sorted 'headings' and the 'locators' of the corpus. An added document becomes a new segment, so adding a document takes time
+ * proportional to the size of its index, not to the size of the corpus. A query reads every segment and concatenates the 'locators',
+ * which are already sorted because the segments follow each other.
+ * <p>
+ * The small segments are merged into larger ones by a background thread, as decided by the <code>MergePolicy</code>,
+ * so there are about log(n) segments and the time of a query does not grow with the number of documents.
+ * A merged segment replaces the merged ones at once, the queries never see a partially merged corpus.
+ * <p>
+ * It also stores the frequency of every 'heading' in the whole corpus, i.e. the number of pages of all the documents.
+ * The segments keep the count of every 'locator', so the occurrences of a 'heading' in the corpus are the sum of its occurrences in the segments.
+ * <p>
+ * A document may be added with the <code>PositionalIndex</code> of its text. Then its phrases and words near each other are found by their positions,
+ * the other documents are searched by their pages (see PageQuery). The positional indices are kept in memory only, they are not saved with the corpus.
+ * <p>
+ * The queries of the Indexable interface are answered for the whole corpus. It is safe to query it from many threads at once,
+ * while a document is being added and while the segments are being merged.
+ */
+public class CorpusIndex extends AbstractIndex {
+	private Map<String, AtomicInteger> frequencies; // the number of pages of every 'heading' in all the documents
+	private volatile Segment[] segments = new Segment[0]; // Replaced by a new array, never modified
+	private String[] names = new String[4];
+	private int[] headingsTotals = new int[4]; // the number of 'headings' of every document
+	private int[] firstLocators = new int[5]; // the first 'locator' of every document, followed by the first 'locator' of the next document
+	private PositionalIndex[] positionalIndices = new PositionalIndex[0]; // null for a document without positions
+	private volatile int size;
+	private MergePolicy mergePolicy = new MergePolicy();
+	private ExecutorService merger; // Created with the first merge
+	private boolean merging;
+
+	/**
+	 * Creates a new CorpusIndex object without any documents.
+	 */
+	public CorpusIndex() {
+		super(new ConcurrentHashMap<String, List<WordDetails>>());
+		this.frequencies = new ConcurrentHashMap<String, AtomicInteger>();
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of the document
+	 * <p>
+	 * Adds a document to the corpus as a new segment and returns its id.
+	 * <p>
+	 * The 'headings', the 'locators' and their counts of the document are copied, so the document may be modified or discarded afterwards.
+	 *
+	 * @param name the name of the document, e.g. the path of a file or a URL
+	 * @param document the index of the document, its 'locators' are page numbers (not negative)
+	 * @return the id of the document
+	 * @throws IllegalArgumentException if the document has a negative 'locator'
+	 * @throws IllegalStateException if the 'locators' of the corpus exceed the range of ints
+	 */
+	public synchronized int addDocument(String name, Indexable document) {
+		return addDocument(name, document, null);
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of the document
+	 * <p>
+	 * Adds a document to the corpus as a new segment, together with the positional index of its text, and returns its id.
+	 * The phrases and the words near each other are found in the document by the positions of the words.
+	 * <p>
+	 * The 'headings', the 'locators' and their counts of the document are copied. The positional index is immutable, so it is not copied.
+	 *
+	 * @param name the name of the document, e.g. the path of a file or a URL
+	 * @param document the index of the document, its 'locators' are page numbers (not negative)
+	 * @param positions the positional index of the same text (see QueryParser.getPositionalIndex), or null if there is none
+	 * @return the id of the document
+	 * @throws IllegalArgumentException if the document has a negative 'locator'
+	 * @throws IllegalStateException if the 'locators' of the corpus exceed the range of ints
+	 */
+	public synchronized int addDocument(String name, Indexable document, PositionalIndex positions) {
+		int lastPage = -1;
+		int termsTotal = 0;
+		int locatorsTotal = 0;
+		for(String heading : document.getHeadings()) {
+			int[] pages = document.getLocators(heading);
+			if(pages.length == 0) continue;
+			if(pages[0] < 0) throw new IllegalArgumentException("Negative page " + pages[0] + " of '" + heading + "' in " + name);
+			lastPage = Math.max(lastPage, pages[pages.length - 1]);
+			termsTotal++;
+			locatorsTotal += pages.length;
+		}
+		int id = size;
+		if((long) firstLocators[id] + lastPage + 1 > Integer.MAX_VALUE) throw new IllegalStateException("The corpus is full, " + name + " cannot be added");
+
+		// The segment of the document: the pages moved to the range of the document
+		String[] terms = new String[termsTotal];
+		int[] offsets = new int[termsTotal + 1];
+		int[] locators = new int[locatorsTotal];
+		int[] counts = new int[locatorsTotal];
+		List<List<WordDetails>> definitions = new ArrayList<List<WordDetails>>(termsTotal);
+		int i = 0;
+		int total = 0;
+		for(String heading : document.getHeadings()) {
+			int[] pages = document.getLocators(heading);
+			if(pages.length == 0) continue;
+			System.arraycopy(SealedIndex.countsOf(document, heading, pages), 0, counts, total, pages.length);
+			for(int page : pages) {
+				locators[total++] = firstLocators[id] + page;
+			}
+			terms[i++] = heading;
+			offsets[i] = total;
+			definitions.add(document.getWordDetails(heading));
+		}
+		if(positions != null) {
+			if(id >= positionalIndices.length) positionalIndices = Arrays.copyOf(positionalIndices, Math.max(id * 2, id + 1));
+			positionalIndices[id] = positions; // Set before the document becomes visible to the queries
+		}
+		addSegment(new String[] { name }, new int[] { lastPage + 1 }, new int[] { termsTotal }, new SealedIndex(terms, offsets, locators, counts, definitions));
+		return id;
+	}
+
+	/**
+	 * Big-O notation - O(n + d), where n is the number of 'headings' of the segment and d is the number of documents
+	 * <p>
+	 * Adds the documents of a segment to the corpus, e.g. a segment loaded from an index file.
+	 * The 'locators' of the segment are the 'locators' of the corpus: they start from the first 'locator' after the last document.
+	 *
+	 * @param documentNames the names of the documents of the segment
+	 * @param spans the number of 'locators' of every document, i.e. the last page + 1
+	 * @param documentHeadings the number of 'headings' of every document
+	 * @param index the 'headings' and the 'locators' of the segment
+	 * @throws IllegalStateException if the 'locators' of the corpus exceed the range of ints
+	 */
+	synchronized void addSegment(String[] documentNames, int[] spans, int[] documentHeadings, SealedIndex index) {
+		int id = size;
+		long nextLocator = firstLocators[id];
+		for(int span : spans) {
+			nextLocator += span;
+		}
+		if(nextLocator > Integer.MAX_VALUE) throw new IllegalStateException("The corpus is full, " + documentNames[0] + " cannot be added");
+
+		if(id + documentNames.length > names.length) {
+			int length = Math.max(id * 2, id + documentNames.length);
+			names = Arrays.copyOf(names, length);
+			headingsTotals = Arrays.copyOf(headingsTotals, length);
+			firstLocators = Arrays.copyOf(firstLocators, length + 1);
+		}
+		for(int i = 0; i < documentNames.length; i++) {
+			names[id + i] = documentNames[i];
+			headingsTotals[id + i] = documentHeadings[i];
+			firstLocators[id + i + 1] = firstLocators[id + i] + spans[i];
+		}
+		Segment[] temp = Arrays.copyOf(segments, segments.length + 1);
+		temp[segments.length] = new Segment(id, id + documentNames.length, index);
+		segments = temp;
+		size = id + documentNames.length; // The documents become visible to the queries before their 'headings'
+
+		for(String heading : index.getHeadings()) {
+			AtomicInteger frequency = frequencies.get(heading);
+			if(frequency != null) {
+				frequency.addAndGet(index.getFrequency(heading));
+			}else {
+				wordDefinitions.putIfAbsent(heading, index.getWordDetails(heading)); // Add wordDetails before the 'heading' becomes visible
+				frequencies.put(heading, new AtomicInteger(index.getFrequency(heading)));
+			}
+			locatorsAdded(heading);
+		}
+		scheduleMerge();
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>, because the 'locators' of a corpus are added by documents (see addDocument).
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param wordDetails word details
+	 * @return never returns
+	 */
+	public boolean addIndex(String heading, Integer locator, List<WordDetails> wordDetails) {
+		throw new UnsupportedOperationException("The indices are added to a corpus by documents");
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>, because the 'locators' of a corpus are added by documents (see addDocument).
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param count the number of occurrences on the 'locator'
+	 * @param wordDetails word details
+	 * @return never returns
+	 */
+	public boolean addIndex(String heading, int locator, int count, List<WordDetails> wordDetails) {
+		throw new UnsupportedOperationException("The indices are added to a corpus by documents");
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of documents.
+	 *
+	 * @return number of documents
+	 */
+	public int documentsTotal() {
+		return size;
+	}
+
+	/**
+	 * Big-O notation - O(n log(k) + m), where n is the number of 'headings' of the segment of the document and m is the number of 'locators' of the document
+	 * <p>
+	 * Returns the index of the document, read from its segment. All its queries are scoped to the document,
+	 * e.g. getWord returns the searched words found in the document and getFrequency returns the number of pages of the document.
+	 *
+	 * @param id the id of a document
+	 * @return the index of the document
+	 * @throws IndexOutOfBoundsException if there is no document with the id
+	 */
+	public synchronized Indexable getDocument(int id) {
+		checkDocument(id);
+		return segmentOf(id).index.slice(firstLocators[id], firstLocators[id + 1]).withPositions(getPositionalIndex(id));
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the positional index the document was added with.
+	 *
+	 * @param id the id of a document
+	 * @return the positional index of the document, or null if it was added without one
+	 * @throws IndexOutOfBoundsException if there is no document with the id
+	 */
+	public synchronized PositionalIndex getPositionalIndex(int id) {
+		checkDocument(id);
+		return id < positionalIndices.length ? positionalIndices[id] : null;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the name of the document.
+	 *
+	 * @param id the id of a document
+	 * @return the name of the document
+	 * @throws IndexOutOfBoundsException if there is no document with the id
+	 */
+	public synchronized String getDocumentName(int id) {
+		checkDocument(id);
+		return names[id];
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of 'headings' of the document, i.e. the number of unique words.
+	 *
+	 * @param id the id of a document
+	 * @return the number of 'headings' of the document
+	 * @throws IndexOutOfBoundsException if there is no document with the id
+	 */
+	public synchronized int getHeadingsTotal(int id) {
+		checkDocument(id);
+		return headingsTotals[id];
+	}
+
+	/**
+	 * Big-O notation - O(k + d log(D)), where k is the number of 'locators' of the 'heading', d is the number of documents containing the 'heading'
+	 * and D is the number of documents
+	 * <p>
+	 * Returns the ids of the documents containing the given 'heading' in the ascending order.
+	 *
+	 * @param heading a word
+	 * @return array of document ids. It is empty if the 'heading' does not exist
+	 */
+	public int[] getDocuments(String heading) {
+		int[] locators = getLocators(heading);
+		int[] ids = new int[Math.min(locators.length, 16)];
+		int total = 0;
+		synchronized(this) {
+			int end = 0; // The first 'locator' after the last found document
+			for(int locator : locators) {
+				if(locator < end) continue; // The same document
+				int id = documentOf(locator);
+				if(total == ids.length) ids = Arrays.copyOf(ids, total * 2);
+				ids[total++] = id;
+				end = firstLocators[id + 1];
+			}
+		}
+		return Arrays.copyOf(ids, total);
+	}
+
+	/**
+	 * Big-O notation - O(log(d)), where d is the number of documents
+	 * <p>
+	 * Returns the id of the document of a 'locator' of the corpus.
+	 *
+	 * @param locator a 'locator' returned by getLocators
+	 * @return the id of the document
+	 * @throws IndexOutOfBoundsException if the 'locator' is not in the range of any document
+	 */
+	public synchronized int documentOf(int locator) {
+		if(locator < 0 || locator >= firstLocators[size]) throw new IndexOutOfBoundsException("Locator: " + locator);
+		// The last document whose first 'locator' is not greater than the 'locator'
+		int low = 0;
+		int high = size - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(firstLocators[mid] <= locator) low = mid;
+			else high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Big-O notation - O(log(d)), where d is the number of documents
+	 * <p>
+	 * Returns the page of a 'locator' of the corpus in its document.
+	 *
+	 * @param locator a 'locator' returned by getLocators
+	 * @return the page number in the document
+	 * @throws IndexOutOfBoundsException if the 'locator' is not in the range of any document
+	 */
+	public synchronized int pageOf(int locator) {
+		return locator - firstLocators[documentOf(locator)];
+	}
+
+	/**
+	 * Big-O notation - O(s log(n) + k), where s is the number of segments and k is the number of 'locators'
+	 * <p>
+	 * Returns the 'locators' of the given 'heading' in all the documents in the ascending order.
+	 * A 'locator' is a pair of a document id and a page, see documentOf and pageOf.
+	 *
+	 * @param heading a word
+	 * @return array of 'locators'. It is empty if the 'heading' does not exist
+	 */
+	public int[] getLocators(String heading) {
+		Segment[] snapshot = segments;
+		int[][] parts = new int[snapshot.length][];
+		for(int i = 0; i < snapshot.length; i++) {
+			parts[i] = snapshot[i].index.getLocators(heading);
+		}
+		return concatenate(parts);
+	}
+
+	/**
+	 * Big-O notation - O(s log(n) + k), where s is the number of segments and k is the number of 'locators'
+	 * <p>
+	 * Returns the counts of the 'locators' of the given 'heading' in all the documents, in the order of the 'locators'.
+	 * <p>
+	 * The documents added and the segments merged in the meantime do not change the order, so the counts match the 'locators'
+	 * returned by getLocators if no document is added between the calls.
+	 *
+	 * @param heading a word
+	 * @return array of counts. It is empty if the 'heading' does not exist
+	 */
+	public int[] getCounts(String heading) {
+		Segment[] snapshot = segments;
+		int[][] parts = new int[snapshot.length][];
+		for(int i = 0; i < snapshot.length; i++) {
+			parts[i] = snapshot[i].index.getCounts(heading);
+		}
+		return concatenate(parts);
+	}
+
+	/**
+	 * Big-O notation - O(s (log(n) + log(k))), where s is the number of segments and k is the number of 'locators'
+	 * <p>
+	 * Returns the number of occurrences of the given 'heading' on the given 'locator' of the corpus.
+	 *
+	 * @param heading a word
+	 * @param locator a 'locator' returned by getLocators
+	 * @return number of occurrences, 0 if the 'heading' is not on the 'locator'
+	 */
+	public int getOccurrences(String heading, int locator) {
+		int count = 0;
+		for(Segment segment : segments) {
+			count += segment.index.getOccurrences(heading, locator); // Only the segment of the 'locator' has it
+		}
+		return count;
+	}
+
+	/**
+	 * Big-O notation - O(s log(n)), where s is the number of segments
+	 * <p>
+	 * Returns the total number of occurrences of the given 'heading' in all the documents.
+	 *
+	 * @param heading a word
+	 * @return number of occurrences, 0 if the 'heading' does not exist
+	 */
+	public long getOccurrences(String heading) {
+		long total = 0;
+		for(Segment segment : segments) {
+			total += segment.index.getOccurrences(heading);
+		}
+		return total;
+	}
+
+	/**
+	 * Big-O notation - O(s), where s is the number of segments
+	 * <p>
+	 * Returns an iterator over the 'locators' of the given 'heading' in all the documents in the ascending order.
+	 * It reads the 'locators' of one segment after another, without copying them.
+	 * <p>
+	 * It reads the segments of the corpus at the time it is created, so the corpus may be modified and merged while it is used.
+	 *
+	 * @param heading a word
+	 * @return iterator over the 'locators'. It has no 'locators' if the 'heading' does not exist
+	 */
+	public PostingsIterator getLocatorsIterator(String heading) {
+		Segment[] snapshot = segments;
+		if(snapshot.length == 1) return snapshot[0].index.getLocatorsIterator(heading);
+		final PostingsIterator[] parts = new PostingsIterator[snapshot.length];
+		for(int i = 0; i < snapshot.length; i++) {
+			parts[i] = snapshot[i].index.getLocatorsIterator(heading);
+		}
+		return new PostingsIterator() {
+			private int part; // The segment being read
+
+			public boolean hasNext() {
+				while(part < parts.length && !parts[part].hasNext()) part++;
+				return part < parts.length;
+			}
+
+			public int next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				return parts[part].next();
+			}
+
+			public boolean advance(int target) {
+				// The segments follow each other, so the segments before the one containing the target are skipped
+				while(part < parts.length && !parts[part].advance(target)) part++;
+				return part < parts.length;
+			}
+		};
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of segments of the corpus. It decreases when the segments are merged.
+	 *
+	 * @return number of segments
+	 */
+	public int segmentsTotal() {
+		return segments.length;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the policy deciding which segments are merged, or null if the segments are not merged.
+	 *
+	 * @return the merge policy
+	 */
+	public synchronized MergePolicy getMergePolicy() {
+		return mergePolicy;
+	}
+
+	/**
+	 * Big-O notation - O(s), where s is the number of segments
+	 * <p>
+	 * Sets the policy deciding which segments are merged. The segments are not merged if it is null.
+	 * The policy must not be modified while the corpus uses it.
+	 *
+	 * @param mergePolicy the merge policy, or null
+	 */
+	public synchronized void setMergePolicy(MergePolicy mergePolicy) {
+		this.mergePolicy = mergePolicy;
+		scheduleMerge();
+	}
+
+	/**
+	 * Waits until the background thread has merged all the segments that need to be merged by the merge policy.
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized void waitForMerges() throws InterruptedException {
+		while(merging) {
+			wait();
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n log(n) + k), where k is the total number of 'locators'
+	 * <p>
+	 * Returns the indices as a map of 'headings' and associated set of 'locators' of the corpus.
+	 * <p>
+	 * The 'locators' are boxed to Integers, so the method should be used only if a map is needed.
+	 * Use getLocators to read 'locators' of a single 'heading'.
+	 * <p>
+	 * The returned map may be empty.
+	 *
+	 * @return a map of 'headings' and associated set of 'locators'
+	 */
+	public Map<String, Set<Integer>> getIndices() {
+		Map<String, Set<Integer>> temp = new TreeMap<String, Set<Integer>>();
+		for(String heading : frequencies.keySet()) {
+			Set<Integer> locators = new TreeSet<Integer>();
+			for(int locator : getLocators(heading)) {
+				locators.add(locator);
+			}
+			temp.put(heading, locators);
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the frequency for the given 'heading' (word) in the corpus: the number of pages of all the documents.
+	 *
+	 * @param heading a word
+	 * @return frequency of the given 'headings'
+	 */
+	public int getFrequency(String heading) {
+		AtomicInteger frequency = frequencies.get(heading);
+		return frequency == null ? 0 : frequency.get();
+	}
+
+	/*
+	 * Returns the set of 'headings'.
+	 */
+	protected Set<String> headings() {
+		return frequencies.keySet();
+	}
+
+	/*
+	 * Returns the PageQuery of the corpus. A phrase does not continue from the last page of a document to the first page of the next document.
+	 * The phrases and the words near each other are found by the positions in the documents that have a positional index.
+	 */
+	protected PageQuery pageQuery() {
+		return new PageQuery(this) {
+			protected boolean continues(int locator) {
+				synchronized(CorpusIndex.this) {
+					return locator + 1 < firstLocators[size] && documentOf(locator) == documentOf(locator + 1);
+				}
+			}
+
+			public int[] phrase(List<String> headings) {
+				return byPositions(super.phrase(headings), headings, -1);
+			}
+
+			public int[] near(List<String> headings, int distance) {
+				return byPositions(super.near(headings, distance), headings, distance);
+			}
+		};
+	}
+
+	/*
+	 * Replaces the candidate 'locators' of the documents with a positional index by the pages found by the positions:
+	 * the pages of the phrase if the distance is negative, otherwise the pages of the words near each other.
+	 */
+	private synchronized int[] byPositions(int[] candidates, List<String> headings, int distance) {
+		if(positionalIndices.length == 0) return candidates;
+		int[] temp = new int[candidates.length];
+		int total = 0;
+		for(int locator : candidates) {
+			int id = documentOf(locator);
+			if(id >= positionalIndices.length || positionalIndices[id] == null) temp[total++] = locator;
+		}
+		temp = Arrays.copyOf(temp, total);
+		for(int id = 0; id < Math.min(size, positionalIndices.length); id++) {
+			PositionalIndex positions = positionalIndices[id];
+			if(positions == null) continue;
+			int[] pages = positions.pagesOf(distance < 0 ? positions.getPhrase(headings) : positions.getNear(headings, distance));
+			for(int i = 0; i < pages.length; i++) {
+				pages[i] += firstLocators[id];
+			}
+			temp = PageQuery.union(temp, pages);
+		}
+		return temp;
+	}
+
+	/*
+	 * Returns the segments. The array must not be modified.
+	 */
+	Segment[] segments() {
+		return segments;
+	}
+
+	/*
+	 * Returns the number of 'locators' of the document, i.e. its last page + 1.
+	 */
+	synchronized int spanOf(int id) {
+		checkDocument(id);
+		return firstLocators[id + 1] - firstLocators[id];
+	}
+
+	/*
+	 * Throws an IndexOutOfBoundsException if there is no document with the id.
+	 */
+	private void checkDocument(int id) {
+		if(id < 0 || id >= size) throw new IndexOutOfBoundsException("Document: " + id + ", Documents: " + size);
+	}
+
+	/*
+	 * Returns the segment containing the document.
+	 */
+	private Segment segmentOf(int id) {
+		Segment[] snapshot = segments;
+		int low = 0;
+		int high = snapshot.length - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(snapshot[mid].firstDocument <= id) low = mid;
+			else high = mid - 1;
+		}
+		return snapshot[low];
+	}
+
+	/*
+	 * Starts merging the segments in the background if the merge policy finds segments to merge and they are not being merged already.
+	 */
+	private synchronized void scheduleMerge() {
+		if(merging || mergePolicy == null || mergePolicy.findMerge(sizes(segments)) == null) return;
+		if(merger == null) {
+			merger = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "CorpusIndex merger");
+					thread.setDaemon(true); // The merges do not keep the application running
+					return thread;
+				}
+			});
+		}
+		merging = true;
+		merger.execute(new Runnable() {
+			public void run() {
+				mergeSegments();
+			}
+		});
+	}
+
+	/*
+	 * Merges the segments chosen by the merge policy until no segments need to be merged.
+	 * The segments are merged without the lock, then the merged segment replaces them.
+	 * The segments are only appended in the meantime, so the merged segments keep their positions.
+	 */
+	private void mergeSegments() {
+		try {
+			while(true) {
+				Segment[] snapshot;
+				int[] range;
+				synchronized(this) {
+					snapshot = segments;
+					range = mergePolicy != null ? mergePolicy.findMerge(sizes(snapshot)) : null;
+					if(range == null) {
+						merging = false;
+						notifyAll();
+						return;
+					}
+				}
+				List<SealedIndex> indices = new ArrayList<SealedIndex>();
+				for(int i = range[0]; i < range[1]; i++) {
+					indices.add(snapshot[i].index);
+				}
+				Segment merged = new Segment(snapshot[range[0]].firstDocument, snapshot[range[1] - 1].endDocument, SealedIndex.merge(indices));
+				synchronized(this) {
+					Segment[] current = segments;
+					Segment[] temp = new Segment[current.length - (range[1] - range[0]) + 1];
+					System.arraycopy(current, 0, temp, 0, range[0]);
+					temp[range[0]] = merged;
+					System.arraycopy(current, range[1], temp, range[0] + 1, current.length - range[1]);
+					segments = temp;
+				}
+			}
+		}catch(RuntimeException | Error e) {
+			synchronized(this) {
+				merging = false; // The segments stay unmerged, they are merged again with the next document
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/*
+	 * Returns the arrays read from the segments as one array. The array of a single segment is not copied.
+	 */
+	private static int[] concatenate(int[][] parts) {
+		if(parts.length == 1) return parts[0];
+		int total = 0;
+		for(int[] part : parts) {
+			total += part.length;
+		}
+		int[] temp = new int[total];
+		int pos = 0;
+		for(int[] part : parts) {
+			System.arraycopy(part, 0, temp, pos, part.length);
+			pos += part.length;
+		}
+		return temp;
+	}
+
+	/*
+	 * Returns the number of 'locators' of every segment.
+	 */
+	private static int[] sizes(Segment[] segments) {
+		int[] temp = new int[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			temp[i] = segments[i].index.locatorsTotal();
+		}
+		return temp;
+	}
+
+	/*
+	 * An immutable segment: the index of the documents from firstDocument (inclusive) to endDocument (exclusive).
+	 */
+	static class Segment {
+		final int firstDocument;
+		final int endDocument;
+		final SealedIndex index;
+
+		Segment(int firstDocument, int endDocument, SealedIndex index) {
+			this.firstDocument = firstDocument;
+			this.endDocument = endDocument;
+			this.index = index;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package ie.gmit.dip;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The DictionaryCache class keeps parsed dictionaries and sets of ignore words in memory, so they are parsed once.
+ * <p>
+ * A file is parsed on the first request and the result is shared by all the following requests for the same file.
+ * The returned map and set are unmodifiable, so they may be used by many QueryParser objects at once.
+ * The <code>TermTable</code> created from them is cached too.
+ * <p>
+ * A file is parsed again if its modification time or length has changed since it was parsed.
+ * All the methods are synchronized, so the object may be shared by many threads.
+ */
+public class DictionaryCache {
+	private Map<String, Entry<Map<String, List<WordDetails>>>> dictionaries;
+	private Map<String, Entry<Set<String>>> ignoreWords;
+	private Map<String, TermTableEntry> termTables;
+
+	/**
+	 * Creates a new empty DictionaryCache object.
+	 */
+	public DictionaryCache() {
+		super();
+		this.dictionaries = new HashMap<String, Entry<Map<String, List<WordDetails>>>>();
+		this.ignoreWords = new HashMap<String, Entry<Set<String>>>();
+		this.termTables = new HashMap<String, TermTableEntry>();
+	}
+
+	/**
+	 * Big-O notation - O(1) if the file is cached, O(n) otherwise
+	 * <p>
+	 * Returns the unmodifiable map of word definitions parsed from the dictionary file by <code>DictionaryParser</code>.
+	 * <p>
+	 * A binary dictionary file (with the <code>DictionaryCompiler.EXTENSION</code> extension) is not parsed,
+	 * it is memory-mapped by <code>MappedDictionary</code>.
+	 *
+	 * @param path the path of the dictionary file
+	 * @return a map of word definitions
+	 * @throws Exception if the file cannot be parsed
+	 */
+	public synchronized Map<String, List<WordDetails>> getDictionary(String path) throws Exception {
+		File file = new File(path);
+		Entry<Map<String, List<WordDetails>>> entry = dictionaries.get(path);
+		if(entry == null || !entry.isValid(file)) {
+			if(path.endsWith(DictionaryCompiler.EXTENSION)) {
+				entry = new Entry<Map<String, List<WordDetails>>>(file, new MappedDictionary(path));
+			}else {
+				DictionaryParser dictionaryParser = new DictionaryParser();
+				dictionaryParser.parse(dictionaryParser.openBufferReader(path, false));
+				entry = new Entry<Map<String, List<WordDetails>>>(file, dictionaryParser.getDictionary());
+			}
+			dictionaries.put(path, entry);
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Big-O notation - O(1) if the file is cached, O(n) otherwise
+	 * <p>
+	 * Returns the unmodifiable set of words parsed from the ignore words file by <code>IgnoreWordsParser</code>.
+	 *
+	 * @param path the path of the ignore words file
+	 * @return a set of words to be ignored
+	 * @throws Exception if the file cannot be parsed
+	 */
+	public synchronized Set<String> getIgnoreWords(String path) throws Exception {
+		File file = new File(path);
+		Entry<Set<String>> entry = ignoreWords.get(path);
+		if(entry == null || !entry.isValid(file)) {
+			IgnoreWordsParser ignoreWordsParser = new IgnoreWordsParser();
+			ignoreWordsParser.parse(ignoreWordsParser.openBufferReader(path, false));
+			entry = new Entry<Set<String>>(file, ignoreWordsParser.getIgnoreWords());
+			ignoreWords.put(path, entry);
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Big-O notation - O(1) if the files are cached, O(n log(n)) otherwise
+	 * <p>
+	 * Returns the <code>TermTable</code> of the words of the dictionary file that are not in the ignore words file.
+	 * The table is created again only if one of the files is parsed again.
+	 *
+	 * @param ignoreWordsPath the path of the ignore words file
+	 * @param dictionaryPath the path of the dictionary file
+	 * @return the TermTable shared by all QueryParser objects using the same files
+	 * @throws Exception if a file cannot be parsed
+	 */
+	public synchronized TermTable getTermTable(String ignoreWordsPath, String dictionaryPath) throws Exception {
+		Set<String> tempIgnoreWords = getIgnoreWords(ignoreWordsPath);
+		Map<String, List<WordDetails>> dictionary = getDictionary(dictionaryPath);
+		String key = ignoreWordsPath + "\n" + dictionaryPath;
+		TermTableEntry entry = termTables.get(key);
+		if(entry == null || entry.ignoreWords != tempIgnoreWords || entry.dictionary != dictionary) {
+			entry = new TermTableEntry(tempIgnoreWords, dictionary);
+			termTables.put(key, entry);
+		}
+		return entry.terms;
+	}
+
+	/**
+	 * Removes all the cached files.
+	 */
+	public synchronized void clear() {
+		dictionaries.clear();
+		ignoreWords.clear();
+		termTables.clear();
+	}
+
+	/*
+	 * A parsed file with the modification time and length of the file when it was parsed.
+	 */
+	private static class Entry<T> {
+		private T value;
+		private long lastModified;
+		private long length;
+
+		public Entry(File file, T value) {
+			this.value = value;
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		public boolean isValid(File file) {
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+
+	/*
+	 * A TermTable with the set and map it was created from.
+	 */
+	private static class TermTableEntry {
+		private Set<String> ignoreWords;
+		private Map<String, List<WordDetails>> dictionary;
+		private TermTable terms;
+
+		public TermTableEntry(Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary) {
+			this.ignoreWords = ignoreWords;
+			this.dictionary = dictionary;
+			this.terms = new TermTable(ignoreWords, dictionary);
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package ie.gmit.dip;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The DictionaryCompiler class compiles a dictionary text file (see <code>DictionaryParser</code>) into a binary file
+ * that is memory-mapped by <code>MappedDictionary</code>, so the dictionary does not have to be parsed at start-up.
+ * <p>
+ * The binary file has the following format (all integers are big-endian ints):
+ * - header: magic number, version, number of words
+ * - key table: for every word, in the ascending order of UTF-8 bytes, the offset of the word and the offset of its entry
+ * - data: the words and the entries
+ * <p>
+ * A word is stored as its length followed by its UTF-8 bytes.
+ * An entry is stored as the number of definitions followed by the word, word type and definition of each <code>WordDetails</code>,
+ * stored like words. The length of a missing (null) text is -1.
+ * <p>
+ * It may be run from the command prompt:
+ * java -cp .\indexer.jar ie.gmit.dip.DictionaryCompiler dictionary.csv dictionary.dict
+ */
+public class DictionaryCompiler {
+	/** The usual extension of the compiled dictionary file. */
+	public static final String EXTENSION = ".dict";
+	static final int MAGIC = 0x44494354; // 'DICT'
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	static final int KEY_TABLE_ENTRY_SIZE = 8;
+
+	/**
+	 * Creates a new DictionaryCompiler object.
+	 */
+	public DictionaryCompiler() {
+		super();
+	}
+
+	/**
+	 * Compiles the dictionary text file given as the first argument into the binary file given as the second argument.
+	 *
+	 * @param args the path of the dictionary text file and the path of the binary file
+	 * @throws Exception if the dictionary cannot be parsed or the binary file cannot be written
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.out.println("Usage: DictionaryCompiler dictionary.csv dictionary" + EXTENSION);
+			return;
+		}
+		long start = System.nanoTime();
+		int words = new DictionaryCompiler().compile(args[0], args[1]);
+		System.out.printf("%d words compiled in %d ms%n", words, (System.nanoTime() - start) / 1000000);
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Parses the dictionary text file and writes it to the binary file.
+	 * <p>
+	 * The binary file is written to a temporary file first and then moved, so a file that is already memory-mapped is not modified.
+	 *
+	 * @param source the path of the dictionary text file
+	 * @param target the path of the binary file
+	 * @return the number of compiled words
+	 * @throws Exception if the dictionary cannot be parsed or the binary file cannot be written
+	 */
+	public int compile(String source, String target) throws Exception {
+		DictionaryParser dictionaryParser = new DictionaryParser();
+		dictionaryParser.parse(dictionaryParser.openBufferReader(source, false));
+		Map<String, List<WordDetails>> dictionary = dictionaryParser.getDictionary();
+
+		// Sort the words by their UTF-8 bytes, the order used by the binary search of MappedDictionary
+		String[] words = dictionary.keySet().toArray(new String[0]);
+		final byte[][] encoded = new byte[words.length][];
+		Integer[] order = new Integer[words.length];
+		for(int i = 0; i < words.length; i++) {
+			encoded[i] = words[i].getBytes(StandardCharsets.UTF_8);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return compareBytes(encoded[a], encoded[b]);
+			}
+		});
+
+		// Write the data first, so the offsets of the key table are known
+		int dataOffset = HEADER_SIZE + words.length * KEY_TABLE_ENTRY_SIZE;
+		int[] keyOffsets = new int[words.length];
+		int[] entryOffsets = new int[words.length];
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		for(int i = 0; i < words.length; i++) {
+			int word = order[i];
+			keyOffsets[i] = dataOffset + data.size();
+			data.writeInt(encoded[word].length);
+			data.write(encoded[word]);
+
+			entryOffsets[i] = dataOffset + data.size();
+			List<WordDetails> details = dictionary.get(words[word]);
+			data.writeInt(details.size());
+			for(WordDetails wordDetails : details) {
+				writeText(data, wordDetails.getWord());
+				writeText(data, wordDetails.getWordType());
+				writeText(data, wordDetails.getDefinition());
+			}
+		}
+		data.flush();
+
+		File targetFile = new File(target).getAbsoluteFile();
+		File temp = File.createTempFile("dictionary", EXTENSION, targetFile.getParentFile());
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(words.length);
+			for(int i = 0; i < words.length; i++) {
+				out.writeInt(keyOffsets[i]);
+				out.writeInt(entryOffsets[i]);
+			}
+			bytes.writeTo(out);
+		}catch(IOException ioEx) {
+			temp.delete();
+			throw ioEx;
+		}
+		Files.move(temp.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return words.length;
+	}
+
+	/**
+	 * Big-O notation - O(1) if the binary file is up to date, O(n log(n)) otherwise
+	 * <p>
+	 * Compiles the dictionary text file if the binary file does not exist or is older than the text file.
+	 * Nothing is compiled if the text file does not exist.
+	 *
+	 * @param source the path of the dictionary text file
+	 * @param target the path of the binary file
+	 * @return true if the dictionary was compiled
+	 * @throws Exception if the dictionary cannot be parsed or the binary file cannot be written
+	 */
+	public boolean compileIfModified(String source, String target) throws Exception {
+		File sourceFile = new File(source);
+		File targetFile = new File(target);
+		if(!sourceFile.exists()) return false;
+		if(targetFile.exists() && targetFile.lastModified() >= sourceFile.lastModified()) return false;
+		compile(source, target);
+		return true;
+	}
+
+	/*
+	 * Writes the length and UTF-8 bytes of the text. The length of null is -1.
+	 */
+	private static void writeText(DataOutputStream data, String text) throws IOException {
+		if(text == null) {
+			data.writeInt(-1);
+			return;
+		}
+		byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(encoded.length);
+		data.write(encoded);
+	}
+
+	/*
+	 * Compares two arrays of bytes as unsigned bytes, like Strings are compared by their characters.
+	 */
+	private static int compareBytes(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for(int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if(diff != 0) return diff;
+		}
+		return a.length - b.length;
+	}
+
+}
@@ -35,7 +35,7 @@ public class DictionaryParser extends Parser {
 	 */
 	public DictionaryParser() {
 		super();
-		dictionary = new TreeMap<String, List<WordDetails>>();
+		dictionary = new HashMap<String, List<WordDetails>>();
 	}
 	
 	/**
@@ -65,16 +65,18 @@ public class DictionaryParser extends Parser {
 	}
 	
 	/**
-	 * Big-O notation - O(n)
+	 * Big-O notation - O(1)
 	 * Returns the map of the word definitions, where a key is a word and a value is a List of word definitions.
 	 * <p>
 	 * A word may contain more than one definition. The definitions are a <code>WordDetails</code> type.
+	 * <p>
+	 * The returned map is an unmodifiable view, it is not copied. It may be shared (see <code>DictionaryCache</code>).
 	 * 
 	 * @return a map of word definitions
 	 * 
 	 */
 	public Map<String, List<WordDetails>> getDictionary() {
-		return new HashMap<>(dictionary);
+		return Collections.unmodifiableMap(dictionary);
 	}
 
 	/*
@@ -12,7 +12,7 @@ import java.net.MalformedURLException;
  * The IgnoreWordsParser class is used for parsing a text file to the <code>Set</code> of words.
  */
 public class IgnoreWordsParser extends Parser {
-	private Set<String> ignoreWords = new TreeSet<String>();
+	private Set<String> ignoreWords = new HashSet<String>();
 	
 	/**
 	 * Creates a new IgnoreWordsParser object that is ready for parsing a text file or URL.
@@ -29,6 +29,7 @@ public class IgnoreWordsParser extends Parser {
 	 * It uses a space or newline as a delimiter.
 	 * All non-word characters are removed.
 	 * It is case insensitive. All words are parsed to the set of lower case words.
+	 * The words are normalized by <code>Tokenizer</code>, like the words of an indexed text.
 	 * 
 	 * @param br BufferedReader
 	 * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some other reason cannot be opened for reading.
@@ -39,27 +40,31 @@ public class IgnoreWordsParser extends Parser {
 	 */
 	public void parse(BufferedReader br) throws FileNotFoundException, MalformedURLException, IOException, Exception{
 		
+		Tokenizer tokenizer = new Tokenizer();
+		Tokenizer.Handler handler = new Tokenizer.Handler() {
+			public void token(char[] buffer, int offset, int length) {
+				ignoreWords.add(new String(buffer, offset, length));
+			}
+		};
 		String line = null;
 		while((line = br.readLine()) != null) {
-			
-            line = line.replaceAll("[^A-Za-z0-9 ]", "");
-			line = line.toLowerCase();
-			String[] words = line.split(" +"); // space one or more times to prevent "" empty string
-			ignoreWords.addAll(Arrays.asList(words));
+			tokenizer.tokenize(line, handler);
 		}
 		br.close();
 	}
 	
 	/**
-	 * Big-O notation - O(n log(n))
+	 * Big-O notation - O(1)
 	 * <p>
 	 * Returns a set of words, that has been parsed.
 	 * All words are in lower case.
+	 * <p>
+	 * The returned set is an unmodifiable view, it is not copied. It may be shared (see <code>DictionaryCache</code>).
 	 * 
 	 * @return a set of words (Strings)
 	 * 
 	 */
 	public Set<String> getIgnoreWords(){
-		return new TreeSet<String>(this.ignoreWords);
+		return Collections.unmodifiableSet(this.ignoreWords);
 	}
 }
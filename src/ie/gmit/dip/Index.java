@@ -1,13 +1,14 @@
 package ie.gmit.dip;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.Set;
 
 /**
@@ -24,36 +25,44 @@ import java.util.Set;
  * <p>
  * It uses a map of 'heading' and 'locators' (a map of indices) and a map of 'headings' and 'wordDetails' (a map of words definitions).
  * <p>
- * A 'locators' is a set of Integers. Integers cannot be duplicated within the same set of 'locators'.
- * It means, that if 'heading' appears more than once in the same location (page or line), it will not be duplicates in an associated set of 'locators'.
+ * A 'locators' is a sorted map of Integers and their counts. Integers cannot be duplicated within the same set of 'locators'.
+ * It means, that if 'heading' appears more than once in the same location (page or line), it will not be duplicates in an associated set of 'locators',
+ * but the count of the 'locator' (the number of occurrences of the 'heading' on it) is incremented.
  * <p>
  * Some methods use a frequency of 'heading'.
  * The frequency of 'heading' is the number of 'locators' (pages or lines) associated with a 'heading'.
  * The frequency is not the total number of times a 'heading' appeared in a document, but the number of 'locators'.
+ * The total number of occurrences is the sum of the counts of the 'locators'.
  */
-public class Index implements Indexable {
-	private Map<String, Set<Integer>> indices;
-	private Map<String, List<WordDetails>> wordDefinitions;
+public class Index extends AbstractIndex {
+	private Map<String, Locators> indices;
 
 	/**
 	 * Creates a new Index object with an empty map of indices and a map wordDefinitions
 	 */
 	public Index() {
-		super();
-		this.indices = new ConcurrentHashMap<String, Set<Integer>>();
-		this.wordDefinitions = new ConcurrentHashMap<String, List<WordDetails>>();
+		super(new ConcurrentHashMap<String, List<WordDetails>>());
+		this.indices = new ConcurrentHashMap<String, Locators>();
 	}
 	
 	/**
 	 * Constructs a new Index object based on a map of indices and map of word definitions passed as arguments.
+	 * The 'locators' are copied. A set of 'locators' has no counts, so every 'locator' has one occurrence.
 	 * 
 	 * @param indices a map of indices
 	 * @param wordDefinitions a map of word definitions
 	 */
 	public Index(Map<String, Set<Integer>> indices, Map<String, List<WordDetails>> wordDefinitions) { // Map interface doesn't guarantee the map to be sorted
-		super();
-		this.indices = indices;
-		this.wordDefinitions = wordDefinitions;
+		super(wordDefinitions);
+		this.indices = new ConcurrentHashMap<String, Locators>();
+		for(Map.Entry<String, Set<Integer>> entry : indices.entrySet()) {
+			Locators locators = new Locators();
+			for(Integer locator : entry.getValue()) {
+				locators.add(locator, 1);
+			}
+			this.indices.put(entry.getKey(), locators);
+			locatorsAdded(entry.getKey());
+		}
 	}
 	
 
@@ -63,7 +72,10 @@ public class Index implements Indexable {
 	 * Returns true if the 'heading' and associated 'locator' and 'wordDetails' was successfully added to the map of indices.
 	 * If the index already exists in the map, it adds a 'locator' (e.g. page or line) to the corresponding set of 'locators'.
 	 * <p>
-	 * It returns false if the 'locator' already existed in a associated set of 'locators'.
+	 * It returns false if the 'locator' already existed in a associated set of 'locators'. The occurrence is counted in both cases.
+	 * <p>
+	 * It is safe to call this method from many threads at once. The 'locators' are created atomically on the first call for a 'heading'.
+	 * They are a lock-free skip list of 'locators' and atomic counts, so threads adding 'locators' to the same popular 'heading' do not block each other.
 	 * 
 	 * @param heading a word
 	 * @param locator a page number
@@ -73,232 +85,186 @@ public class Index implements Indexable {
 	 * 			otherwise false
 	 */
 	public boolean addIndex(String heading, Integer locator, List<WordDetails> wordDetails) {
-		if(!indices.containsKey(heading)) { // Add new index to indices: a key & value pair ('heading' & 'locator') and return true
-			Set<Integer> temp = new TreeSet<>();
-			temp.add(locator);
-			indices.put(heading, temp);
-			// Add wordDetails
-			wordDefinitions.put(heading, wordDetails);
-			return true;
-		}else { // Add new 'locator' the set of 'locators' associated with the 'heading' and return true.
-			Set<Integer> temp = indices.get(heading);
-			if(!temp.add(locator)) return false; // Return false if 'locator' already exists in a set of 'locators'
-			indices.put(heading, temp);
-			return true;
-		}
+		return addIndex(heading, locator.intValue(), 1, wordDetails);
 	}
-	
+
 	/**
-	 * Big-O notation - O(n log(n))
+	 * Big-O notation - O(log(n))
 	 * <p>
-	 * Returns the indices as a map of 'headings' and associated set of 'locators'.
+	 * Returns true if the 'heading' and associated 'locator' and 'wordDetails' was successfully added to the map of indices.
+	 * It adds the given number of occurrences to the count of the 'locator' at once.
 	 * <p>
-	 * The returned map may be empty.
-	 * 
-	 * @return a map of 'headings' and associated set of 'locators'
+	 * It returns false if the 'locator' already existed in a associated set of 'locators'.
+	 * It is safe to call this method from many threads at once, it does not lock.
 	 * 
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param count the number of occurrences on the 'locator', greater than 0
+	 * @param wordDetails word details
+	 * @return true if the 'locator' was added to the set of 'locators', otherwise false
 	 */
-	public Map<String, Set<Integer>> getIndices() {		
-		return new TreeMap<String, Set<Integer>>(this.indices);
+	public boolean addIndex(String heading, int locator, int count, List<WordDetails> wordDetails) {
+		Locators locators = indices.get(heading);
+		if(locators == null) { // Add new index to indices: a key & value pair ('heading' & 'locators')
+			wordDefinitions.putIfAbsent(heading, wordDetails); // Add wordDetails before the 'heading' becomes visible
+			locators = indices.computeIfAbsent(heading, k -> new Locators());
+		}
+		if(!locators.add(locator, count)) return false; // Return false if 'locator' already exists in a set of 'locators'
+		locatorsAdded(heading);
+		return true;
 	}
 	
-	/** 
-	 * Big-O notation - O(n log(n))
+	/**
+	 * Big-O notation - O(n)
 	 * <p>
-	 * Returns the words definitions as a map of 'headings' and an associated list of 'wordDetails'.
+	 * Returns the indices as a map of 'headings' and associated set of 'locators'.
 	 * <p>
+	 * The returned map is unmodifiable. It is not sorted.
+	 * The sets of 'locators' are unmodifiable views of the 'locators', they are not copied.
 	 * The returned map may be empty.
 	 * 
-	 * @return a map of words definitions
+	 * @return a map of 'headings' and associated set of 'locators'
 	 * 
 	 */
-	public Map<String, List<WordDetails>> getWordDefinitions() {		
-		return new TreeMap<String, List<WordDetails>>(this.wordDefinitions);
+	public Map<String, Set<Integer>> getIndices() {		
+		Map<String, Set<Integer>> temp = new HashMap<String, Set<Integer>>();
+		for(Map.Entry<String, Locators> entry : indices.entrySet()) {
+			temp.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue().counts.keySet()));
+		}
+		return Collections.unmodifiableMap(temp);
 	}
 	
+
 	/**
-	 * Big-O notation - O(1)
-	 * <p>
-	 * Returns a total number of unique 'headings' (words).
+	 * Big-O notation - O(k), where k is the number of 'locators'
 	 * <p>
-	 * It returns 0 if the map is empty.
+	 * Returns the 'locators' of the given 'heading' in the ascending order.
 	 * 
-	 * @return int a total number of 'headings'
+	 * @param heading a word
+	 * @return array of 'locators'. It is empty if the 'heading' does not exist
 	 * 
 	 */
-	public int indicesTotal() {
-		return indices.size();
+	public int[] getLocators(String heading) {
+		Locators locators = indices.get(heading);
+		if(locators == null) return new int[0];
+		int[] temp = new int[locators.counts.size()];
+		int i = 0;
+		for(Integer locator : locators.counts.keySet()) {
+			if(i == temp.length) temp = Arrays.copyOf(temp, i * 2 + 1); // The concurrent map may grow while it is copied
+			temp[i++] = locator;
+		}
+		return i == temp.length ? temp : Arrays.copyOf(temp, i);
 	}
-	
+
 	/**
-	 * Big-O notation - O(n)
+	 * Big-O notation - O(1)
 	 * <p>
-	 * Returns a sorted list of 'headings' in the alphanumeric ascending order.
+	 * Returns the frequency for the given 'heading' (word) that was passed to the method as an argument.
+	 * It is counted when the 'locators' are added.
 	 * 
-	 * @return 'headings' in the alphanumeric ascending order
+	 * @param heading a word
+	 * @return frequency of the given 'headings'
 	 * 
 	 */
-	public List<String> getHeadingsSetAsc() {
-		Set<String> wordsAsc = new TreeSet<String>(indices.keySet());
-		return new ArrayList<String>(wordsAsc); // TreeSet has been used to guarantee natural ordering.
+	public int getFrequency(String heading) {
+		Locators locators = indices.get(heading);
+		return locators == null ? 0 : locators.frequency.get();
 	}
-	
+
 	/**
-	 * Big-O notation - O(n)
+	 * Big-O notation - O(k), where k is the number of 'locators'
 	 * <p>
-	 * Returns a sorted list of 'headings' in the alphanumeric descending order.
-	 * 
-	 * @return list of 'headings' in the alphanumeric ascending order
+	 * Returns the counts of the 'locators' of the given 'heading' in the order of the 'locators'.
 	 * 
+	 * @param heading a word
+	 * @return array of counts. It is empty if the 'heading' does not exist
 	 */
-	public List<String> getHeadingsSetDesc() {
-		Set<String> wordsDesc = new TreeSet<String>(Collections.reverseOrder());
-		wordsDesc.addAll(indices.keySet());
-		return new ArrayList<String>(wordsDesc); // TreeSet has been used to guarantee natural ordering.
-	}	
-	
-	/**
-	 * Big-O notation - O(n^2)
-	 * <p>
-	 * Returns sorted list of 'headings' in an ascending or descending order.
-	 * The 'headings' with the same frequency are sorted in the alphanumeric ascending order.
-	 * @param asc sorts ascending if true
-	 * @return list of 'headings' in the frequency order
-	 */
-	public List<String> sortFrequency(boolean asc) {
-		List<String> sortFreq = new ArrayList<String>();
-		// Map of frequency
-		Map<String, Integer> tempFreqMap = new TreeMap<String, Integer>();
-		// Set of keys
-		Set<String> keys = indices.keySet();
-		for(String key : keys) {
-			tempFreqMap.put(key, Integer.valueOf(indices.get(key).size()));
-		}
-		// Sorted set of keys
-		Set<Integer> tempFreqSet = new TreeSet<Integer>(
-				new Comparator<Integer>() {
-					public int compare(Integer o1, Integer o2) {
-						if(asc) return o1.compareTo(o2);//sort in ascending order											
-						return -o1.compareTo(o2);//sort in descending order											
-					}
-				});
-		tempFreqSet.addAll(tempFreqMap.values());
-		// Add to sortFreq List
-		for(Integer tempFreq : tempFreqSet) {
-			for(String key : keys) {
-				if(tempFreq == indices.get(key).size()) {
-					sortFreq.add(key);
-				}
-			}
+	public int[] getCounts(String heading) {
+		Locators locators = indices.get(heading);
+		if(locators == null) return new int[0];
+		int[] temp = new int[locators.counts.size()];
+		int i = 0;
+		for(AtomicInteger count : locators.counts.values()) {
+			if(i == temp.length) temp = Arrays.copyOf(temp, i * 2 + 1); // The concurrent map may grow while it is copied
+			temp[i++] = count.get();
 		}
-		return sortFreq;
+		return i == temp.length ? temp : Arrays.copyOf(temp, i);
 	}
 
 	/**
-	 * Big-O notation - O(n)
-	 * <p>
-	 * Returns list of 'headings' containing the most or less frequent 'headings' (words) in the alphanumeric ascending order.
-	 * <p>
-	 * The first parameter sets the minimum number of most or less frequent words returned.
-	 * If there are words with the same frequency, the number of returned words may exceed the minimum number.
+	 * Big-O notation - O(log(k)), where k is the number of 'locators'
 	 * <p>
-	 * Returns the less frequent 'headings' if the 'lessFrequent' parameter is true. Otherwise returns the most frequent 'headings'.
-	 * 
-	 * @param minAmount minimum number of returned 'headings'
-	 * @param lessFrequent if <code>true</code> it returns the less frequent 'headings'. If <code>false</code> it returns the most frequent 'headings'
-	 * @return list of the most or less frequent 'headings'
+	 * Returns the number of occurrences of the given 'heading' on the given 'locator'.
 	 * 
+	 * @param heading a word
+	 * @param locator a page number
+	 * @return number of occurrences, 0 if the 'heading' is not on the 'locator'
 	 */
-	public List<String> getXFrequent(int minAmount, boolean lessFrequent) {
-		List<String> tempList = new ArrayList<String>();
-		
-		// get sorted list asc or desc, that is the keys to the map
-		List<String> keys = sortFrequency(lessFrequent);
-		int i = 0;
-		for(String key : keys) {
-			if(i < minAmount) {
-				tempList.add(key);
-			}
-			i++;
-		}		
-		return tempList;
+	public int getOccurrences(String heading, int locator) {
+		Locators locators = indices.get(heading);
+		if(locators == null) return 0;
+		AtomicInteger count = locators.counts.get(locator);
+		return count == null ? 0 : count.get();
 	}
 
 	/**
-	 * Big-O notation - O(n)
+	 * Big-O notation - O(1)
 	 * <p>
-	 * Returns list of 'headings' containing the searched words.
-	 * 
-	 * @param words words to be searched for in the map of indices
-	 * @return list of headings containing the searched words. It may be empty if no words given as an argument were found
+	 * Returns the total number of occurrences of the given 'heading'. It is counted when the occurrences are added.
 	 * 
+	 * @param heading a word
+	 * @return number of occurrences, 0 if the 'heading' does not exist
 	 */
-	public List<String> getWord(Set<String> words) {
-		List<String> tempList = new ArrayList<String>();
-		for(String word : words) {
-			if(indices.containsKey(word.toLowerCase())) {
-				tempList.add(word);
-			}
-		}
-		return tempList;
+	public long getOccurrences(String heading) {
+		Locators locators = indices.get(heading);
+		if(locators == null) return 0;
+		return locators.occurrences.sum();
 	}
-	
+
 	/**
-	 * Big-O notation - O(n)
+	 * Big-O notation - O(k), where k is the number of 'locators'
 	 * <p>
-	 * Returns list of 'headings' containing the searched words based on a regex passed to the method as an argument.
-	 * 
-	 * @param regex a regular expression that is used for searching a words in the map of indices
-	 * @return list of 'headings' containing the searched words. The size may be 0 if no words were found
+	 * Returns an iterator over the 'locators' of the given 'heading' in the ascending order.
+	 * The set of Integers cannot be skipped, so the 'locators' are copied to an array first.
 	 * 
+	 * @param heading a word
+	 * @return iterator over the 'locators'. It has no 'locators' if the 'heading' does not exist
 	 */
-	public List<String> getWordsWithRegex(String regex) {
-		List<String> tempList = new ArrayList<String>();
+	public PostingsIterator getLocatorsIterator(String heading) {
+		int[] locators = getLocators(heading);
+		return IntPostings.iterator(locators, 0, locators.length);
+	}
 
-		Set<String> keys = indices.keySet();
-		for(String key : keys) {
-			if(key.matches(regex.toLowerCase())) {
-				tempList.add(key);
-			}
-		}
-		return tempList;
+	/*
+	 * Returns the set of 'headings'.
+	 */
+	protected Set<String> headings() {
+		return indices.keySet();
 	}
-	
-	/**
-	 * Big-O notation - O(n)
-	 * <p>
-	 * Returns an list o 'headings' containing the searched words based on a frequency passed to the method as an argument.
-	 * 
-	 * @param freq a frequency 
-	 * @return an list of 'headings' containing the searched words with the given frequency
-	 * 
+
+	/*
+	 * The 'locators' of a 'heading': a skip list of 'locators' and their counts, the frequency and the total number of occurrences.
+	 * A new 'locator' is added by putIfAbsent and a count by an atomic increment, so the threads adding to the same 'heading' do not lock.
+	 * The size of a skip list is counted in O(k), so the frequency is counted separately.
 	 */
-	public List<String> getWordsGivenFrequency(int freq) {
-		List<String> tempList = new ArrayList<String>();
-		
-		Set<String> keys = indices.keySet();
-		for(String key : keys) {
-			if(getFrequency(key) == freq) {
-				tempList.add(key);
+	private static class Locators {
+		private ConcurrentSkipListMap<Integer, AtomicInteger> counts = new ConcurrentSkipListMap<Integer, AtomicInteger>();
+		private AtomicInteger frequency = new AtomicInteger();
+		private LongAdder occurrences = new LongAdder();
+
+		public boolean add(int locator, int count) {
+			occurrences.add(count);
+			AtomicInteger existing = counts.get(locator);
+			if(existing == null) {
+				existing = counts.putIfAbsent(locator, new AtomicInteger(count));
+				if(existing == null) {
+					frequency.incrementAndGet();
+					return true;
+				}
 			}
+			existing.addAndGet(count);
+			return false;
 		}
-		return tempList;
-	}
-	
-	/**
-	 * Big-O notation - O(1)
-	 * <p>
-	 * Returns the frequency for the given 'heading' (word) that was passed to the method as an argument. 
-	 * 
-	 * @param heading a word
-	 * @return frequency of the given 'headings'
-	 * 
-	 */	
-	public int getFrequency(String heading){
-		if(this.indices.containsKey(heading)) {			
-			return this.indices.get(heading).size();
-		}
-		return 0;
 	}
 
 	
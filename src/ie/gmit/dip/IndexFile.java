@@ -0,0 +1,348 @@
+package ie.gmit.dip;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The IndexFile class saves a <code>CorpusIndex</code> to a binary file and loads it again, so the documents are not parsed in every session.
+ * <p>
+ * The file consists of:
+ * - a header: a magic number, the version of the format, the CRC32 checksum and the length of the rest of the file
+ * - the number of documents, then for every document its name, the number of its 'locators' (the last page + 1) and the number of its 'headings'
+ * - the number of segments of the corpus, then for every segment its number of documents, the number of 'headings' and the total number of 'locators'
+ * - for every 'heading' of a segment in the alphanumeric order: the 'heading' stored as the length of the prefix shared with the previous 'heading'
+ *   and the rest of the 'heading', the position of the 'heading' in the <code>MappedDictionary</code>, the frequency and the 'locators',
+ *   every 'locator' followed by its count (the number of occurrences of the 'heading' on it)
+ * <p>
+ * All the numbers except for the header are variable-byte integers and the 'locators' are stored as gaps, so a 'locator' usually takes 1 or 2 bytes
+ * and its count 1 byte.
+ * The 'wordDetails' are not stored: they are read from the dictionary given when the file is loaded.
+ * The position in the dictionary makes it O(1) if the same compiled dictionary is used, otherwise the 'heading' is looked up.
+ * <p>
+ * The file is read into memory at once and decoded directly into the arrays of a <code>SealedIndex</code> for every segment,
+ * so the merged segments are not merged again.
+ * It is written to a temporary file first and then moved, so an interrupted save does not corrupt a previously saved file.
+ * The loaded file is not memory-mapped: a mapped file stays open until the mapping is garbage collected,
+ * so on Windows it could not be replaced by the next save.
+ */
+public class IndexFile {
+	/**
+	 * The extension of the index file.
+	 */
+	public static final String EXTENSION = ".idx";
+	static final int MAGIC = 0x494E4458; // 'INDX'
+	static final int VERSION = 3;
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * Creates a new IndexFile object.
+	 */
+	public IndexFile() {
+		super();
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of all the documents
+	 * <p>
+	 * Saves all the documents and the segments of the corpus to the file.
+	 *
+	 * @param corpus the corpus of indexed documents
+	 * @param path the path of the index file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(CorpusIndex corpus, String path) throws IOException {
+		File target = new File(path).getAbsoluteFile();
+		File temp = File.createTempFile("index", EXTENSION, target.getParentFile());
+		try {
+			CRC32 crc = new CRC32();
+			long length;
+			try(FileOutputStream file = new FileOutputStream(temp)) {
+				DataOutputStream header = new DataOutputStream(file);
+				header.writeInt(MAGIC);
+				header.writeInt(VERSION);
+				header.writeInt(0); // The checksum and the length are written when the rest of the file is written
+				header.writeInt(0);
+				header.flush();
+				CheckedOutputStream body = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc);
+				CorpusIndex.Segment[] segments = corpus.segments(); // The documents added in the meantime are not saved
+				int documents = segments.length == 0 ? 0 : segments[segments.length - 1].endDocument;
+				writeVarInt(body, documents);
+				for(int id = 0; id < documents; id++) {
+					writeText(body, corpus.getDocumentName(id), 0);
+					writeVarInt(body, corpus.spanOf(id));
+					writeVarInt(body, corpus.getHeadingsTotal(id));
+				}
+				writeVarInt(body, segments.length);
+				for(CorpusIndex.Segment segment : segments) {
+					writeVarInt(body, segment.endDocument - segment.firstDocument);
+					writeDocument(body, segment.index);
+				}
+				body.flush();
+				length = file.getChannel().position() - HEADER_SIZE;
+			}
+			if(length > Integer.MAX_VALUE - HEADER_SIZE) throw new IOException("The index is too large to be saved: " + length + " bytes");
+			try(RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+				file.seek(8);
+				file.writeInt((int) crc.getValue());
+				file.writeInt((int) length);
+				file.getFD().sync();
+			}
+		}catch(IOException ioEx) {
+			temp.delete();
+			throw ioEx;
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of all the documents
+	 * <p>
+	 * Loads the documents saved to the file into a new CorpusIndex.
+	 * <p>
+	 * The 'wordDetails' of the 'headings' are taken from the given dictionary.
+	 * A 'heading' that is no longer in the dictionary has an empty list of 'wordDetails'.
+	 *
+	 * @param path the path of the index file
+	 * @param dictionary a map of words and word details, preferably the <code>MappedDictionary</code> used for indexing
+	 * @return a corpus of the saved documents
+	 * @throws IOException if the file cannot be read, is not an index file or is corrupted
+	 */
+	public CorpusIndex load(String path, Map<String, List<WordDetails>> dictionary) throws IOException {
+		Path file = Paths.get(path);
+		long size = Files.size(file);
+		if(size < HEADER_SIZE || size > Integer.MAX_VALUE) throw new IOException("Not an index file: " + path);
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)); // Closed when read, so the file may be replaced by save
+		if(buffer.getInt(0) != MAGIC) throw new IOException("Not an index file: " + path);
+		if(buffer.getInt(4) != VERSION) throw new IOException("Unsupported index version: " + path);
+		int length = buffer.getInt(12);
+		if(length < 0 || length != buffer.capacity() - HEADER_SIZE || buffer.getInt(8) != checksum(buffer, HEADER_SIZE, length)) {
+			throw new IOException("The index file is corrupted: " + path);
+		}
+
+		CorpusIndex corpus = new CorpusIndex();
+		int[] pos = { HEADER_SIZE };
+		try {
+			int documents = readVarInt(buffer, pos);
+			String[] names = new String[documents];
+			int[] spans = new int[documents];
+			int[] headings = new int[documents];
+			for(int id = 0; id < documents; id++) {
+				names[id] = readText(buffer, pos, null, 0);
+				spans[id] = readVarInt(buffer, pos);
+				headings[id] = readVarInt(buffer, pos);
+			}
+			int segments = readVarInt(buffer, pos);
+			int first = 0;
+			for(int i = 0; i < segments; i++) {
+				int end = first + readVarInt(buffer, pos);
+				if(end <= first || end > documents) throw new IOException("The index file is corrupted: " + path);
+				corpus.addSegment(Arrays.copyOfRange(names, first, end), Arrays.copyOfRange(spans, first, end),
+						Arrays.copyOfRange(headings, first, end), readDocument(buffer, pos, dictionary));
+				first = end;
+			}
+			if(first != documents) throw new IOException("The index file is corrupted: " + path);
+		}catch(IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("The index file is corrupted: " + path, e);
+		}
+		return corpus;
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators'
+	 * <p>
+	 * Writes the 'headings', the 'locators' and their counts of a document or a segment in the format of the index file.
+	 *
+	 * @param out the stream that the document is written to
+	 * @param document the index of a document
+	 * @throws IOException if the document cannot be written
+	 */
+	static void writeDocument(OutputStream out, Indexable document) throws IOException {
+		int locatorsTotal = 0;
+		for(String heading : document.getHeadings()) {
+			locatorsTotal += document.getFrequency(heading);
+		}
+		writeVarInt(out, document.indicesTotal());
+		writeVarInt(out, locatorsTotal);
+		String previous = "";
+		for(String heading : document.getHeadings()) {
+			int shared = 0;
+			while(shared < Math.min(previous.length(), heading.length()) && previous.charAt(shared) == heading.charAt(shared)) shared++;
+			writeVarInt(out, shared);
+			writeText(out, heading, shared);
+
+			List<WordDetails> wordDetails = document.getWordDetails(heading);
+			MappedDictionary dictionary = wordDetails != null ? MappedDictionary.dictionaryOf(wordDetails) : null;
+			writeVarInt(out, dictionary != null ? dictionary.indexOf(heading) + 1 : 0); // 0 if there is no reference
+
+			int[] locators = document.getLocators(heading);
+			int[] counts = SealedIndex.countsOf(document, heading, locators);
+			writeVarInt(out, locators.length);
+			int last = 0;
+			for(int i = 0; i < locators.length; i++) {
+				writeVarInt(out, locators[i] - last);
+				writeVarInt(out, counts[i]);
+				last = locators[i];
+			}
+			previous = heading;
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators'
+	 * <p>
+	 * Reads a document or a segment written by writeDocument into a SealedIndex.
+	 * The first element of 'pos' is the position in the buffer, it is moved after the document.
+	 *
+	 * @param buffer the buffer containing the document
+	 * @param pos a single element array with the position
+	 * @param dictionary a map of words and word details
+	 * @return the index of the document
+	 * @throws IndexOutOfBoundsException if the document is not complete
+	 */
+	static SealedIndex readDocument(ByteBuffer buffer, int[] pos, Map<String, List<WordDetails>> dictionary) {
+		MappedDictionary mapped = dictionary instanceof MappedDictionary ? (MappedDictionary) dictionary : null;
+		int termsTotal = readVarInt(buffer, pos);
+		int locatorsTotal = readVarInt(buffer, pos);
+		String[] terms = new String[termsTotal];
+		int[] offsets = new int[termsTotal + 1];
+		int[] locators = new int[locatorsTotal];
+		int[] counts = new int[locatorsTotal];
+		List<List<WordDetails>> definitions = new ArrayList<List<WordDetails>>(termsTotal);
+		int total = 0;
+		String previous = "";
+		for(int i = 0; i < termsTotal; i++) {
+			int shared = readVarInt(buffer, pos);
+			String term = readText(buffer, pos, previous, shared);
+			int reference = readVarInt(buffer, pos) - 1;
+			List<WordDetails> wordDetails = mapped != null ? mapped.definitionsOf(reference, term) : null;
+			if(wordDetails == null) wordDetails = dictionary.get(term);
+			int frequency = readVarInt(buffer, pos);
+			int locator = 0;
+			for(int j = 0; j < frequency; j++) {
+				locator += readVarInt(buffer, pos);
+				counts[total] = readVarInt(buffer, pos);
+				locators[total++] = locator;
+			}
+			terms[i] = term;
+			offsets[i + 1] = total;
+			definitions.add(wordDetails != null ? wordDetails : Collections.<WordDetails>emptyList());
+			previous = term;
+		}
+		return new SealedIndex(terms, offsets, locators, counts, definitions);
+	}
+
+	/*
+	 * Writes the characters of the text from the given position as the length and the UTF-8 bytes.
+	 */
+	static void writeText(OutputStream out, String text, int from) throws IOException {
+		byte[] encoded = text.substring(from).getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, encoded.length);
+		out.write(encoded);
+	}
+
+	/*
+	 * Reads the text written by writeText and prepends the given number of characters of the prefix.
+	 */
+	static String readText(ByteBuffer buffer, int[] pos, String prefix, int shared) {
+		int length = readVarInt(buffer, pos);
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(pos[0] + i);
+		}
+		pos[0] += length;
+		String text = new String(bytes, StandardCharsets.UTF_8);
+		return shared == 0 ? text : prefix.substring(0, shared) + text;
+	}
+
+	/*
+	 * Writes an int as a variable-byte integer, like CompressedPostings: 7 bits per byte, the highest bit set if more bytes follow.
+	 */
+	static void writeVarInt(OutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/*
+	 * Reads a variable-byte integer. The first element of 'pos' is the position in the buffer, it is moved after the read bytes.
+	 */
+	static int readVarInt(ByteBuffer buffer, int[] pos) {
+		int offset = pos[0];
+		int b = buffer.get(offset++);
+		int value = b & 0x7F;
+		for(int shift = 7; (b & 0x80) != 0; shift += 7) {
+			b = buffer.get(offset++);
+			value |= (b & 0x7F) << shift;
+		}
+		pos[0] = offset;
+		return value;
+	}
+
+	/*
+	 * Writes a long as a variable-byte integer, like writeVarInt.
+	 */
+	static void writeVarLong(OutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/*
+	 * Reads a variable-byte long written by writeVarLong. The first element of 'pos' is moved after the read bytes.
+	 */
+	static long readVarLong(ByteBuffer buffer, int[] pos) {
+		int offset = pos[0];
+		int b = buffer.get(offset++);
+		long value = b & 0x7F;
+		for(int shift = 7; (b & 0x80) != 0; shift += 7) {
+			b = buffer.get(offset++);
+			value |= (long) (b & 0x7F) << shift;
+		}
+		pos[0] = offset;
+		return value;
+	}
+
+	/*
+	 * Returns the CRC32 checksum of the range of the buffer.
+	 */
+	static int checksum(ByteBuffer buffer, int offset, int length) {
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[64 * 1024];
+		ByteBuffer range = buffer.duplicate();
+		range.position(offset);
+		range.limit(offset + length);
+		while(range.hasRemaining()) {
+			int size = Math.min(bytes.length, range.remaining());
+			range.get(bytes, 0, size);
+			crc.update(bytes, 0, size);
+		}
+		return (int) crc.getValue();
+	}
+
+}
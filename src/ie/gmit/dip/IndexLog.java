@@ -0,0 +1,497 @@
+package ie.gmit.dip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The IndexLog class is a write-ahead log of the documents added to a <code>CorpusIndex</code> since its last checkpoint,
+ * the last time the corpus was saved to an index file (see <code>IndexFile</code>).
+ * <p>
+ * It has two kinds of records, every record is its length, its CRC32 checksum and its content:
+ * - a document: the id, name, 'headings', 'locators' and counts of a document added to the corpus,
+ * - a part of a document that is being indexed: the name of the document, the number and the bounds of the part
+ *   (e.g. a chunk of a file parsed by one worker thread of a <code>QueryParser</code>) and the 'headings', 'locators' and counts found in it.
+ * <p>
+ * The parts are appended while a document is being parsed, so a crash in the middle of a long document does not lose the parts already indexed:
+ * when the same document is parsed again, the logged parts are read from the log instead of being parsed (see QueryParser setLog).
+ * The parts of a document are no longer needed when the document itself is appended.
+ * <p>
+ * The records are only appended, the log is never modified in place.
+ * A checkpoint saves the corpus and replaces the log with the parts of the documents that have not been appended yet.
+ * <p>
+ * Writing a record does not wait for the disk. The commit method forces all the records written so far to the disk at once (group commit),
+ * so many documents or parts cost one fsync. A record that has not been committed may be lost by a crash, then it is indexed again.
+ * <p>
+ * After a crash the corpus is recovered from the last checkpoint and the documents of the log (see recover).
+ * A record that was being written during the crash is incomplete or has a wrong checksum, so it is removed when the log is opened.
+ * <p>
+ * It may be used by many threads at once.
+ */
+public class IndexLog implements Closeable {
+	/**
+	 * The extension added to the path of the index file to get the path of its log.
+	 */
+	public static final String EXTENSION = ".log";
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int DOCUMENT = 0; // The kinds of records
+	private static final int PART = 1;
+	private Path path;
+	private FileChannel channel;
+	private long size; // The end of the last record
+	private long committed; // The end of the last record forced to the disk
+	private Map<String, Map<Integer, long[]>> parts = new HashMap<String, Map<Integer, long[]>>(); // The start and the end of the logged parts by document and number
+	private final Object commitLock = new Object();
+	private final Object checkpointLock = new Object();
+
+	/**
+	 * Big-O notation - O(s), where s is the size of the log
+	 * <p>
+	 * Opens the log, or creates it if it does not exist. The records are appended at the end of the file.
+	 * <p>
+	 * The log is read to find the parts of the documents that have not been appended yet.
+	 * It is read up to the first incomplete or corrupted record, e.g. a record that was being written during a crash.
+	 * The file is truncated there, so the following records are appended after the last valid one.
+	 *
+	 * @param path the path of the log
+	 * @throws IOException if the file cannot be opened or read
+	 */
+	public IndexLog(String path) throws IOException {
+		super();
+		this.path = Paths.get(path);
+		channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		size = channel.size();
+		committed = size;
+		try {
+			scan();
+		}catch(IOException ioEx) {
+			channel.close();
+			throw ioEx;
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of the document
+	 * <p>
+	 * Appends the document to the log. The record is written to the file, but it is not forced to the disk until commit is called.
+	 * The document must have been added to the corpus, so a checkpoint started afterwards saves it.
+	 * The parts logged for the document are no longer kept by the checkpoints.
+	 *
+	 * @param id the id of the document in the corpus
+	 * @param name the name of the document
+	 * @param document the index of the document
+	 * @throws IOException if the record cannot be written
+	 */
+	public void append(int id, String name, Indexable document) throws IOException {
+		// The record is encoded before the lock is taken, so the documents may be encoded by many threads at once
+		ByteArrayOutputStream record = newRecord(DOCUMENT);
+		IndexFile.writeVarInt(record, id);
+		IndexFile.writeText(record, name, 0);
+		IndexFile.writeDocument(record, document);
+		synchronized(this) {
+			write(record);
+			parts.remove(name);
+		}
+	}
+
+	/**
+	 * Big-O notation - O(p log(p)), where p is the number of pairs of the part
+	 * <p>
+	 * Appends a part of a document that is being indexed. The record is written to the file, but it is not forced to the disk until commit is called.
+	 * <p>
+	 * A part with the same name and number replaces the part logged before.
+	 *
+	 * @param name the name of the document
+	 * @param number the number of the part in the document
+	 * @param start the start of the part in the text, e.g. its first byte or line
+	 * @param end the end of the part in the text (exclusive)
+	 * @param words the number of words of the part
+	 * @param partial the 'headings', 'locators' and counts found in the part
+	 * @param terms the TermTable that the ids of the partial index refer to
+	 * @throws IOException if the record cannot be written
+	 */
+	public void appendPart(String name, int number, long start, long end, long words, PartialIndex partial, TermTable terms) throws IOException {
+		ByteArrayOutputStream record = newRecord(PART);
+		IndexFile.writeText(record, name, 0);
+		IndexFile.writeVarInt(record, number);
+		IndexFile.writeVarLong(record, start);
+		IndexFile.writeVarLong(record, end);
+		IndexFile.writeVarLong(record, words);
+		partial.write(record, terms);
+		synchronized(this) {
+			long position = write(record);
+			partsOf(name).put(number, new long[] { position, size });
+		}
+	}
+
+	/**
+	 * Big-O notation - O(p), where p is the number of pairs of the part
+	 * <p>
+	 * Returns a logged part of a document, if it has the given bounds.
+	 *
+	 * @param name the name of the document
+	 * @param number the number of the part in the document
+	 * @param start the start of the part in the text
+	 * @param end the end of the part in the text (exclusive)
+	 * @param terms the TermTable that the words are found in
+	 * @return the logged part, or null if the part has not been logged or it has other bounds, e.g. the text has been changed
+	 * @throws IOException if the part cannot be read
+	 */
+	public synchronized Part getPart(String name, int number, long start, long end, TermTable terms) throws IOException {
+		Map<Integer, long[]> logged = parts.get(name);
+		long[] range = logged != null ? logged.get(number) : null;
+		if(range == null) return null;
+		ByteBuffer buffer = read(range[0], range[1]);
+		int[] pos = { RECORD_HEADER_SIZE };
+		IndexFile.readVarInt(buffer, pos); // The kind
+		IndexFile.readText(buffer, pos, null, 0);
+		IndexFile.readVarInt(buffer, pos);
+		if(IndexFile.readVarLong(buffer, pos) != start || IndexFile.readVarLong(buffer, pos) != end) return null;
+		long words = IndexFile.readVarLong(buffer, pos);
+		return new Part(PartialIndex.read(buffer, pos, terms), words);
+	}
+
+	/**
+	 * Big-O notation - O(1), plus the time of one fsync
+	 * <p>
+	 * Forces all the records appended so far to the disk. When it returns, the records survive a crash.
+	 * <p>
+	 * If many threads commit at once, one fsync commits the records of all of them.
+	 * Nothing is forced if there are no new records.
+	 *
+	 * @throws IOException if the records cannot be forced to the disk
+	 */
+	public void commit() throws IOException {
+		long target;
+		synchronized(this) {
+			target = size;
+		}
+		synchronized(commitLock) {
+			if(committed >= target) return; // Committed by another thread in the meantime
+			long end;
+			synchronized(this) {
+				end = size; // The records appended while waiting for the lock are committed too
+			}
+			channel.force(false);
+			committed = end;
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n + k) to save the corpus, where n is the number of 'headings' and k is the number of 'locators' of the corpus,
+	 * plus O(s) to replace the log, where s is the size of the records kept
+	 * <p>
+	 * Saves the corpus to the index file and removes the documents from the log, as they are in the index file.
+	 * The parts of the documents that have not been appended yet and the records appended while the corpus is being saved are kept.
+	 * <p>
+	 * The corpus is saved without holding the locks of the log, so the other threads append and commit records in the meantime.
+	 * Then the records that are kept are written to a new log, which replaces the log atomically.
+	 * A crash in the meantime loses nothing: the records of the documents that are already in the index file are skipped by the recovery.
+	 *
+	 * @param corpus the corpus of indexed documents
+	 * @param indexPath the path of the index file
+	 * @throws IOException if the corpus cannot be saved or the log cannot be replaced
+	 */
+	public void checkpoint(CorpusIndex corpus, String indexPath) throws IOException {
+		synchronized(checkpointLock) {
+			long mark;
+			synchronized(this) {
+				mark = size; // The documents appended before it have been added to the corpus, so they are saved
+			}
+			new IndexFile().save(corpus, indexPath);
+			synchronized(commitLock) {
+				synchronized(this) {
+					compact(mark);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of the log
+	 * <p>
+	 * Adds the documents of the log to the corpus.
+	 * A record is added only if it has the id of the next document of the corpus, the records of the documents that the corpus already has are skipped.
+	 * The parts are not added, they are read by the QueryParser that indexes their document again.
+	 * <p>
+	 * If the record of a document is missing, the log is truncated there, so the following records are appended after the last valid one.
+	 *
+	 * @param corpus the corpus recovered from the last checkpoint
+	 * @param dictionary a map of words and word details, see <code>IndexFile</code>
+	 * @return the number of documents added to the corpus
+	 * @throws IOException if the log cannot be read
+	 */
+	public synchronized int replay(CorpusIndex corpus, Map<String, List<WordDetails>> dictionary) throws IOException {
+		ByteBuffer buffer = read(0, size);
+		int replayed = 0;
+		int valid = 0; // The end of the last valid record
+		int end;
+		while((end = recordEnd(buffer, valid)) >= 0) {
+			int[] pos = { valid + RECORD_HEADER_SIZE };
+			if(IndexFile.readVarInt(buffer, pos) == DOCUMENT) {
+				int id = IndexFile.readVarInt(buffer, pos);
+				if(id > corpus.documentsTotal()) break; // A record is missing
+				if(id == corpus.documentsTotal()) {
+					String name = IndexFile.readText(buffer, pos, null, 0);
+					corpus.addDocument(name, IndexFile.readDocument(buffer, pos, dictionary));
+					replayed++;
+				}
+			}
+			valid = end;
+		}
+		if(valid < size) truncate(valid);
+		committed = size;
+		return replayed;
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where n is the number of 'headings' and k is the number of 'locators' of the corpus
+	 * <p>
+	 * Recovers the corpus saved to the index file and the documents added to its log since.
+	 * It returns an empty corpus if neither of them exists.
+	 *
+	 * @param indexPath the path of the index file, the path of the log is the same with the EXTENSION added
+	 * @param dictionary a map of words and word details, see <code>IndexFile</code>
+	 * @return the recovered corpus
+	 * @throws IOException if the index file or the log cannot be read
+	 */
+	public static CorpusIndex recover(String indexPath, Map<String, List<WordDetails>> dictionary) throws IOException {
+		CorpusIndex corpus = new File(indexPath).exists() ? new IndexFile().load(indexPath, dictionary) : new CorpusIndex();
+		if(!new File(indexPath + EXTENSION).exists()) return corpus;
+		try(IndexLog log = new IndexLog(indexPath + EXTENSION)) {
+			log.replay(corpus, dictionary);
+		}
+		return corpus;
+	}
+
+	/**
+	 * Closes the log. The records that have not been committed are not forced to the disk.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/*
+	 * Reads the records of the log, keeps the bounds of the parts of the documents that have not been appended
+	 * and truncates the log after the last valid record.
+	 */
+	private synchronized void scan() throws IOException {
+		ByteBuffer buffer = read(0, size);
+		int valid = 0;
+		int end;
+		while((end = recordEnd(buffer, valid)) >= 0) {
+			int[] pos = { valid + RECORD_HEADER_SIZE };
+			if(IndexFile.readVarInt(buffer, pos) == DOCUMENT) {
+				IndexFile.readVarInt(buffer, pos);
+				parts.remove(IndexFile.readText(buffer, pos, null, 0));
+			}else {
+				String name = IndexFile.readText(buffer, pos, null, 0);
+				partsOf(name).put(IndexFile.readVarInt(buffer, pos), new long[] { valid, end });
+			}
+			valid = end;
+		}
+		if(valid < size) truncate(valid);
+	}
+
+	/*
+	 * Returns the end of the record that starts at the position, or -1 if the record is incomplete, corrupted or of an unknown kind.
+	 */
+	private static int recordEnd(ByteBuffer buffer, int start) {
+		if(start + RECORD_HEADER_SIZE > buffer.limit()) return -1;
+		int length = buffer.getInt(start);
+		int content = start + RECORD_HEADER_SIZE;
+		if(length < 1 || length > buffer.limit() - content) return -1; // Incomplete
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), content, length);
+		if((int) crc.getValue() != buffer.getInt(start + 4)) return -1; // Corrupted
+		int kind = buffer.get(content);
+		return kind == DOCUMENT || kind == PART ? content + length : -1;
+	}
+
+	/*
+	 * Returns a new record of the kind. The length and the checksum are set when the record is written.
+	 */
+	private static ByteArrayOutputStream newRecord(int kind) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		for(int i = 0; i < RECORD_HEADER_SIZE; i++) {
+			record.write(0);
+		}
+		IndexFile.writeVarInt(record, kind);
+		return record;
+	}
+
+	/*
+	 * Sets the length and the checksum of the record, appends it to the file and returns its position. The caller holds the lock.
+	 */
+	private long write(ByteArrayOutputStream record) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), RECORD_HEADER_SIZE, buffer.capacity() - RECORD_HEADER_SIZE);
+		buffer.putInt(0, buffer.capacity() - RECORD_HEADER_SIZE);
+		buffer.putInt(4, (int) crc.getValue());
+		long start = size;
+		long position = start;
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		size = position;
+		return start;
+	}
+
+	/*
+	 * Reads the bytes of the log from the start to the end (exclusive) into a buffer ready to be read from the position 0. The caller holds the lock.
+	 */
+	private ByteBuffer read(long start, long end) throws IOException {
+		if(end - start > Integer.MAX_VALUE) throw new IOException("The log is too large to be read: " + (end - start) + " bytes");
+		ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, start + buffer.position()) < 0) break;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/*
+	 * Truncates the log at the position and forgets the parts after it. The caller holds the lock.
+	 */
+	private void truncate(long position) throws IOException {
+		channel.truncate(position);
+		channel.force(true);
+		size = position;
+		for(Iterator<Map<Integer, long[]>> documents = parts.values().iterator(); documents.hasNext();) {
+			Map<Integer, long[]> logged = documents.next();
+			for(Iterator<long[]> ranges = logged.values().iterator(); ranges.hasNext();) {
+				if(ranges.next()[1] > position) ranges.remove();
+			}
+			if(logged.isEmpty()) documents.remove();
+		}
+	}
+
+	/*
+	 * Replaces the log by the parts logged before the mark that are still kept and all the records from the mark.
+	 * The new log is written to a temporary file first and then moved, so a crash leaves either the old or the new log.
+	 * The caller holds both locks.
+	 */
+	private void compact(long mark) throws IOException {
+		List<long[]> kept = new ArrayList<long[]>();
+		long keptSize = 0;
+		for(Map<Integer, long[]> logged : parts.values()) {
+			for(long[] range : logged.values()) {
+				if(range[1] <= mark) {
+					kept.add(range);
+					keptSize += range[1] - range[0];
+				}
+			}
+		}
+		if(keptSize == 0 && mark == size) { // Nothing is kept, like after every checkpoint of a batch without parts in flight
+			truncate(0);
+			committed = 0;
+			return;
+		}
+		File temp = File.createTempFile("index", EXTENSION, path.toAbsolutePath().getParent().toFile());
+		long[] starts = new long[kept.size()]; // The new starts of the kept parts
+		try(FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+			long position = 0;
+			for(int i = 0; i < kept.size(); i++) {
+				starts[i] = position;
+				ByteBuffer record = read(kept.get(i)[0], kept.get(i)[1]);
+				while(record.hasRemaining()) {
+					position += target.write(record, position);
+				}
+			}
+			ByteBuffer tail = read(mark, size);
+			while(tail.hasRemaining()) {
+				position += target.write(tail, position);
+			}
+			target.force(true);
+		}catch(IOException ioEx) {
+			temp.delete();
+			throw ioEx;
+		}
+		channel.close();
+		try {
+			Files.move(temp.toPath(), path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}finally {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		for(Map<Integer, long[]> logged : parts.values()) {
+			for(long[] range : logged.values()) {
+				if(range[0] >= mark) { // Appended while the corpus was being saved
+					range[0] += keptSize - mark;
+					range[1] += keptSize - mark;
+				}
+			}
+		}
+		for(int i = 0; i < kept.size(); i++) {
+			long[] range = kept.get(i);
+			range[1] = starts[i] + range[1] - range[0];
+			range[0] = starts[i];
+		}
+		size = channel.size();
+		committed = size;
+	}
+
+	/*
+	 * Returns the parts logged for the document, a new empty map if there are none. The caller holds the lock.
+	 */
+	private Map<Integer, long[]> partsOf(String name) {
+		Map<Integer, long[]> logged = parts.get(name);
+		if(logged == null) {
+			logged = new HashMap<Integer, long[]>();
+			parts.put(name, logged);
+		}
+		return logged;
+	}
+
+	/**
+	 * The Part class holds a part of a document read from the log.
+	 */
+	public static class Part {
+		private PartialIndex index;
+		private long words;
+
+		private Part(PartialIndex index, long words) {
+			this.index = index;
+			this.words = words;
+		}
+
+		/**
+		 * Returns the 'headings', 'locators' and counts found in the part.
+		 *
+		 * @return the partial index of the part
+		 */
+		public PartialIndex getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the number of words of the part.
+		 *
+		 * @return number of words
+		 */
+		public long getWords() {
+			return words;
+		}
+	}
+
+}
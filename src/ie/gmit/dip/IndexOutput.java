@@ -1,9 +1,9 @@
 package ie.gmit.dip;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * @author  Pawel Zamorski
@@ -29,9 +29,7 @@ public class IndexOutput {
 	 * @param headings list of headings
 	 * 
 	 */
-	public void printIndices(Indexable indexer, List<String>headings) {
-		Map<String, Set<Integer>> indicesMap = indexer.getIndices();
-		Map<String, List<WordDetails>> dictionaryMap = indexer.getWordDefinitions();
+	public void printIndices(Indexable indexer, Iterable<String> headings) {
 		
     	System.out.println("____________________________________________________________________________________________________");    	
     	System.out.printf("%1$-20s %2$s %3$-20s%n", "    Word", "|", "    Details");
@@ -40,7 +38,7 @@ public class IndexOutput {
 		for( String heading : headings) {
 	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "    " + capitailizeWord(heading), "|", "    Definitions:");
 
-			Collection<WordDetails> wordsDet = dictionaryMap.get(heading);
+			Collection<WordDetails> wordsDet = indexer.getWordDetails(heading);
 			for(WordDetails wordDet : wordsDet) {
 				String word = wordDet.getWord();
 				String wordType = wordDet.getWordType();
@@ -61,10 +59,27 @@ public class IndexOutput {
 			}
 	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "");			
 	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "    Pages:");
-	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "    " + indicesMap.get(heading.toString()));			
+	    	printPages(indexer, indexer.getLocators(heading));
+	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "    Occurrences: " + indexer.getOccurrences(heading));
 	    	System.out.println("____________________________________________________________________________________________________");    	
 		}
 	}
+
+	/**
+	 * Displays the pages found by a query to the console.
+	 * The pages of a corpus are displayed for every document, one document per line.
+	 * 
+	 * @param indexer an object that is Indexable
+	 * @param locators the 'locators' of the pages in the ascending order
+	 * 
+	 */
+	public void printPages(Indexable indexer, int[] locators) {
+		if(indexer instanceof CorpusIndex) {
+			printDocumentPages((CorpusIndex) indexer, locators);
+		}else {
+	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "    " + Arrays.toString(locators));
+		}
+	}
 	
 	/**
 	 * Displays indexed words to the console.
@@ -72,7 +87,7 @@ public class IndexOutput {
 	 * @param wordsSet words to be displayed
 	 * 
 	 */	
-	public void printWords(List<String> wordsSet) {
+	public void printWords(Iterable<String> wordsSet) {
     	int i = 0;
     	for( String key : wordsSet) {
     		i++;
@@ -84,6 +99,53 @@ public class IndexOutput {
     	}
 	}
 	
+	/**
+	 * Displays the statistics of the documents indexed by a <code>BatchIndexer</code> to the console, one document per line,
+	 * followed by the totals of all the documents.
+	 * 
+	 * @param statistics the statistics of the documents
+	 * @param corpus the corpus that the documents were added to
+	 * @param time the time of indexing all the documents in nanoseconds
+	 * 
+	 */
+	public void printStatistics(List<BatchIndexer.Statistics> statistics, CorpusIndex corpus, long time) {
+		System.out.println("____________________________________________________________________________________________________");
+		System.out.printf("%1$-40s %2$8s %3$12s %4$12s %5$12s%n", "Document", "Time (s)", "Words", "Words/sec", "Unique words");
+		System.out.println("____________________________________________________________________________________________________");
+		long wordsTotal = 0;
+		int failed = 0;
+		for(BatchIndexer.Statistics document : statistics) {
+			if(document.getError() != null) {
+				System.out.printf("%1$-40s %2$s%n", document.getName(), "FAILED: " + document.getError());
+				failed++;
+				continue;
+			}
+			System.out.printf("%1$-40s %2$8.2f %3$12d %4$12.0f %5$12d%n", document.getName(), document.getTime() / 1e9,
+					document.getWordsTotal(), document.getWordsPerSecond(), document.getUniqueWords());
+			wordsTotal += document.getWordsTotal();
+		}
+		System.out.println("____________________________________________________________________________________________________");
+		System.out.printf("%1$-40s %2$8.2f %3$12d %4$12.0f %5$12d%n", (statistics.size() - failed) + " documents indexed, " + failed + " failed",
+				time / 1e9, wordsTotal, time > 0 ? wordsTotal * 1e9 / time : 0, corpus.indicesTotal());
+	}
+
+	/*
+	 * Displays the pages of the 'locators' in every document of the corpus, one document per line.
+	 */
+	private void printDocumentPages(CorpusIndex corpus, int[] locators) {
+		int from = 0;
+		while(from < locators.length) {
+			int id = corpus.documentOf(locators[from]);
+			int to = from;
+			List<Integer> pages = new ArrayList<Integer>();
+			while(to < locators.length && corpus.documentOf(locators[to]) == id) {
+				pages.add(corpus.pageOf(locators[to++]));
+			}
+	    	System.out.printf("%1$-20s %2$s %3$-20s%n", "", "|", "    " + corpus.getDocumentName(id) + ": " + pages);
+			from = to;
+		}
+	}
+
 	/*
 	 *  Converts the first letter of a string to upper case.
 	 * @param str a string to be converted
@@ -0,0 +1,149 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The IndexStressTest class checks that the addIndex method of the indices is atomic when many threads add the same 'headings' at once.
+ * <p>
+ * Every thread adds every 'locator' of a few hot 'headings', so all the threads contend for the same 'headings' and the same 'locators'.
+ * Half of the threads add the 'locators' in the ascending order (like the pages of a text), the other half in a random order.
+ * The threads are started together and the run is repeated for the <code>Index</code> and for the <code>CompactIndex</code>
+ * with both kinds of <code>Postings</code>.
+ * <p>
+ * After every run the exact result is checked: every 'heading' has all the 'locators' once, its frequency is the number of 'locators',
+ * every 'locator' is counted once by every thread, addIndex returned true once for every 'locator' and the sealed copy is the same.
+ * It exits with the status 1 if a check fails.
+ * <p>
+ * It is run from the command prompt:
+ * java -cp .\indexer.jar ie.gmit.dip.IndexStressTest [threads] [locators] [rounds]
+ */
+public class IndexStressTest {
+	private static final String[] HEADINGS = { "java", "thread", "index", "lock" };
+
+	/**
+	 * Runs the test.
+	 *
+	 * @param args optionally the number of threads (twice the number of available processors and at least 4 by default),
+	 * 			the number of 'locators' of every 'heading' (2000 by default) and the number of rounds (5 by default)
+	 * @throws InterruptedException if the test is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+		int locators = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		String[] names = { "Index", "CompactIndex", "CompactIndex (compressed)" };
+
+		List<String> failures = new ArrayList<String>();
+		for(int round = 0; round < rounds; round++) {
+			for(int i = 0; i < names.length; i++) {
+				Indexable index = i == 0 ? new Index() : new CompactIndex(i == 2);
+				long start = System.nanoTime();
+				int added = run(index, threads, locators, round);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				List<String> errors = check(index, threads, locators, added);
+				System.out.printf("%1$-28s round %2$d %3$8.3f s %4$s%n", names[i], round, seconds, errors.isEmpty() ? "OK" : "FAILED");
+				for(String error : errors) {
+					failures.add(names[i] + " round " + round + ": " + error);
+				}
+			}
+		}
+		if(failures.isEmpty()) {
+			System.out.println("All checks passed: " + threads + " threads, " + HEADINGS.length + " 'headings', " + locators + " 'locators' per 'heading'");
+			return;
+		}
+		for(String failure : failures) {
+			System.out.println(failure);
+		}
+		System.exit(1);
+	}
+
+	/*
+	 * Adds every 'locator' of every 'heading' from every thread and returns the number of calls of addIndex that returned true.
+	 */
+	private static int run(Indexable index, int threads, int locators, int round) throws InterruptedException {
+		CountDownLatch ready = new CountDownLatch(threads);
+		CountDownLatch go = new CountDownLatch(1);
+		AtomicInteger added = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> workers = new ArrayList<Thread>();
+		for(int t = 0; t < threads; t++) {
+			// The 'locators' of the thread: ascending for the even threads, shuffled for the odd threads
+			List<Integer> order = new ArrayList<Integer>(locators);
+			for(int locator = 0; locator < locators; locator++) {
+				order.add(locator);
+			}
+			if(t % 2 == 1) Collections.shuffle(order, new Random(31L * round + t));
+			Thread worker = new Thread(new Runnable() {
+				public void run() {
+					try {
+						ready.countDown();
+						go.await();
+						List<WordDetails> wordDetails = new ArrayList<WordDetails>();
+						for(Integer locator : order) {
+							for(String heading : HEADINGS) {
+								if(index.addIndex(heading, locator, wordDetails)) added.incrementAndGet();
+							}
+						}
+					}catch(Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		ready.await();
+		go.countDown(); // Start all the threads at once
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		if(failure.get() != null) throw new IllegalStateException("A thread failed", failure.get());
+		return added.get();
+	}
+
+	/*
+	 * Returns the list of failed checks of the index.
+	 */
+	private static List<String> check(Indexable index, int threads, int locators, int added) {
+		List<String> errors = new ArrayList<String>();
+		int[] expectedLocators = new int[locators];
+		int[] expectedCounts = new int[locators];
+		for(int locator = 0; locator < locators; locator++) {
+			expectedLocators[locator] = locator;
+			expectedCounts[locator] = threads;
+		}
+		SortedMap<Integer, Integer> expectedHistogram = new TreeMap<Integer, Integer>();
+		expectedHistogram.put(locators, HEADINGS.length);
+
+		if(added != HEADINGS.length * locators) errors.add("addIndex returned true " + added + " times, expected " + HEADINGS.length * locators);
+		if(index.indicesTotal() != HEADINGS.length) errors.add(index.indicesTotal() + " 'headings', expected " + HEADINGS.length);
+		if(!index.getFrequencyHistogram().equals(expectedHistogram)) errors.add("histogram " + index.getFrequencyHistogram() + ", expected " + expectedHistogram);
+		Indexable sealed = index.seal();
+		for(String heading : HEADINGS) {
+			if(index.getFrequency(heading) != locators) errors.add("'" + heading + "' frequency " + index.getFrequency(heading) + ", expected " + locators);
+			if(!Arrays.equals(index.getLocators(heading), expectedLocators)) errors.add("'" + heading + "' has wrong 'locators'");
+			if(!Arrays.equals(index.getCounts(heading), expectedCounts)) errors.add("'" + heading + "' has wrong counts");
+			if(index.getOccurrences(heading) != (long) threads * locators) {
+				errors.add("'" + heading + "' occurrences " + index.getOccurrences(heading) + ", expected " + (long) threads * locators);
+			}
+			if(!Arrays.equals(sealed.getLocators(heading), expectedLocators) || !Arrays.equals(sealed.getCounts(heading), expectedCounts)) {
+				errors.add("'" + heading + "' differs in the sealed index");
+			}
+		}
+		return errors;
+	}
+
+}
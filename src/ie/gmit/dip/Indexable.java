@@ -1,8 +1,11 @@
 package ie.gmit.dip;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.SortedMap;
 
 /**
  * @author  Pawel Zamorski
@@ -23,6 +26,9 @@ import java.util.Set;
  * Some methods use a frequency of 'heading'.
  * The frequency of 'heading' is the number of 'locators' (pages or lines) associated with a 'heading'.
  * The frequency is not the total number of times a 'heading' appeared in a document, but the number of 'locators'.
+ * <p>
+ * The number of times a 'heading' appeared is its number of occurrences. Every 'locator' has a count, the number of occurrences of the 'heading' on it,
+ * so the occurrences of a 'heading' are the sum of the counts of its 'locators'. The counts are used for ranking, e.g. the pages where a word appears most.
  */
 public interface Indexable {
 
@@ -41,6 +47,20 @@ public interface Indexable {
 	 */
 	public boolean addIndex(String heading, Integer locator, List<WordDetails> wordDetails);
 
+	/**
+	 * Returns true if the 'heading' and associated 'locator' and 'wordDetails' was successfully added to the map of indices.
+	 * It adds the given number of occurrences to the count of the 'locator' at once, e.g. when the occurrences have been counted while parsing.
+	 * <p>
+	 * It returns false if the 'locator' already existed in a associated set of 'locators'.
+	 * 
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param count the number of occurrences on the 'locator', greater than 0
+	 * @param wordDetails word details
+	 * @return true if the 'locator' was added to the set of 'locators', otherwise false
+	 */
+	public boolean addIndex(String heading, int locator, int count, List<WordDetails> wordDetails);
+
 	/**
 	 * Returns the indices as a map of 'headings' and associated set of 'locators'.
 	 * <p>
@@ -57,6 +77,14 @@ public interface Indexable {
 	 * @return a map of words definitions
 	 */
 	public Map<String, List<WordDetails>> getWordDefinitions();		
+
+	/**
+	 * Returns the list of 'wordDetails' (dictionary word definitions) of the given 'heading'.
+	 * 
+	 * @param heading a word
+	 * @return list of 'wordDetails' or null if the 'heading' does not exist
+	 */
+	public List<WordDetails> getWordDetails(String heading);
 	
 	/**
 	 * Returns a total number of unique 'headings' (words).
@@ -81,6 +109,27 @@ public interface Indexable {
 	 */
 	public List<String> getHeadingsSetDesc();
 
+	/**
+	 * Returns the 'headings' as a sorted set in the alphanumeric ascending order.
+	 * <p>
+	 * The returned set is an unmodifiable view, it is not copied.
+	 * Use its descendingSet for the alphanumeric descending order and subSet, headSet or tailSet for a range of 'headings'.
+	 * 
+	 * @return sorted set of 'headings'
+	 */
+	public NavigableSet<String> getHeadings();
+
+	/**
+	 * Returns the 'headings' from 'fromHeading' (inclusive) to 'toHeading' (exclusive) as a sorted set in the alphanumeric ascending order.
+	 * <p>
+	 * The returned set is an unmodifiable view, it is not copied.
+	 * 
+	 * @param fromHeading the lowest 'heading' (inclusive)
+	 * @param toHeading the highest 'heading' (exclusive)
+	 * @return sorted set of 'headings' in the range
+	 */
+	public NavigableSet<String> getHeadingsRange(String fromHeading, String toHeading);
+
 	/**
 	 * Returns sorted list of 'headings' in an ascending or descending order.
 	 * The 'headings' with the same frequency are sorted in the alphanumeric ascending order.
@@ -91,14 +140,14 @@ public interface Indexable {
 
 	
 	/**
-	 * Returns list of 'headings' containing the most or less frequent 'headings' (words) in the alphanumeric ascending order.
+	 * Returns list of 'headings' containing the most or less frequent 'headings' (words).
+	 * The list is in the same order as the one returned by sortFrequency: by frequency, then in the alphanumeric ascending order.
 	 * <p>
-	 * The first parameter sets the minimum number of most or less frequent words returned.
-	 * If there are words with the same frequency, the number of returned words may exceed the minimum number.
+	 * The first parameter sets the number of most or less frequent words returned.
 	 * <p>
 	 * Returns the less frequent 'headings' if the 'lessFrequent' parameter is true. Otherwise returns the most frequent 'headings'.
 	 * 
-	 * @param minAmount minimum number of returned 'headings'
+	 * @param minAmount number of returned 'headings'
 	 * @param lessFrequent if <code>true</code> it returns the less frequent 'headings'. If <code>false</code> it returns the most frequent 'headings'
 	 * @return list of the most or less frequent 'headings'
 	 */
@@ -136,6 +185,115 @@ public interface Indexable {
 	 */	
 	public int getFrequency(String heading);
 
+	/**
+	 * Returns the frequency histogram: a map of frequencies and the number of 'headings' with that frequency.
+	 * Only the frequencies of existing 'headings' are included.
+	 * 
+	 * @return a map of frequencies and number of 'headings' in the ascending order of frequencies
+	 */
+	public SortedMap<Integer, Integer> getFrequencyHistogram();
+
+	/**
+	 * Returns the 'locators' (e.g. page numbers) of the given 'heading' in the ascending order.
+	 * <p>
+	 * The 'locators' are returned as primitive ints, so no boxing is needed. The returned array is a copy.
+	 * 
+	 * @param heading a word
+	 * @return array of 'locators'. It is empty if the 'heading' does not exist
+	 */
+	public int[] getLocators(String heading);
+
+	/**
+	 * Returns the counts of the 'locators' of the given 'heading': the i-th count is the number of occurrences on the i-th 'locator' returned by getLocators.
+	 * <p>
+	 * The counts are returned as primitive ints, so no boxing is needed. The returned array is a copy.
+	 * 
+	 * @param heading a word
+	 * @return array of counts. It is empty if the 'heading' does not exist
+	 */
+	public int[] getCounts(String heading);
+
+	/**
+	 * Returns the number of occurrences of the given 'heading' on the given 'locator'.
+	 * 
+	 * @param heading a word
+	 * @param locator a page number
+	 * @return number of occurrences, 0 if the 'heading' is not on the 'locator'
+	 */
+	public int getOccurrences(String heading, int locator);
+
+	/**
+	 * Returns the total number of occurrences of the given 'heading', i.e. the number of times it appeared in the text (the term frequency).
+	 * 
+	 * @param heading a word
+	 * @return number of occurrences, 0 if the 'heading' does not exist
+	 */
+	public long getOccurrences(String heading);
+
+	/**
+	 * Returns list of the 'headings' with the most occurrences.
+	 * The list is sorted by the number of occurrences in the descending order, then in the alphanumeric ascending order.
+	 * 
+	 * @param amount number of returned 'headings'
+	 * @return list of the most occurring 'headings'
+	 */
+	public List<String> getMostOccurring(int amount);
+
+	/**
+	 * Returns an iterator over the 'locators' of the given 'heading' in the ascending order, without copying them.
+	 * Its advance method skips the 'locators' lower than a target, so the sets of 'locators' can be intersected quickly.
+	 * <p>
+	 * The index must not be modified while the iterator is used.
+	 * 
+	 * @param heading a word
+	 * @return iterator over the 'locators'. It has no 'locators' if the 'heading' does not exist
+	 */
+	public PostingsIterator getLocatorsIterator(String heading);
+
+	/**
+	 * Returns the 'locators' containing all the given 'headings' (AND) in the ascending order.
+	 * 
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if there are no words or any of them does not exist
+	 */
+	public int[] getLocatorsAnd(Collection<String> headings);
+
+	/**
+	 * Returns the 'locators' containing any of the given 'headings' (OR) in the ascending order.
+	 * 
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if none of the words exist
+	 */
+	public int[] getLocatorsOr(Collection<String> headings);
+
+	/**
+	 * Returns the 'locators' where the given 'headings' may follow each other as a phrase, in the ascending order:
+	 * the first words are on the 'locator' and the rest of them (if any) are on the next 'locator'.
+	 * 
+	 * @param headings the words of the phrase in order
+	 * @return array of 'locators' where the phrase may start
+	 */
+	public int[] getLocatorsAdjacent(List<String> headings);
+
+	/**
+	 * Returns the 'locators' matching a Boolean query of words joined with AND, OR and NOT and phrases in quotes,
+	 * e.g. 'java coffee OR tea NOT green', see <code>PageQuery</code>.
+	 * 
+	 * @param query the query
+	 * @return array of 'locators' in the ascending order. It is empty if no 'locators' match the query
+	 */
+	public int[] searchLocators(String query);
+
+	/**
+	 * Returns an immutable copy of the index that is optimized for queries (see <code>SealedIndex</code>).
+	 * <p>
+	 * It should be called when no more indices are going to be added, e.g. when parsing is completed.
+	 * The object may be discarded after sealing, the returned copy does not refer to it.
+	 * 
+	 * @return an immutable Indexable
+	 */
+	public Indexable seal();
+
 	
 	
 	
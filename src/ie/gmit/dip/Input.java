@@ -8,7 +8,6 @@ package ie.gmit.dip;
  * The Input class is used for reading and processing input inserted to the console.
  * 
  */
-import java.util.Arrays;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
@@ -102,10 +101,13 @@ public class Input {
      */
     public Set<String> inputWords() {
     	String words = scanner.nextLine();
-    	Set<String> wordsSet = new TreeSet<String>(); // Use set to remove duplications
-    	words = words.toLowerCase().replaceAll("[^A-Za-z0-9 ]", ""); // Remove non-word characters, do not remove space
-    	String[] wordsArr = words.split(" ");
-    	wordsSet.addAll(Arrays.asList(wordsArr));
+    	final Set<String> wordsSet = new TreeSet<String>(); // Use set to remove duplications
+    	// Remove non-word characters and split by space, like the words of an indexed text
+    	new Tokenizer().tokenize(words, new Tokenizer.Handler() {
+    		public void token(char[] buffer, int offset, int length) {
+    			wordsSet.add(new String(buffer, offset, length));
+    		}
+    	});
     	return wordsSet;
     }
     
@@ -0,0 +1,236 @@
+package ie.gmit.dip;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The IntPostings class is an implementation of Postings interface. It is a sorted set of 'locators' (e.g. page numbers) stored as a growable array of primitive ints.
+ * <p>
+ * The 'locators' are kept in the ascending order and cannot be duplicated.
+ * Adding a 'locator' that is greater than the last one (the usual case, as pages are read in order) is an append.
+ * Adding the last 'locator' again (a word repeated on a page) increments its count. Other 'locators' are inserted in place.
+ * <p>
+ * The counts are kept in a second array of ints at the positions of their 'locators'.
+ * A single 'locator' with its count takes 8 bytes instead of a boxed Integer in a tree node.
+ * All the methods are synchronized, so the object may be shared by many threads.
+ */
+public class IntPostings implements Postings {
+	private int[] locators;
+	private int[] counts;
+	private int size;
+	private long occurrences;
+
+	/**
+	 * Creates a new empty IntPostings object.
+	 */
+	public IntPostings() {
+		super();
+		this.locators = new int[4];
+		this.counts = new int[4];
+	}
+
+	/**
+	 * Big-O notation - O(1) for appending, O(n) for inserting
+	 * <p>
+	 * Adds an occurrence on a 'locator' to the set of 'locators'. If the 'locator' already exists, its count is incremented.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public boolean add(int locator) {
+		return add(locator, 1);
+	}
+
+	/**
+	 * Big-O notation - O(1) for appending or for the last 'locator', O(log(n)) for another existing 'locator', O(n) for inserting
+	 * <p>
+	 * Adds the given number of occurrences on a 'locator' to the set of 'locators'. If the 'locator' already exists, the number is added to its count.
+	 *
+	 * @param locator a page number
+	 * @param count the number of occurrences, greater than 0
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public synchronized boolean add(int locator, int count) {
+		occurrences += count;
+		if(size == 0 || locator > locators[size - 1]) { // Append fast path
+			ensureCapacity(size + 1);
+			locators[size] = locator;
+			counts[size++] = count;
+			return true;
+		}
+		if(locator == locators[size - 1]) { // The same page again
+			counts[size - 1] += count;
+			return false;
+		}
+		int pos = Arrays.binarySearch(locators, 0, size, locator);
+		if(pos >= 0) { // 'locator' already exists
+			counts[pos] += count;
+			return false;
+		}
+		pos = -pos - 1;
+		ensureCapacity(size + 1);
+		System.arraycopy(locators, pos, locators, pos + 1, size - pos);
+		System.arraycopy(counts, pos, counts, pos + 1, size - pos);
+		locators[pos] = locator;
+		counts[pos] = count;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns true if the set contains the given 'locator'.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' exists, otherwise false
+	 */
+	public synchronized boolean contains(int locator) {
+		return Arrays.binarySearch(locators, 0, size, locator) >= 0;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the number of occurrences on the given 'locator'.
+	 *
+	 * @param locator a page number
+	 * @return the count of the 'locator', 0 if it does not exist
+	 */
+	public synchronized int count(int locator) {
+		int pos = Arrays.binarySearch(locators, 0, size, locator);
+		return pos >= 0 ? counts[pos] : 0;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of 'locators'.
+	 *
+	 * @return number of 'locators'
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the total number of occurrences on all the 'locators'. It is counted when the occurrences are added.
+	 *
+	 * @return number of occurrences
+	 */
+	public synchronized long occurrences() {
+		return occurrences;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a copy of the 'locators' in the ascending order.
+	 *
+	 * @return array of 'locators'
+	 */
+	public synchronized int[] toArray() {
+		return Arrays.copyOf(locators, size);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a copy of the counts in the order of the 'locators'.
+	 *
+	 * @return array of counts
+	 */
+	public synchronized int[] counts() {
+		return Arrays.copyOf(counts, size);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns an iterator over the 'locators' in the ascending order.
+	 * The advance method of the iterator uses the galloping (exponential) search.
+	 * <p>
+	 * The set must not be modified while the iterator is used.
+	 *
+	 * @return iterator over the 'locators'
+	 */
+	public synchronized PostingsIterator iterator() {
+		return new Iterator(locators, 0, size);
+	}
+
+	/*
+	 * Returns an iterator over the range of a sorted array of 'locators', e.g. the 'locators' of a 'heading' of a SealedIndex.
+	 */
+	static PostingsIterator iterator(int[] locators, int from, int to) {
+		return new Iterator(locators, from, to);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Releases the unused capacity of the underlying arrays.
+	 */
+	public synchronized void trimToSize() {
+		if(locators.length > size) {
+			locators = Arrays.copyOf(locators, size);
+			counts = Arrays.copyOf(counts, size);
+		}
+	}
+
+	/*
+	 * Grows the arrays by half of their size when they are full.
+	 */
+	private void ensureCapacity(int capacity) {
+		if(capacity > locators.length) {
+			int length = Math.max(capacity, locators.length + (locators.length >> 1) + 1);
+			locators = Arrays.copyOf(locators, length);
+			counts = Arrays.copyOf(counts, length);
+		}
+	}
+
+	/*
+	 * Iterator over a range of an array of 'locators'.
+	 */
+	private static class Iterator implements PostingsIterator {
+		private int[] locators;
+		private int size; // The end of the range
+		private int pos;
+
+		public Iterator(int[] locators, int from, int to) {
+			this.locators = locators;
+			this.pos = from;
+			this.size = to;
+		}
+
+		public boolean hasNext() {
+			return pos < size;
+		}
+
+		public int next() {
+			if(pos >= size) throw new NoSuchElementException();
+			return locators[pos++];
+		}
+
+		public boolean advance(int target) {
+			if(pos >= size) return false;
+			if(locators[pos] >= target) return true;
+			// Galloping search: double the step until a 'locator' greater than or equal to the target is passed
+			int low = pos;
+			int step = 1;
+			while(low + step < size && locators[low + step] < target) {
+				low += step;
+				step <<= 1;
+			}
+			int found = Arrays.binarySearch(locators, low + 1, Math.min(low + step + 1, size), target);
+			pos = found >= 0 ? found : -found - 1;
+			return pos < size;
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+package ie.gmit.dip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The MappedDictionary class is an unmodifiable map of word definitions backed by a memory-mapped binary file
+ * compiled by <code>DictionaryCompiler</code>.
+ * <p>
+ * Nothing is parsed when the file is opened, so opening takes milliseconds and the dictionary takes almost no heap.
+ * A word is looked up with a binary search of the key table, directly in the mapped file.
+ * The returned list of definitions is a view of the file, a <code>WordDetails</code> is decoded only when it is read from the list.
+ * <p>
+ * It may be used by many threads at once.
+ */
+public class MappedDictionary extends AbstractMap<String, List<WordDetails>> {
+	private ByteBuffer buffer;
+	private int size;
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Opens the binary dictionary file and maps it into memory.
+	 *
+	 * @param path the path of the binary file
+	 * @throws IOException if the file cannot be read or is not a compiled dictionary
+	 */
+	public MappedDictionary(String path) throws IOException {
+		super();
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			if(channel.size() < DictionaryCompiler.HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Not a compiled dictionary: " + path);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // The mapping stays valid after closing the channel
+		}
+		if(buffer.getInt(0) != DictionaryCompiler.MAGIC) throw new IOException("Not a compiled dictionary: " + path);
+		if(buffer.getInt(4) != DictionaryCompiler.VERSION) throw new IOException("Unsupported dictionary version: " + path);
+		size = buffer.getInt(8);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of words.
+	 *
+	 * @return number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns true if the word is in the dictionary.
+	 *
+	 * @param key a word in lower case
+	 * @return true if the word is in the dictionary
+	 */
+	public boolean containsKey(Object key) {
+		return key instanceof String && find((String) key) >= 0;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the list of definitions of the word. The list is an unmodifiable view of the file.
+	 *
+	 * @param key a word in lower case
+	 * @return list of definitions or null if the word is not in the dictionary
+	 */
+	public List<WordDetails> get(Object key) {
+		if(!(key instanceof String)) return null;
+		int i = find((String) key);
+		return i < 0 ? null : new Definitions(entryOffset(i));
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the set of words and definitions in the ascending order of words. The words are decoded while iterating.
+	 *
+	 * @return set of words and definitions
+	 */
+	public Set<Map.Entry<String, List<WordDetails>>> entrySet() {
+		return new AbstractSet<Map.Entry<String, List<WordDetails>>>() {
+			public int size() {
+				return size;
+			}
+
+			public Iterator<Map.Entry<String, List<WordDetails>>> iterator() {
+				return new Iterator<Map.Entry<String, List<WordDetails>>>() {
+					private int next = 0;
+
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					public Map.Entry<String, List<WordDetails>> next() {
+						if(!hasNext()) throw new NoSuchElementException();
+						int i = next++;
+						return new AbstractMap.SimpleImmutableEntry<String, List<WordDetails>>(
+								readText(keyOffset(i)), new Definitions(entryOffset(i)));
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the offset of the entry in the file if the list of definitions is a view returned by this dictionary.
+	 * The offset is a compact reference to the definitions, they may be read again by definitionsAt.
+	 *
+	 * @param definitions a list of definitions
+	 * @return the offset of the entry or -1 if the list is not a view of this dictionary
+	 */
+	int entryOf(List<WordDetails> definitions) {
+		if(!(definitions instanceof Definitions)) return -1;
+		Definitions view = (Definitions) definitions;
+		return view.dictionary() == this ? view.offset : -1;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the dictionary that returned the list of definitions.
+	 *
+	 * @param definitions a list of definitions
+	 * @return the dictionary or null if the list is not a view of a MappedDictionary
+	 */
+	static MappedDictionary dictionaryOf(List<WordDetails> definitions) {
+		return definitions instanceof Definitions ? ((Definitions) definitions).dictionary() : null;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the list of definitions stored at the offset returned by entryOf. Nothing is decoded.
+	 *
+	 * @param entry the offset of the entry
+	 * @return list of definitions
+	 */
+	List<WordDetails> definitionsAt(int entry) {
+		return new Definitions(entry);
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the position of the word in the sorted key table. The position is a compact reference to the word,
+	 * it may be resolved again by definitionsOf, e.g. after it has been saved to a file.
+	 *
+	 * @param key a word
+	 * @return the position of the word or -1 if the word is not in the dictionary
+	 */
+	int indexOf(String key) {
+		return find(key);
+	}
+
+	/**
+	 * Big-O notation - O(m), where m is the length of the word
+	 * <p>
+	 * Returns the list of definitions of the word at the position returned by indexOf.
+	 * The word stored at the position is compared with the given word, so a position saved with another dictionary is not trusted.
+	 *
+	 * @param index the position of the word in the key table
+	 * @param key the word
+	 * @return list of definitions or null if the word is not stored at the position
+	 */
+	List<WordDetails> definitionsOf(int index, String key) {
+		if(index < 0 || index >= size || compare(keyOffset(index), key) != 0) return null;
+		return new Definitions(entryOffset(index));
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of UTF-8 bytes of the word at the position in the sorted key table.
+	 *
+	 * @param index the position of the word in the key table
+	 * @return the length of the word in bytes
+	 */
+	int keyLength(int index) {
+		return buffer.getInt(keyOffset(index));
+	}
+
+	/**
+	 * Big-O notation - O(m), where m is the length of the word
+	 * <p>
+	 * Copies the UTF-8 bytes of the word at the position in the sorted key table to the array. No String is created.
+	 *
+	 * @param index the position of the word in the key table
+	 * @param bytes the array the bytes are copied to, with at least keyLength free bytes from the offset
+	 * @param offset the position of the first byte in the array
+	 */
+	void keyBytes(int index, byte[] bytes, int offset) {
+		int pos = keyOffset(index);
+		int length = buffer.getInt(pos);
+		for(int i = 0; i < length; i++) {
+			bytes[offset + i] = buffer.get(pos + 4 + i); // Absolute reads, so the buffer may be shared by threads
+		}
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the offset of the entry of the word at the position in the sorted key table.
+	 * The definitions may be read by definitionsAt, nothing is decoded.
+	 *
+	 * @param index the position of the word in the key table
+	 * @return the offset of the entry
+	 */
+	int entryAt(int index) {
+		return entryOffset(index);
+	}
+
+	/*
+	 * Returns the index of the word in the key table or -1 if it does not exist.
+	 */
+	private int find(String key) {
+		int low = 0;
+		int high = size - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(keyOffset(mid), key);
+			if(cmp < 0) low = mid + 1;
+			else if(cmp > 0) high = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	/*
+	 * Compares the word stored at the offset with the key by code points, which is the order of UTF-8 bytes.
+	 * The stored word is decoded while comparing, so no String is created.
+	 */
+	private int compare(int offset, String key) {
+		int pos = offset + 4;
+		int end = pos + buffer.getInt(offset);
+		int i = 0;
+		while(pos < end && i < key.length()) {
+			int b = buffer.get(pos) & 0xFF;
+			int codePoint;
+			if(b < 0x80) {
+				codePoint = b;
+				pos += 1;
+			}else if(b < 0xE0) {
+				codePoint = ((b & 0x1F) << 6) | (buffer.get(pos + 1) & 0x3F);
+				pos += 2;
+			}else if(b < 0xF0) {
+				codePoint = ((b & 0x0F) << 12) | ((buffer.get(pos + 1) & 0x3F) << 6) | (buffer.get(pos + 2) & 0x3F);
+				pos += 3;
+			}else {
+				codePoint = ((b & 0x07) << 18) | ((buffer.get(pos + 1) & 0x3F) << 12) | ((buffer.get(pos + 2) & 0x3F) << 6) | (buffer.get(pos + 3) & 0x3F);
+				pos += 4;
+			}
+			int c = key.codePointAt(i);
+			i += Character.charCount(c);
+			if(codePoint != c) return codePoint - c;
+		}
+		return (pos < end ? 1 : 0) - (i < key.length() ? 1 : 0);
+	}
+
+	/*
+	 * Returns the offset of the i-th word.
+	 */
+	private int keyOffset(int i) {
+		return buffer.getInt(DictionaryCompiler.HEADER_SIZE + i * DictionaryCompiler.KEY_TABLE_ENTRY_SIZE);
+	}
+
+	/*
+	 * Returns the offset of the entry of the i-th word.
+	 */
+	private int entryOffset(int i) {
+		return buffer.getInt(DictionaryCompiler.HEADER_SIZE + i * DictionaryCompiler.KEY_TABLE_ENTRY_SIZE + 4);
+	}
+
+	/*
+	 * Decodes the text stored at the offset. Returns null if the length is -1.
+	 */
+	private String readText(int offset) {
+		int length = buffer.getInt(offset);
+		if(length < 0) return null;
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + 4 + i); // Absolute reads, so the buffer may be shared by threads
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Returns the offset after the text stored at the offset.
+	 */
+	private int skipText(int offset) {
+		return offset + 4 + Math.max(0, buffer.getInt(offset));
+	}
+
+	/*
+	 * The list of definitions of a word: a view of its entry in the file.
+	 */
+	private class Definitions extends AbstractList<WordDetails> {
+		private int offset;
+
+		public Definitions(int offset) {
+			this.offset = offset;
+		}
+
+		public int size() {
+			return buffer.getInt(offset);
+		}
+
+		public MappedDictionary dictionary() {
+			return MappedDictionary.this;
+		}
+
+		public WordDetails get(int index) {
+			if(index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index);
+			int pos = offset + 4;
+			for(int i = 0; i < index; i++) {
+				pos = skipText(skipText(skipText(pos)));
+			}
+			WordDetails wordDetails = new WordDetails();
+			wordDetails.setWord(readText(pos));
+			pos = skipText(pos);
+			wordDetails.setWordType(readText(pos));
+			pos = skipText(pos);
+			wordDetails.setDefinition(readText(pos));
+			return wordDetails;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package ie.gmit.dip;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The MemoryReport class compares the heap used by different implementations of the Indexable interface,
+ * including the <code>SealedIndex</code> that QueryParser returns after parsing.
+ * <p>
+ * It indexes the same text with every implementation and displays the heap taken by the index to the console.
+ * The dictionary and ignore words are loaded before measuring, so they are not included. The heap taken by the dictionary is displayed separately.
+ * The dictionary may be a text file or a binary file compiled by <code>DictionaryCompiler</code>. The binary file is memory-mapped,
+ * so the dictionary and the 'wordDetails' kept by the indices take almost no heap.
+ * <p>
+ * It is run from the command prompt:
+ * java -XX:+UseParallelGC -cp .\indexer.jar ie.gmit.dip.MemoryReport book.txt [stopwords.txt] [dictionary.csv | dictionary.dict]
+ */
+public class MemoryReport {
+
+	/**
+	 * Runs the report.
+	 *
+	 * @param args the path of the text file, optionally followed by the paths of the ignore words and dictionary files
+	 * @throws Exception if a file cannot be parsed
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: MemoryReport book.txt [stopwords.txt] [dictionary.csv | dictionary.dict]");
+			return;
+		}
+		String book = args[0];
+		String stopwords = args.length > 1 ? args[1] : "./stopwords.txt";
+		String dictionaryFile = args.length > 2 ? args[2] : "./dictionary.csv";
+
+		long before = usedHeap();
+		DictionaryCache dictionaryCache = new DictionaryCache();
+		Set<String> ignoreWords = dictionaryCache.getIgnoreWords(stopwords);
+		Map<String, List<WordDetails>> dictionary = dictionaryCache.getDictionary(dictionaryFile);
+		System.out.printf("Dictionary: %d words, %d KB of heap%n", dictionary.size(), Math.max(0, usedHeap() - before) / 1024);
+
+		System.out.printf("%1$-15s %2$12s %3$12s %4$12s %5$14s%n", "Index", "Headings", "Locators", "Heap (KB)", "Bytes/locator");
+		report("Index", new Index(), false, book, ignoreWords, dictionary);
+		report("CompactIndex", new CompactIndex(), false, book, ignoreWords, dictionary);
+		report("Compressed", new CompactIndex(true), false, book, ignoreWords, dictionary);
+		report("SealedIndex", new Index(), true, book, ignoreWords, dictionary);
+	}
+
+	/*
+	 * Indexes the text with the given Indexable and displays the heap it takes.
+	 * If 'seal' is true, the heap taken by the sealed copy of the index is displayed.
+	 * The heap is measured as the memory released when the index is no longer referenced.
+	 */
+	private static void report(String name, Indexable indexer, boolean seal, String book, Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary) throws Exception {
+		QueryParser parser = new QueryParser(ignoreWords, dictionary, indexer);
+		parser.parse(parser.openBufferReader(book, false));
+		parser = null;
+		if(indexer instanceof CompactIndex) ((CompactIndex) indexer).trimToSize();
+		if(seal) indexer = indexer.seal();
+
+		long locators = 0;
+		for(String heading : indexer.getHeadings()) {
+			locators += indexer.getFrequency(heading);
+		}
+		long withIndex = usedHeap();
+		int headings = indexer.indicesTotal(); // Keeps the index reachable until the heap is measured
+		indexer = null;
+		long used = Math.max(0, withIndex - usedHeap());
+		System.out.printf("%1$-15s %2$12d %3$12d %4$12d %5$14.1f%n", name, headings, locators, used / 1024,
+				locators == 0 ? 0.0 : (double) used / locators);
+	}
+
+	/*
+	 * Returns the used heap after a garbage collection.
+	 */
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -1,10 +1,11 @@
 package ie.gmit.dip;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * @author  Pawel Zamorski
@@ -17,9 +18,14 @@ import java.util.Set;
  * Then the start() method should be invoked.
  */
 public class Menu {
+	private static final String DICTIONARY = "./dictionary" + DictionaryCompiler.EXTENSION;
+	private static final String INDEX = "./index" + IndexFile.EXTENSION;
 	private boolean keepRunning = true;
 	private Input input;
-	private Indexable indexer;
+	private Indexable indexer; // The whole corpus or one of its documents
+	private CorpusIndex corpus;
+	private DictionaryCache dictionaryCache;
+	private boolean positional; // The positions of the words are recorded by the documents indexed next
 	
 	/**
 	 * Creates a new Menu object that is ready to control the console menu.
@@ -27,7 +33,9 @@ public class Menu {
 	public Menu() {
 		super();
 		input = new Input();
-		indexer = new Index();
+		corpus = new CorpusIndex();
+		indexer = corpus;
+		dictionaryCache = new DictionaryCache();
 	}
 	
     /**
@@ -37,6 +45,7 @@ public class Menu {
         System.out.println("-----------------------------------");
         System.out.println("----------- Indexer v. 1.0 --------");
         System.out.println("-----------------------------------");
+        loadIndex();
         
         // Use while loop to run it at least once.
         // Keep running the loop until variable 'keepRunning' is true. Change the value by invoking quit() method.
@@ -45,14 +54,19 @@ public class Menu {
             System.out.println("------------ MAIN MENU ------------");
             System.out.println("Program uses the default dictionary.");
             System.out.println("Program uses the default list of ignored words.");
+            System.out.println("Program searches " + (indexer == corpus ? "all the " + corpus.documentsTotal() + " indexed documents." : "one document."));
             System.out.println("-----------------------------------");
             System.out.println("(1) Index the file");
             System.out.println("(2) Index the URL");
-            System.out.println("(3) Display indexed words");
-            System.out.println("(4) More options (process data)");
-            System.out.println("(5) Quit");
+            System.out.println("(3) Index the directory or the list of files and URLs");
+            System.out.println("(4) Display indexed words");
+            System.out.println("(5) More options (process data)");
+            System.out.println("(6) Select the documents to be searched");
+            System.out.println("(7) Remove all the indexed documents");
+            System.out.println("(8) Turn the positional mode " + (positional ? "off (it is on)" : "on (it is off)"));
+            System.out.println("(9) Quit");
             // Get the input from the User, validate and parse it to integer using 'selectOption' method
-            int option = input.selectOption(1, 5);
+            int option = input.selectOption(1, 9);
             switch(option){
                 case 1:
                     fileURLIndexer(false);
@@ -61,21 +75,38 @@ public class Menu {
                     fileURLIndexer(true);
                     break;
                 case 3:
-                	if(indexer.getIndices().size() > 0) {
-                    	displayMap(indexer, indexer.getHeadingsSetAsc());
+                    batchIndexer();
+                    break;
+                case 4:
+                	if(indexer.indicesTotal() > 0) {
+                    	displayMap(indexer, indexer.getHeadings());
     	                input.pressEnter("Process successfully completed :)");
                 	}else {
         	            input.pressEnter("There are no indexed words");
                 	}
                     break;
-                case 4:
-                	if(indexer.getIndices().size() > 0) {
+                case 5:
+                	if(indexer.indicesTotal() > 0) {
                     	moreOptionsMenu();
                 	}else {
         	            input.pressEnter("There are no indexed words");
                 	}
                     break;
-                case 5:
+                case 6:
+                	if(corpus.documentsTotal() > 0) {
+                		selectDocument();
+                	}else {
+        	            input.pressEnter("There are no indexed documents");
+                	}
+                    break;
+                case 7:
+                	removeDocuments();
+                	break;
+                case 8:
+                	positional = !positional;
+                	input.pressEnter("The positional mode is " + (positional ? "on: the documents indexed next are searched for the phrases by the positions of the words" : "off"));
+                	break;
+                case 9:
                     // 'quit' method changes the 'keepRunning' variable to false. The loop ends and the program quits.
                     quit();
                     break;
@@ -93,29 +124,31 @@ public class Menu {
     private void fileURLIndexer(boolean isURL) { // Number of lines in a book per page????? Use as parameter
         // Clear 'encryptedText' variable from any previously encrypted text
     	
-    	indexer = null;
-        System.out.println("Any previously indexed text has been removed.");
+        System.out.println("The text is added to the " + corpus.documentsTotal() + " previously indexed documents.");
         System.out.println("Insert the path of the file to be encrypted >");
         String path = input.inputString();
         System.out.println("Indexing during process... It will take a while to complete...");
     	
-		try {
-			IgnoreWordsParser ignoreWordsParser = new IgnoreWordsParser();
-			ignoreWordsParser.parse(ignoreWordsParser.openBufferReader("./stopwords.txt", false));
-			Set<String> ignoreWords = ignoreWordsParser.getIgnoreWords();
-			
-			DictionaryParser dictionaryParser = new DictionaryParser();
-			dictionaryParser.parse(ignoreWordsParser.openBufferReader("./dictionary.csv", false));
-			Map<String, List<WordDetails>> dictionary = dictionaryParser.getDictionary();
-			
-        	QueryParser indexingParser = new QueryParser(ignoreWords, dictionary);
+		try(IndexLog log = new IndexLog(INDEX + IndexLog.EXTENSION)) {
+        	QueryParser indexingParser = new QueryParser(termTable());
+        	indexingParser.setPositional(positional);
+        	indexingParser.setLog(log, path); // A text interrupted by a crash is parsed again only from the parts that have not been logged
         	if(isURL == false) {
-        		indexingParser.parse(ignoreWordsParser.openBufferReader(path, false)); // takes local file
+        		indexingParser.parseFile(path); // takes local file, memory-mapped and parsed in parallel
         	}else {
-        		indexingParser.parse(ignoreWordsParser.openBufferReader(path, true)); // takes URL
+        		indexingParser.parse(indexingParser.openBufferReader(path, true)); // takes URL
         	}
-        	indexer = indexingParser.getIndexer();
-        	if(indexer.getIndices().size() > 0) {
+        	Indexable document = indexingParser.getIndexer();
+        	int id = corpus.addDocument(path, document, indexingParser.getPositionalIndex());
+        	log.append(id, path, document);
+        	log.commit();
+        	indexer = corpus; // Search all the documents
+        	System.out.printf("Document %d: %d unique words, %d unique words in all the documents%n", id + 1, document.indicesTotal(), corpus.indicesTotal());
+        	System.out.printf("%d words read (%.0f words/sec)%n", indexingParser.getWordsTotal(), indexingParser.getWordsPerSecond());
+        	System.out.printf("%d KB %s (%.0f KB/sec)%n", indexingParser.getBytesRead() / 1024, isURL ? "downloaded" : "read",
+        			indexingParser.getBytesPerSecond() / 1024);
+        	saveIndex(log);
+        	if(document.indicesTotal() > 0) {
                 input.pressEnter("Process successfully completed :)");
         	}else {
 	            input.pressEnter("There are no word in the file to be indexed");        		
@@ -124,6 +157,9 @@ public class Menu {
             System.out.println(fnfEx.getMessage());
             fnfEx.printStackTrace();
             input.pressEnter("Please, make sure the inserted path of the file is valid");
+        }catch(SocketTimeoutException stEx){
+            System.out.println(stEx.getMessage());
+            input.pressEnter("The server did not respond in time, please try again later");
         }catch(IOException ioEx){
             System.out.println(ioEx.getMessage());
             ioEx.printStackTrace();
@@ -136,6 +172,119 @@ public class Menu {
     }
     
     
+    /*
+     * Indexes many documents at once: the text files of a directory or the files and URLs given by the User.
+     */
+    private void batchIndexer() {
+        System.out.println("The texts are added to the " + corpus.documentsTotal() + " previously indexed documents.");
+        System.out.println("Insert the path of the directory (all its .txt files are indexed) or the paths of the files and URLs separated by ';' >");
+        List<String> paths = new ArrayList<String>();
+        for(String path : input.inputString().split(";")) {
+        	if(!path.trim().isEmpty()) paths.add(path.trim());
+        }
+        System.out.println("Indexing during process... It will take a while to complete...");
+
+		try {
+			BatchIndexer batch = new BatchIndexer(termTable(), corpus);
+			batch.setPositional(positional);
+			// The documents are logged and saved while they are indexed, so an interrupted batch is resumed by indexing it again
+			batch.setCheckpoints(INDEX, BatchIndexer.CHECKPOINT_INTERVAL);
+			long start = System.nanoTime();
+			List<BatchIndexer.Statistics> statistics = batch.index(BatchIndexer.documents(paths));
+			new IndexOutput().printStatistics(statistics, corpus, System.nanoTime() - start);
+			if(batch.getSkippedTotal() > 0) System.out.println(batch.getSkippedTotal() + " documents were already indexed and have been skipped.");
+			System.out.println("The indexed documents have been saved to " + INDEX);
+			indexer = corpus; // Search all the documents
+			input.pressEnter("Process successfully completed :)");
+        }catch(FileNotFoundException fnfEx){
+            System.out.println(fnfEx.getMessage());
+            input.pressEnter("Please, make sure the inserted paths are valid");
+        }catch(Exception e){
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            input.pressEnter("Uppsss... something went wrong :(\n Please, try again");
+        }
+    }
+
+    /*
+     * Returns the words that may be indexed: the words of the default dictionary that are not in the default list of ignored words.
+     */
+    private TermTable termTable() throws Exception {
+		// The dictionary is compiled to a binary file once, then the binary file is memory-mapped instead of parsed
+		new DictionaryCompiler().compileIfModified("./dictionary.csv", DICTIONARY);
+		// Loaded once and shared by all the following indexing runs, unless the files are modified
+		return dictionaryCache.getTermTable("./stopwords.txt", DICTIONARY);
+    }
+
+    /*
+     * Loads the documents indexed in the previous sessions, if they have been saved or logged by an interrupted batch.
+     */
+    private void loadIndex() {
+    	if(!new File(INDEX).exists() && !new File(INDEX + IndexLog.EXTENSION).exists()) return;
+    	try {
+    		long start = System.nanoTime();
+    		new DictionaryCompiler().compileIfModified("./dictionary.csv", DICTIONARY);
+    		corpus = IndexLog.recover(INDEX, dictionaryCache.getDictionary(DICTIONARY));
+    		indexer = corpus;
+    		System.out.printf("%d previously indexed documents loaded in %d ms.%n", corpus.documentsTotal(), (System.nanoTime() - start) / 1000000);
+    	}catch(Exception e) {
+    		System.out.println(e.getMessage());
+    		System.out.println("The previously indexed documents could not be loaded, they have to be indexed again.");
+    	}
+    }
+
+    /*
+     * Saves all the indexed documents with a checkpoint of the log, so they are loaded in the next session instead of being indexed again.
+     */
+    private void saveIndex(IndexLog log) {
+    	try {
+    		log.checkpoint(corpus, INDEX);
+    		System.out.println("The indexed documents have been saved to " + INDEX);
+    	}catch(IOException ioEx) {
+    		System.out.println(ioEx.getMessage());
+    		System.out.println("The indexed documents could not be saved, they are recovered from the log " + INDEX + IndexLog.EXTENSION + " in the next session.");
+    	}
+    }
+
+    /*
+     * Removes all the indexed documents, including the saved ones, if the User confirms it.
+     */
+    private void removeDocuments() {
+    	System.out.println("All the " + corpus.documentsTotal() + " indexed documents will be removed and the saved index " + INDEX + " will be deleted.");
+    	System.out.println("(1) Remove all the documents");
+    	System.out.println("(2) Go back");
+    	if(input.selectOption(1, 2) != 1) {
+    		input.pressEnter("Nothing has been removed.");
+    		return;
+    	}
+    	corpus = new CorpusIndex();
+    	indexer = corpus;
+    	List<String> notDeleted = new ArrayList<String>();
+    	for(File file : new File[] { new File(INDEX + IndexLog.EXTENSION), new File(INDEX) }) {
+    		if(file.exists() && !file.delete()) notDeleted.add(file.getPath());
+    	}
+    	if(notDeleted.isEmpty()) {
+    		input.pressEnter("All the indexed documents have been removed.");
+    	}else {
+    		System.out.println("The indexed documents have been removed from this session, but " + String.join(", ", notDeleted) + " could not be deleted.");
+    		input.pressEnter("They will be loaded again in the next session unless they are deleted.");
+    	}
+    }
+
+    /*
+     * Selects the documents searched by the other options: all the documents or one of them.
+     */
+    private void selectDocument() {
+        System.out.println("###################################");
+        System.out.println("(0) All the documents");
+        for(int i = 0; i < corpus.documentsTotal(); i++) {
+            System.out.println("(" + (i + 1) + ") " + corpus.getDocumentName(i) + " - " + corpus.getHeadingsTotal(i) + " unique words");
+        }
+        int option = input.selectOption(0, corpus.documentsTotal());
+        indexer = option == 0 ? corpus : corpus.getDocument(option - 1);
+        input.pressEnter("Process successfully completed :)");
+    }
+
     /*
      * Quits the program by assigning false value to the keepRunning global variable
      */
@@ -168,17 +317,19 @@ public class Menu {
 	        System.out.println("(10) Get total number of indices (unique words)");
 	        System.out.println("(11) Get list of words in ascending order");
 	        System.out.println("(12) Get list of words in descending order");
-	        System.out.println("(13) Go back");
+	        System.out.println("(13) Search pages by words joined with AND, OR, NOT or by \"a phrase\"");
+	        System.out.println("(14) Search x number of the most occurring words (all their occurrences, not pages)");
+	        System.out.println("(15) Go back");
 	        
 	        // Get the input from the User, validate and parse it to integer using 'selectOption' method
-	        int option = input.selectOption(1, 13);
+	        int option = input.selectOption(1, 15);
 	        switch(option){
 	            case 1:
-	            	displayMap(indexer, indexer.getHeadingsSetAsc());
+	            	displayMap(indexer, indexer.getHeadings());
 	                input.pressEnter("Process successfully completed :)");
 	                break;
 	            case 2:
-	            	displayMap(indexer, indexer.getHeadingsSetDesc());
+	            	displayMap(indexer, indexer.getHeadings().descendingSet());
 	                input.pressEnter("Process successfully completed :)");
 	            	break;
 	            case 3:
@@ -270,14 +421,47 @@ public class Menu {
 	            	input.pressEnter("The total number of unique words is " + indexer.indicesTotal() + "\nProcess successfully completed :)");
 	            	break;
 	            case 11:
-	            	displaySet(indexer.getHeadingsSetAsc());
+	            	displaySet(indexer.getHeadings());
 	                input.pressEnter("Process successfully completed :)");
 	            	break;
 	            case 12:
-	            	displaySet(indexer.getHeadingsSetDesc());
+	            	displaySet(indexer.getHeadings().descendingSet());
 	                input.pressEnter("Process successfully completed :)");
 	            	break;
 	            case 13:
+	            	System.out.println("Insert the query. Words separated by space must all be on a page, e.g."
+	            			+ "\n  to search pages with 'java' and 'coffee' insert 'java coffee'"
+	            			+ "\n  to search pages with 'java' or 'coffee' insert 'java OR coffee'"
+	            			+ "\n  to search pages with 'java' without 'coffee' insert 'java NOT coffee'"
+	            			+ "\n  to search pages where a phrase may be insert '\"black coffee\"'"
+	            			+ "\n  to search pages where 'java' and 'coffee' may be within 5 words insert '\"java coffee\"~5'"
+	            			+ "\nIn the positional mode the phrases and the words within N words are found exactly, on the pages of the documents indexed in that mode.");
+	            	String query = input.inputString();
+	            	long start = System.nanoTime();
+	            	int[] pages = indexer.searchLocators(query);
+	            	long time = System.nanoTime() - start;
+	            	if(pages.length > 0) {
+	            		new IndexOutput().printPages(indexer, pages);
+	            		input.pressEnter(pages.length + " pages has been found in " + String.format("%.3f", time / 1e6) + " ms.");
+	            	}else {
+		            	input.pressEnter("No pages has been found.");
+	            	}
+	            	break;
+	            case 14:
+	            	System.out.println("Insert the number of the most occurring words you wish to be searched for.\n"
+	            			+ "A word repeated on a page is counted every time it appears.");
+	            	int numberOccurring = input.inputInt();
+	            	if(numberOccurring > 0) {
+	            		headings = indexer.getMostOccurring(numberOccurring);
+		            	displayMap(indexer, headings); // Save or display or go back
+	            		input.pressEnter(headings.size() + " words has been found.");
+	            	}else {
+		            	input.pressEnter("Process failed :( Insert number greater than 0.");
+	            	}
+
+	            	headings = null;
+	            	break;
+	            case 15:
 	                run = false;
 	                break;
 	            default:
@@ -296,7 +480,7 @@ public class Menu {
      * 
      * @param indexable an object that is Indexable for further processing of data
      */
-    private void displayMap(Indexable indexable, List<String> headings){
+    private void displayMap(Indexable indexable, Iterable<String> headings){
     	IndexOutput output = new IndexOutput();
     	output.printIndices(indexable, headings);
 		System.out.println("----------------------------------\n");
@@ -307,7 +491,7 @@ public class Menu {
      * 
      * @param wordsSet a Set of String for further processing of data
      */
-    private void displaySet(List<String> wordsSet){
+    private void displaySet(Iterable<String> wordsSet){
     	IndexOutput output = new IndexOutput();
     	output.printWords(wordsSet);
 		System.out.println("----------------------------------\n");
@@ -0,0 +1,121 @@
+package ie.gmit.dip;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The MergePolicy class decides which segments of a <code>CorpusIndex</code> are merged into one segment.
+ * <p>
+ * Every document added to the corpus becomes a new small segment. A query reads every segment,
+ * so the segments are merged in the background to keep their number (and the time of a query) low.
+ * <p>
+ * The size of a segment is its number of 'locators'. The segments are grouped into levels by the logarithm of their size with the base of the merge factor,
+ * e.g. with the merge factor 10 the segments of 100 to 999 'locators' are on one level. When there are merge factor adjacent segments on the same level,
+ * they are merged into one segment of the next level. So every 'locator' is merged about log(n) times and there are about log(n) segments per level.
+ * <p>
+ * The segments larger than the maximum size are never merged, so a single merge never takes too long.
+ */
+public class MergePolicy {
+	/**
+	 * The default number of segments merged at once.
+	 */
+	public static final int DEFAULT_MERGE_FACTOR = 10;
+	private static final double LEVEL_SPAN = 0.75; // Segments within this range of levels are treated as one level
+	private int mergeFactor = DEFAULT_MERGE_FACTOR;
+	private int maxSegmentLocators = Integer.MAX_VALUE;
+
+	/**
+	 * Creates a new MergePolicy object with the default merge factor and no maximum size of a segment.
+	 */
+	public MergePolicy() {
+		super();
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of segments merged at once.
+	 *
+	 * @return the merge factor
+	 */
+	public int getMergeFactor() {
+		return mergeFactor;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Sets the number of segments merged at once.
+	 * A lower merge factor keeps fewer segments for the queries, but every 'locator' is merged more times.
+	 *
+	 * @param mergeFactor the number of segments merged at once, at least 2
+	 * @throws IllegalArgumentException if the merge factor is less than 2
+	 */
+	public void setMergeFactor(int mergeFactor) {
+		if(mergeFactor < 2) throw new IllegalArgumentException("The merge factor must be at least 2: " + mergeFactor);
+		this.mergeFactor = mergeFactor;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the maximum number of 'locators' of a merged segment.
+	 *
+	 * @return the maximum size of a merged segment
+	 */
+	public int getMaxSegmentLocators() {
+		return maxSegmentLocators;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Sets the maximum number of 'locators' of a merged segment. The segments are not merged if the merged segment would be larger.
+	 *
+	 * @param maxSegmentLocators the maximum size of a merged segment, greater than 0
+	 * @throws IllegalArgumentException if the maximum size is not greater than 0
+	 */
+	public void setMaxSegmentLocators(int maxSegmentLocators) {
+		if(maxSegmentLocators <= 0) throw new IllegalArgumentException("The maximum size must be greater than 0: " + maxSegmentLocators);
+		this.maxSegmentLocators = maxSegmentLocators;
+	}
+
+	/**
+	 * Big-O notation - O(s), where s is the number of segments
+	 * <p>
+	 * Returns the range of adjacent segments to be merged, or null if no segments need to be merged.
+	 * <p>
+	 * The segments are grouped from the oldest one: a group takes all the segments down to 0.75 of a level below the largest remaining segment.
+	 * The first merge factor segments of a group are merged, unless the merged segment would be larger than the maximum size.
+	 *
+	 * @param sizes the number of 'locators' of every segment, from the oldest to the newest
+	 * @return an array of the first segment (inclusive) and the last segment (exclusive) to be merged, or null
+	 */
+	public int[] findMerge(int[] sizes) {
+		double[] levels = new double[sizes.length];
+		for(int i = 0; i < sizes.length; i++) {
+			levels[i] = Math.log(Math.max(sizes[i], 1)) / Math.log(mergeFactor);
+		}
+		int start = 0;
+		while(start < sizes.length) {
+			double maxLevel = levels[start];
+			for(int i = start + 1; i < sizes.length; i++) {
+				maxLevel = Math.max(maxLevel, levels[i]);
+			}
+			// The group ends at the last segment on the level of the largest segment
+			int end = sizes.length;
+			while(levels[end - 1] < maxLevel - LEVEL_SPAN) end--;
+			for(int from = start; from + mergeFactor <= end; from++) {
+				long total = 0;
+				for(int i = from; i < from + mergeFactor; i++) {
+					total += sizes[i];
+				}
+				if(total <= maxSegmentLocators) return new int[] { from, from + mergeFactor };
+			}
+			start = end;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,420 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The PageQuery class finds the 'locators' (pages) matching a Boolean query over the 'headings' of an Indexable object.
+ * <p>
+ * It supports:
+ * - AND: the pages containing all the words
+ * - OR: the pages containing any of the words
+ * - NOT: the pages not containing a word
+ * - phrases: the pages where the words of a phrase may follow each other, i.e. they are on the page or the phrase continues on the next page
+ * - words near each other: the pages where all the words are within a number of words of the first one
+ * <p>
+ * If a <code>PositionalIndex</code> of the text is given, the phrases and the words near each other are found by the positions of the words,
+ * so only the pages where the phrase really is are returned. Otherwise the pages are the candidates found by the 'locators'.
+ * <p>
+ * The sets of 'locators' are read with the iterators of the index (see getLocatorsIterator), so they are not copied.
+ * An intersection starts from the least frequent word and skips the other sets to its next 'locator' with the advance method
+ * (a galloping search or the skip pointers of <code>CompressedPostings</code>), so it takes time proportional to the rarest word,
+ * not to the most frequent one. A query of frequent words, e.g. 'the AND house', takes less than a millisecond.
+ */
+public class PageQuery {
+	private static final Pattern TOKENS = Pattern.compile("\"([^\"]*)\"?(?:~(\\d{1,9}))?|(\\S+)");
+	private Indexable index;
+	private PositionalIndex positions;
+
+	/**
+	 * Creates a new PageQuery object for the given index.
+	 *
+	 * @param index an object that is Indexable
+	 */
+	public PageQuery(Indexable index) {
+		this(index, null);
+	}
+
+	/**
+	 * Creates a new PageQuery object for the given index and the positional index of the same text.
+	 * The phrases and the words near each other are found by the positions of the words.
+	 *
+	 * @param index an object that is Indexable
+	 * @param positions the positional index of the text, or null to find the phrases by the 'locators' only
+	 */
+	public PageQuery(Indexable index, PositionalIndex positions) {
+		super();
+		this.index = index;
+		this.positions = positions;
+	}
+
+	/**
+	 * Big-O notation - O(w k log(K)), where w is the number of words, k is the number of 'locators' of the least frequent word
+	 * and K is the number of 'locators' of the most frequent word
+	 * <p>
+	 * Returns the 'locators' of the pages containing all the given 'headings' in the ascending order.
+	 *
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if there are no words or any of them does not exist
+	 */
+	public int[] and(Collection<String> headings) {
+		if(headings.isEmpty()) return new int[0];
+		List<PostingsIterator> iterators = new ArrayList<PostingsIterator>();
+		for(String heading : sortByFrequency(headings)) {
+			if(index.getFrequency(heading) == 0) return new int[0];
+			iterators.add(index.getLocatorsIterator(heading));
+		}
+		return intersect(iterators);
+	}
+
+	/**
+	 * Big-O notation - O(w k), where w is the number of words and k is the total number of 'locators' of the words
+	 * <p>
+	 * Returns the 'locators' of the pages containing any of the given 'headings' in the ascending order.
+	 *
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if none of the words exist
+	 */
+	public int[] or(Collection<String> headings) {
+		int[] temp = new int[0];
+		for(String heading : sortByFrequency(headings)) {
+			temp = union(temp, index.getLocators(heading));
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(k log(K)), where k is the number of given 'locators' and K is the number of 'locators' of the 'heading'
+	 * <p>
+	 * Returns the given 'locators' except for the pages containing the 'heading'.
+	 *
+	 * @param locators the 'locators' in the ascending order
+	 * @param heading a word
+	 * @return array of the 'locators' without the 'heading'
+	 */
+	public int[] not(int[] locators, String heading) {
+		if(index.getFrequency(heading) == 0) return locators;
+		return without(locators, index.getLocatorsIterator(heading));
+	}
+
+	/**
+	 * Big-O notation - O(w^2 k log(K)), where w is the number of words of the phrase
+	 * <p>
+	 * Returns the 'locators' of the pages where the phrase may start: the first words of the phrase are on the page
+	 * and the rest of them (if any) are on the next page.
+	 * <p>
+	 * The 'locators' are pages, so the order of the words on a page is not known. The pages are the candidates for the phrase.
+	 *
+	 * @param headings the words of the phrase in order
+	 * @return array of 'locators'. It is empty if there are no words or the phrase cannot be on any page
+	 */
+	public int[] adjacent(List<String> headings) {
+		if(headings.isEmpty()) return new int[0];
+		for(String heading : headings) {
+			if(index.getFrequency(heading) == 0) return new int[0];
+		}
+		int[] temp = new int[0];
+		// The phrase split after the first 'split' words, the whole phrase on the page is the last split
+		for(int split = 1; split <= headings.size(); split++) {
+			List<PostingsIterator> iterators = new ArrayList<PostingsIterator>();
+			for(int i = 0; i < headings.size(); i++) {
+				PostingsIterator postings = index.getLocatorsIterator(headings.get(i));
+				iterators.add(i < split ? postings : new PreviousPage(postings));
+			}
+			int[] found = intersect(iterators);
+			if(split < headings.size()) found = continued(found);
+			temp = union(temp, found);
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(w min(k (log(K) + B), K) + p log(l)) with a positional index (see PositionalIndex.getPhrase),
+	 * where p is the number of positions found and l is the number of lines, O(w^2 k log(K)) otherwise (see adjacent)
+	 * <p>
+	 * Returns the 'locators' of the pages where the phrase starts.
+	 * <p>
+	 * With a positional index they are the pages where the words of the phrase really follow each other.
+	 * Otherwise they are the candidates returned by adjacent.
+	 *
+	 * @param headings the words of the phrase in order
+	 * @return array of 'locators' in the ascending order. It is empty if there are no words or the phrase is not found
+	 */
+	public int[] phrase(List<String> headings) {
+		if(positions == null) return adjacent(headings);
+		return positions.pagesOf(positions.getPhrase(headings));
+	}
+
+	/**
+	 * Big-O notation - O(k + w min(k (log(K) + B), K) + p log(l)) with a positional index (see PositionalIndex.getNear),
+	 * where p is the number of positions found and l is the number of lines, O(w k log(K)) otherwise (see and)
+	 * <p>
+	 * Returns the 'locators' of the pages where all the other words are at most 'distance' words before or after the first word,
+	 * the pages of the first word.
+	 * <p>
+	 * With a positional index the distance is checked. Otherwise the positions of the words are not known,
+	 * so the candidates are the pages containing all the words (see and).
+	 *
+	 * @param headings the words
+	 * @param distance the maximum number of words from the first word, e.g. 1 for the next or the previous word
+	 * @return array of 'locators' in the ascending order. It is empty if there are no words or they are not near each other
+	 * @throws IllegalArgumentException if the distance is negative
+	 */
+	public int[] near(List<String> headings, int distance) {
+		if(distance < 0) throw new IllegalArgumentException("The distance must not be negative: " + distance);
+		if(positions == null) return and(headings);
+		return positions.pagesOf(positions.getNear(headings, distance));
+	}
+
+	/**
+	 * Big-O notation - O(q w k log(K)), where q is the number of words of the query
+	 * <p>
+	 * Returns the 'locators' of the pages matching a query, for example:
+	 * <p>
+	 * java coffee - the pages containing both words (the same as java AND coffee)
+	 * java OR coffee - the pages containing any of the words
+	 * java NOT coffee - the pages containing java without coffee (the same as java -coffee)
+	 * "black coffee" - the pages where the phrase is (see phrase)
+	 * "java coffee"~5 - the pages where coffee is at most 5 words before or after java (see near)
+	 * java coffee OR tea NOT green - AND binds stronger than OR: (java AND coffee) OR (tea AND NOT green)
+	 * <p>
+	 * The words are converted to lower case. The operators must be in upper case.
+	 * A part of the query between ORs that contains only excluded words does not match any page.
+	 *
+	 * @param query the query
+	 * @return array of 'locators' in the ascending order. It is empty if no pages match the query
+	 */
+	public int[] search(String query) {
+		int[] temp = new int[0];
+		List<String> words = new ArrayList<String>();
+		List<String> excluded = new ArrayList<String>();
+		List<int[]> phrases = new ArrayList<int[]>();
+		List<int[]> excludedPhrases = new ArrayList<int[]>();
+		boolean negated = false;
+		Matcher matcher = TOKENS.matcher(query);
+		while(true) {
+			boolean found = matcher.find();
+			if(!found || "OR".equals(matcher.group(3))) {
+				temp = union(temp, group(words, excluded, phrases, excludedPhrases));
+				words.clear();
+				excluded.clear();
+				phrases.clear();
+				excludedPhrases.clear();
+				negated = false;
+				if(!found) return temp;
+			}else if("AND".equals(matcher.group(3))) {
+				continue;
+			}else if("NOT".equals(matcher.group(3))) {
+				negated = true;
+			}else if(matcher.group(1) != null) {
+				List<String> phrase = words(matcher.group(1));
+				if(!phrase.isEmpty()) {
+					int[] pages = matcher.group(2) != null ? near(phrase, Integer.parseInt(matcher.group(2))) : phrase(phrase);
+					(negated ? excludedPhrases : phrases).add(pages);
+				}
+				negated = false;
+			}else {
+				String token = matcher.group(3);
+				boolean minus = token.startsWith("-");
+				List<String> parts = words(minus ? token.substring(1) : token);
+				(negated || minus ? excluded : words).addAll(parts);
+				negated = false;
+			}
+		}
+	}
+
+	/**
+	 * Big-O notation - O(w k log(K)), where w is the number of sets of 'locators' and k is the number of 'locators' of the first set
+	 * <p>
+	 * Returns the 'locators' contained in all the sets, in the ascending order.
+	 * <p>
+	 * The sets are read together: every iterator is advanced to the highest 'locator' read so far, until all of them return the same 'locator'.
+	 * The first iterator should be the smallest set.
+	 *
+	 * @param iterators the iterators over the sets of 'locators'
+	 * @return array of common 'locators'
+	 */
+	public static int[] intersect(List<PostingsIterator> iterators) {
+		if(iterators.isEmpty()) return new int[0];
+		int[] temp = new int[16];
+		int total = 0;
+		long[] current = new long[iterators.size()]; // The last 'locator' read from every iterator
+		Arrays.fill(current, -1L);
+		long target = 0;
+		while(target <= Integer.MAX_VALUE) {
+			boolean common = true;
+			for(int i = 0; i < current.length; i++) {
+				if(current[i] < target) {
+					PostingsIterator iterator = iterators.get(i);
+					if(!iterator.advance((int) target)) return Arrays.copyOf(temp, total);
+					current[i] = iterator.next();
+				}
+				if(current[i] > target) {
+					target = current[i]; // Start again with the higher 'locator'
+					common = false;
+					break;
+				}
+			}
+			if(common) {
+				if(total == temp.length) temp = Arrays.copyOf(temp, total * 2);
+				temp[total++] = (int) target;
+				target++;
+			}
+		}
+		return Arrays.copyOf(temp, total);
+	}
+
+	/**
+	 * Big-O notation - O(n + m), where n and m are the numbers of 'locators'
+	 * <p>
+	 * Returns the 'locators' contained in any of the sets, in the ascending order.
+	 *
+	 * @param locators1 the 'locators' in the ascending order
+	 * @param locators2 the 'locators' in the ascending order
+	 * @return array of all the 'locators' without duplicates
+	 */
+	public static int[] union(int[] locators1, int[] locators2) {
+		if(locators1.length == 0) return locators2;
+		if(locators2.length == 0) return locators1;
+		int[] temp = new int[locators1.length + locators2.length];
+		int i = 0;
+		int j = 0;
+		int total = 0;
+		while(i < locators1.length && j < locators2.length) {
+			if(locators1[i] < locators2[j]) temp[total++] = locators1[i++];
+			else if(locators1[i] > locators2[j]) temp[total++] = locators2[j++];
+			else {
+				temp[total++] = locators1[i++];
+				j++;
+			}
+		}
+		while(i < locators1.length) temp[total++] = locators1[i++];
+		while(j < locators2.length) temp[total++] = locators2[j++];
+		return Arrays.copyOf(temp, total);
+	}
+
+	/**
+	 * Returns true if the page following the 'locator' continues the text of the page of the 'locator'.
+	 * It is always true for a single text. It is false for the last page of a document of a corpus, whose next 'locator' is the first page of another document.
+	 *
+	 * @param locator a 'locator'
+	 * @return true if the next 'locator' is the next page of the same text
+	 */
+	protected boolean continues(int locator) {
+		return true;
+	}
+
+	/*
+	 * Returns the pages matching a part of the query between ORs: all the words and the phrases and none of the excluded words.
+	 */
+	private int[] group(List<String> words, List<String> excluded, List<int[]> phrases, List<int[]> excludedPhrases) {
+		if(words.isEmpty() && phrases.isEmpty()) return new int[0];
+		List<PostingsIterator> iterators = new ArrayList<PostingsIterator>();
+		for(String heading : sortByFrequency(words)) {
+			if(index.getFrequency(heading) == 0) return new int[0];
+			iterators.add(index.getLocatorsIterator(heading));
+		}
+		for(int[] phrase : phrases) {
+			iterators.add(0, IntPostings.iterator(phrase, 0, phrase.length)); // The candidates of a phrase are usually the fewest
+		}
+		int[] temp = intersect(iterators);
+		for(String heading : excluded) {
+			temp = not(temp, heading);
+		}
+		for(int[] phrase : excludedPhrases) {
+			temp = without(temp, IntPostings.iterator(phrase, 0, phrase.length));
+		}
+		return temp;
+	}
+
+	/*
+	 * Returns the 'locators' that the iterator does not return.
+	 */
+	private static int[] without(int[] locators, PostingsIterator excluded) {
+		int[] temp = new int[locators.length];
+		int total = 0;
+		long current = -1; // The last 'locator' read from the excluded ones
+		for(int i = 0; i < locators.length; i++) {
+			if(current < locators[i]) {
+				if(!excluded.advance(locators[i])) { // No more excluded 'locators'
+					System.arraycopy(locators, i, temp, total, locators.length - i);
+					total += locators.length - i;
+					break;
+				}
+				current = excluded.next();
+			}
+			if(current != locators[i]) temp[total++] = locators[i];
+		}
+		return Arrays.copyOf(temp, total);
+	}
+
+	/*
+	 * Returns the 'locators' whose next page is in the same text.
+	 */
+	private int[] continued(int[] locators) {
+		int total = 0;
+		for(int locator : locators) {
+			if(continues(locator)) locators[total++] = locator;
+		}
+		return total == locators.length ? locators : Arrays.copyOf(locators, total);
+	}
+
+	/*
+	 * Returns the 'headings' in the ascending order of their frequency, so the intersection starts from the rarest one.
+	 */
+	private List<String> sortByFrequency(Collection<String> headings) {
+		List<String> temp = new ArrayList<String>(headings);
+		temp.sort(new Comparator<String>() {
+			public int compare(String heading1, String heading2) {
+				return Integer.compare(index.getFrequency(heading1), index.getFrequency(heading2));
+			}
+		});
+		return temp;
+	}
+
+	/*
+	 * Splits the text into lower case words, like the words of an indexed text.
+	 */
+	private static List<String> words(String text) {
+		final List<String> temp = new ArrayList<String>();
+		new Tokenizer().tokenize(text, new Tokenizer.Handler() {
+			public void token(char[] buffer, int offset, int length) {
+				temp.add(new String(buffer, offset, length));
+			}
+		});
+		return temp;
+	}
+
+	/*
+	 * Iterator returning the 'locators' of another iterator decreased by one, i.e. the page preceding every page of a word.
+	 */
+	private static class PreviousPage implements PostingsIterator {
+		private PostingsIterator postings;
+
+		public PreviousPage(PostingsIterator postings) {
+			this.postings = postings;
+		}
+
+		public boolean hasNext() {
+			return postings.hasNext();
+		}
+
+		public int next() {
+			return postings.next() - 1;
+		}
+
+		public boolean advance(int target) {
+			return target < Integer.MAX_VALUE && postings.advance(target + 1);
+		}
+	}
+
+}
@@ -3,11 +3,17 @@ package ie.gmit.dip;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author  Pawel Zamorski
@@ -22,6 +28,10 @@ import java.net.URLConnection;
  */
 public abstract class Parser implements Parsable {
 //REMOVE(try/catch should not be used for a condition operations): private boolean isURL;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private int connectTimeout = 10000;
+	private int readTimeout = 30000;
+	private volatile long bytesRead;
 	
 	/**
 	 * Parses a text file containing a string of symbols and groups them into an expected data structure.
@@ -37,25 +47,138 @@ public abstract class Parser implements Parsable {
 	
 	/**
 	 * Returns BufferedReader ready to procedure
-	 * @param resource
+	 * <p>
+	 * A URL is streamed: the returned reader reads the body while it is downloaded, so parsing overlaps the download.
+	 * The connection uses the connect and read timeouts (see setTimeouts), asks for a gzip compressed body
+	 * and decodes the text with the charset of the Content-Type header (the default charset if there is none).
+	 * A file is decoded as UTF-8, like the files memory-mapped by <code>QueryParser</code>, whatever the default charset is.
+	 * <p>
+	 * The bytes read from the file or URL are counted (see getBytesRead).
+	 * 
+	 * @param resource the file path or URL
 	 * @param isURL pass true if a 'resource' is an URL, false otherwise
-	 * @param br BufferedReader
 	 * @return BufferedReader ready
+	 * @throws java.net.SocketTimeoutException if the connection or a read times out
+	 * @throws IOException if the server responds with an error status, the connection is closed before it is thrown
 	 * @throws Exception exceptions
 	 */
 	public BufferedReader openBufferReader(String resource, boolean isURL) throws Exception {
 		BufferedReader br = null;
+		bytesRead = 0;
 		if(isURL) {
             // Use 'openConnection' method from 'URL' class. It returns a URLConnection instance that represents a connection to the remote object referred to by the URL
             URLConnection urlConn = new URL(resource).openConnection();
-            br = new BufferedReader(new InputStreamReader(urlConn.getInputStream()));
+            urlConn.setConnectTimeout(connectTimeout);
+            urlConn.setReadTimeout(readTimeout);
+            urlConn.setRequestProperty("Accept-Encoding", "gzip");
+            try {
+            	if(urlConn instanceof HttpURLConnection) {
+            		int status = ((HttpURLConnection) urlConn).getResponseCode();
+            		if(status >= 400) throw new IOException("Server returned HTTP " + status + " for " + resource);
+            	}
+            	InputStream in = new CountingInputStream(urlConn.getInputStream());
+            	if("gzip".equalsIgnoreCase(urlConn.getContentEncoding())) in = new GZIPInputStream(in, BUFFER_SIZE);
+            	br = new BufferedReader(new InputStreamReader(in, charset(urlConn.getContentType())), BUFFER_SIZE);
+            }finally {
+            	if(br == null) release(urlConn); // The reader was not returned, so nobody else can close the connection
+            }
 		}else {
-			br = new BufferedReader(new InputStreamReader(new FileInputStream(resource)));
+			br = new BufferedReader(new InputStreamReader(new CountingInputStream(new FileInputStream(resource)), StandardCharsets.UTF_8), BUFFER_SIZE);
 		}		
 
 		return br;
 	}
 	
+	/**
+	 * Sets the timeouts of a connection to a URL. A timeout of 0 means no timeout.
+	 * The defaults are 10 seconds for connecting and 30 seconds for a read.
+	 * 
+	 * @param connectTimeout the timeout of connecting in milliseconds
+	 * @param readTimeout the timeout of a single read in milliseconds
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		if(connectTimeout < 0 || readTimeout < 0) throw new IllegalArgumentException("A timeout must not be negative");
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+	
+	/**
+	 * Returns the number of bytes read from the file or URL opened by openBufferReader.
+	 * For a compressed URL it is the number of compressed bytes downloaded.
+	 * 
+	 * @return number of bytes read
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * Sets the number of bytes read, for the subclasses that read a file without openBufferReader.
+	 * 
+	 * @param bytesRead number of bytes read
+	 */
+	protected void setBytesRead(long bytesRead) {
+		this.bytesRead = bytesRead;
+	}
+	
+	/*
+	 * Closes the error stream of an HTTP connection, if there is one, and disconnects it.
+	 */
+	private static void release(URLConnection urlConn) {
+		if(!(urlConn instanceof HttpURLConnection)) return;
+		HttpURLConnection httpConn = (HttpURLConnection) urlConn;
+		InputStream error = httpConn.getErrorStream();
+		if(error != null) {
+			try {
+				error.close();
+			}catch(IOException ioEx) {
+				// The connection is disconnected anyway
+			}
+		}
+		httpConn.disconnect();
+	}
+	
+	/*
+	 * Returns the charset of the Content-Type header, e.g. "text/plain; charset=utf-8", or the default charset.
+	 */
+	private static Charset charset(String contentType) {
+		if(contentType != null) {
+			for(String parameter : contentType.split(";")) {
+				parameter = parameter.trim();
+				if(parameter.regionMatches(true, 0, "charset=", 0, 8)) {
+					try {
+						return Charset.forName(parameter.substring(8).replace("\"", "").trim());
+					}catch(IllegalArgumentException iaEx) {
+						break; // Unknown charset, use the default one
+					}
+				}
+			}
+		}
+		return Charset.defaultCharset();
+	}
+	
+	/*
+	 * An InputStream that counts the bytes read from the underlying stream.
+	 */
+	private class CountingInputStream extends FilterInputStream {
+		
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0) bytesRead++;
+			return b;
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0) bytesRead += read;
+			return read;
+		}
+	}
+	
 /* REMOVE
 
 	/**
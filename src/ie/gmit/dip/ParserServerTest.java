@@ -0,0 +1,214 @@
+package ie.gmit.dip;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The ParserServerTest class checks how the <code>Parser</code> reads a URL, against a local HTTP server started on a free port.
+ * <p>
+ * It checks that the text is decoded with the charset of the Content-Type header (or the default charset if there is none),
+ * that a gzip compressed body is asked for and decompressed and the compressed bytes are counted,
+ * that a read longer than the read timeout throws a SocketTimeoutException and that an error status throws an IOException.
+ * It also checks that a local file is decoded as UTF-8.
+ * It exits with the status 1 if a check fails.
+ * <p>
+ * It is run from the command prompt:
+ * java -cp .\indexer.jar ie.gmit.dip.ParserServerTest
+ */
+public class ParserServerTest {
+	private static final String TEXT = "Caf\u00e9 na \u0142\u0105ce\nsecond line";
+	private static final int READ_TIMEOUT = 300;
+
+	/**
+	 * Runs the test.
+	 *
+	 * @param args not used
+	 * @throws IOException if the server cannot be started
+	 */
+	public static void main(String[] args) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		ExecutorService executor = Executors.newCachedThreadPool(); // The slow handler must not block the other requests
+		server.setExecutor(executor);
+		server.createContext("/utf8", new TextHandler("text/plain; charset=UTF-8", StandardCharsets.UTF_8, false, 200));
+		server.createContext("/latin2", new TextHandler("text/plain; charset=\"ISO-8859-2\"", Charset.forName("ISO-8859-2"), false, 200));
+		server.createContext("/default", new TextHandler("text/plain", Charset.defaultCharset(), false, 200));
+		server.createContext("/gzip", new TextHandler("text/plain;charset=utf-8", StandardCharsets.UTF_8, true, 200));
+		server.createContext("/missing", new TextHandler("text/plain; charset=UTF-8", StandardCharsets.UTF_8, false, 404));
+		server.createContext("/slow", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(READ_TIMEOUT * 10);
+				}catch(InterruptedException iEx) {
+					// The server is stopped
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+		List<String> failures = new ArrayList<String>();
+		try {
+			check(failures, "UTF-8 charset", TEXT.equals(read(base + "/utf8")));
+			check(failures, "ISO-8859-2 charset", TEXT.equals(read(base + "/latin2")));
+			String decoded = new String(TEXT.getBytes(Charset.defaultCharset()), Charset.defaultCharset()); // The text may not be encodable in the default charset
+			check(failures, "default charset", decoded.equals(read(base + "/default")));
+
+			Reader reader = new Reader();
+			BufferedReader br = reader.openBufferReader(base + "/gzip", true);
+			reader.parse(br);
+			check(failures, "gzip body", TEXT.equals(reader.text));
+			check(failures, "gzip bytes counted", reader.getBytesRead() == gzip(TEXT.getBytes(StandardCharsets.UTF_8)).length);
+
+			check(failures, "HTTP 404", thrown(base + "/missing") instanceof IOException);
+			long start = System.nanoTime();
+			Exception timeout = thrown(base + "/slow");
+			long millis = (System.nanoTime() - start) / 1000000;
+			check(failures, "read timeout", timeout instanceof SocketTimeoutException && millis < READ_TIMEOUT * 5);
+
+			File file = File.createTempFile("parser", ".txt");
+			try {
+				Files.write(file.toPath(), TEXT.getBytes(StandardCharsets.UTF_8));
+				reader = new Reader();
+				reader.parse(reader.openBufferReader(file.getPath(), false));
+				check(failures, "UTF-8 file", TEXT.equals(reader.text));
+			}finally {
+				file.delete();
+			}
+		}catch(Exception e) {
+			failures.add("unexpected " + e);
+		}finally {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+
+		if(failures.isEmpty()) {
+			System.out.println("All checks passed");
+			return;
+		}
+		for(String failure : failures) {
+			System.out.println(failure);
+		}
+		System.exit(1);
+	}
+
+	/*
+	 * Prints the result of a check and records it if it failed.
+	 */
+	private static void check(List<String> failures, String name, boolean passed) {
+		System.out.printf("%1$-24s %2$s%n", name, passed ? "OK" : "FAILED");
+		if(!passed) failures.add(name + " failed");
+	}
+
+	/*
+	 * Returns the text read from the URL.
+	 */
+	private static String read(String url) throws Exception {
+		Reader reader = new Reader();
+		reader.parse(reader.openBufferReader(url, true));
+		return reader.text;
+	}
+
+	/*
+	 * Returns the exception thrown by reading the URL or null if none is thrown.
+	 */
+	private static Exception thrown(String url) {
+		try {
+			read(url);
+			return null;
+		}catch(Exception e) {
+			return e;
+		}
+	}
+
+	/*
+	 * Returns the bytes compressed with gzip.
+	 */
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(bytes);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	/*
+	 * A Parser that keeps the lines read, joined with '\n'.
+	 */
+	private static class Reader extends Parser {
+		private String text;
+
+		public Reader() {
+			super();
+			setTimeouts(READ_TIMEOUT, READ_TIMEOUT);
+		}
+
+		public void parse(BufferedReader br) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			try {
+				String line;
+				while((line = br.readLine()) != null) {
+					if(sb.length() > 0) sb.append('\n');
+					sb.append(line);
+				}
+			}finally {
+				br.close();
+			}
+			text = sb.toString();
+		}
+	}
+
+	/*
+	 * Responds with the text encoded in the charset, compressed with gzip if it is asked for and 'gzip' is true.
+	 */
+	private static class TextHandler implements HttpHandler {
+		private String contentType;
+		private Charset charset;
+		private boolean gzip;
+		private int status;
+
+		public TextHandler(String contentType, Charset charset, boolean gzip, int status) {
+			this.contentType = contentType;
+			this.charset = charset;
+			this.gzip = gzip;
+			this.status = status;
+		}
+
+		public void handle(HttpExchange exchange) throws IOException {
+			byte[] body = TEXT.getBytes(charset);
+			String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if(gzip && accepted != null && accepted.contains("gzip")) {
+				body = gzip(body);
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,368 @@
+package ie.gmit.dip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The PartialIndex class collects the 'locators' of words (identified by their ids in a <code>TermTable</code>)
+ * found in a part of a text, e.g. a chunk of a file parsed by one thread.
+ * <p>
+ * It is used by one thread only, so it needs no synchronization. A pair of id and 'locator' is appended to an array of longs
+ * and its count (the number of occurrences) to an array of ints at the same position.
+ * When the part is parsed, the pairs are sorted by id and 'locator' and the duplicates are removed, their counts are added up.
+ * So the occurrences are counted in the same pass over the text as the 'locators'.
+ * The partial indices of all the parts are then added to the index of the whole text, in order or by a k-way merge.
+ * <p>
+ * A sorted partial index may be written to an <code>IndexLog</code> and read again, so a part of a text is not parsed again after a crash.
+ * <p>
+ * It must not be shared by threads.
+ */
+public class PartialIndex {
+	private long[] postings = new long[16]; // id in the high 32 bits, 'locator' in the low 32 bits
+	private int[] counts = new int[16]; // the number of occurrences of postings[i]
+	private long[] recent = new long[256]; // The last pair added for the ids with the same lowest bits
+	private int[] recentPositions = new int[256]; // The position of the last pair in 'postings'
+	private int size;
+	private boolean sorted = true;
+	private boolean ascending = true; // True if the 'locators' have been added in the ascending order, e.g. the pages of a text
+	private int lastLocator;
+
+	/**
+	 * Creates a new empty PartialIndex.
+	 */
+	public PartialIndex() {
+		super();
+		Arrays.fill(recent, -1L);
+	}
+
+	/**
+	 * Big-O notation - O(log(n)) amortized
+	 * <p>
+	 * Adds an occurrence on the 'locator' to the word of the given id.
+	 * A pair equal to the last pair added for a similar id only increments its count, the other duplicates are removed later.
+	 * <p>
+	 * When the array is full, the duplicates are removed first and the array grows only if it is still more than half full,
+	 * so the memory used depends on the number of distinct pairs rather than the number of words in the text.
+	 *
+	 * @param id the id of a word in the TermTable
+	 * @param locator a page number, not negative
+	 */
+	public void add(int id, int locator) {
+		long posting = ((long) id << 32) | locator;
+		int slot = id & (recent.length - 1);
+		if(recent[slot] == posting) { // The same word on the same page, e.g. a word repeated on a page
+			counts[recentPositions[slot]]++;
+			return;
+		}
+		if(locator < lastLocator) ascending = false;
+		lastLocator = locator;
+		if(size == postings.length) {
+			removeDuplicates();
+			if(size > postings.length / 2) {
+				postings = Arrays.copyOf(postings, postings.length * 2);
+				counts = Arrays.copyOf(counts, postings.length);
+			}
+		}
+		recent[slot] = posting;
+		recentPositions[slot] = size;
+		postings[size] = posting;
+		counts[size++] = 1;
+		sorted = false;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of pairs of id and 'locator'. It contains duplicates until the index is sorted.
+	 *
+	 * @return number of pairs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Sorts the pairs by id, then by 'locator', and removes the duplicates. The counts of the duplicates are added up.
+	 * The arrays are trimmed to the number of pairs left.
+	 */
+	public void sort() {
+		removeDuplicates();
+		if(postings.length > size) {
+			postings = Arrays.copyOf(postings, size);
+			counts = Arrays.copyOf(counts, size);
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n log(k)), where n is the total number of pairs and k is the number of partial indices
+	 * <p>
+	 * Merges the partial indices into a new sorted PartialIndex without duplicates. The counts of equal pairs are added up.
+	 * <p>
+	 * Every partial index is sorted first, then they are merged with a k-way merge:
+	 * a heap holds the next pair of every partial index and the smallest pair is taken from the heap.
+	 *
+	 * @param partials the partial indices, e.g. one per thread
+	 * @return a sorted PartialIndex with the pairs of all the partial indices
+	 */
+	public static PartialIndex merge(List<PartialIndex> partials) {
+		int total = 0;
+		for(PartialIndex partial : partials) {
+			partial.sort();
+			total += partial.size;
+		}
+		PartialIndex merged = new PartialIndex();
+		merged.postings = new long[total];
+		merged.counts = new int[total];
+
+		// Min-heap of the partial indices ordered by their next pair
+		final PartialIndex[] sources = partials.toArray(new PartialIndex[0]);
+		int[] next = new int[sources.length];
+		int[] heap = new int[sources.length];
+		int heapSize = 0;
+		for(int i = 0; i < sources.length; i++) {
+			if(sources[i].size > 0) heap[heapSize++] = i;
+		}
+		for(int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(heap, heapSize, i, sources, next);
+		}
+		while(heapSize > 0) {
+			int top = heap[0];
+			long posting = sources[top].postings[next[top]];
+			int count = sources[top].counts[next[top]++];
+			if(merged.size == 0 || merged.postings[merged.size - 1] != posting) {
+				merged.postings[merged.size] = posting;
+				merged.counts[merged.size++] = count;
+			}else {
+				merged.counts[merged.size - 1] += count; // The same word on the same page in two parts
+			}
+			if(next[top] == sources[top].size) heap[0] = heap[--heapSize]; // The partial index is exhausted
+			siftDown(heap, heapSize, 0, sources, next);
+		}
+		merged.postings = Arrays.copyOf(merged.postings, merged.size);
+		merged.counts = Arrays.copyOf(merged.counts, merged.size);
+		merged.sorted = true;
+		return merged;
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Adds all the 'locators' with their counts to the TermIndex.
+	 * If the partial indices are added in the order of the parts of the text, the 'locators' are appended to the 'locators' of every word.
+	 *
+	 * @param index the index of the whole text
+	 */
+	public void addTo(TermIndex index) {
+		sort();
+		for(int i = 0; i < size; i++) {
+			index.add(id(postings[i]), locator(postings[i]), counts[i]);
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Adds all the 'locators' with their counts to the object that is Indexable, with the 'headings' and 'wordDetails' of the TermTable.
+	 *
+	 * @param index an object that is Indexable
+	 * @param terms the TermTable that the ids refer to
+	 */
+	public void addTo(Indexable index, TermTable terms) {
+		sort();
+		for(int i = 0; i < size; i++) {
+			int id = id(postings[i]);
+			index.addIndex(terms.term(id), locator(postings[i]), counts[i], terms.definitions(id));
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Sorts the pairs and writes them with their counts: the number of words, then every word as its text followed by
+	 * the number of its 'locators' and every 'locator' as the gap from the previous one and its count.
+	 * The words are written as text, not as ids, so the partial index may be read with another TermTable.
+	 *
+	 * @param out the stream that the pairs are written to
+	 * @param terms the TermTable that the ids refer to
+	 * @throws IOException if the pairs cannot be written
+	 */
+	void write(OutputStream out, TermTable terms) throws IOException {
+		sort();
+		int words = 0;
+		for(int i = 0; i < size; i++) {
+			if(i == 0 || id(postings[i]) != id(postings[i - 1])) words++;
+		}
+		IndexFile.writeVarInt(out, words);
+		int start = 0;
+		while(start < size) {
+			int id = id(postings[start]);
+			int end = start + 1;
+			while(end < size && id(postings[end]) == id) end++;
+			IndexFile.writeText(out, terms.term(id), 0);
+			IndexFile.writeVarInt(out, end - start);
+			int last = 0;
+			for(int i = start; i < end; i++) {
+				IndexFile.writeVarInt(out, locator(postings[i]) - last);
+				IndexFile.writeVarInt(out, counts[i]);
+				last = locator(postings[i]);
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Reads the pairs written by the write method. The words that are not in the TermTable are skipped.
+	 * The first element of 'pos' is the position in the buffer, it is moved after the pairs.
+	 *
+	 * @param buffer the buffer containing the pairs
+	 * @param pos a single element array with the position
+	 * @param terms the TermTable that the words are found in
+	 * @return a new PartialIndex with the pairs and their counts
+	 * @throws IndexOutOfBoundsException if the pairs are not complete
+	 */
+	static PartialIndex read(ByteBuffer buffer, int[] pos, TermTable terms) {
+		PartialIndex partial = new PartialIndex();
+		int words = IndexFile.readVarInt(buffer, pos);
+		for(int i = 0; i < words; i++) {
+			int id = terms.find(IndexFile.readText(buffer, pos, null, 0));
+			int frequency = IndexFile.readVarInt(buffer, pos);
+			int locator = 0;
+			for(int j = 0; j < frequency; j++) {
+				locator += IndexFile.readVarInt(buffer, pos);
+				int count = IndexFile.readVarInt(buffer, pos);
+				if(id < 0) continue;
+				if(partial.size == partial.postings.length) {
+					partial.postings = Arrays.copyOf(partial.postings, partial.size * 2);
+					partial.counts = Arrays.copyOf(partial.counts, partial.postings.length);
+				}
+				partial.postings[partial.size] = ((long) id << 32) | locator;
+				partial.counts[partial.size++] = count;
+			}
+		}
+		// The ids of the other TermTable may be in another order. The 'locators' of every word are ascending, so they stay sorted by the stable sort by id.
+		partial.sorted = partial.size == 0;
+		return partial;
+	}
+
+	/*
+	 * Sorts the pairs and removes the duplicates, adding up their counts. The arrays are not trimmed.
+	 * The pairs are moved, so the positions of the recent pairs are forgotten.
+	 */
+	private void removeDuplicates() {
+		if(sorted) return;
+		sortById();
+		if(!ascending) sortByLocator();
+		int unique = 0;
+		for(int i = 0; i < size; i++) {
+			if(unique > 0 && postings[i] == postings[unique - 1]) {
+				counts[unique - 1] += counts[i];
+			}else {
+				postings[unique] = postings[i];
+				counts[unique++] = counts[i];
+			}
+		}
+		size = unique;
+		sorted = true;
+		Arrays.fill(recent, -1L);
+	}
+
+	/*
+	 * Sorts the pairs and their counts by id with a counting sort, which is stable.
+	 * If the 'locators' have been added in the ascending order, they stay in the ascending order within every id.
+	 */
+	private void sortById() {
+		int maxId = 0;
+		for(int i = 0; i < size; i++) {
+			maxId = Math.max(maxId, id(postings[i]));
+		}
+		int[] starts = new int[maxId + 2];
+		for(int i = 0; i < size; i++) {
+			starts[id(postings[i]) + 1]++;
+		}
+		for(int i = 1; i < starts.length; i++) {
+			starts[i] += starts[i - 1];
+		}
+		long[] temp = new long[postings.length];
+		int[] tempCounts = new int[counts.length];
+		for(int i = 0; i < size; i++) {
+			int pos = starts[id(postings[i])]++;
+			temp[pos] = postings[i];
+			tempCounts[pos] = counts[i];
+		}
+		postings = temp;
+		counts = tempCounts;
+	}
+
+	/*
+	 * Sorts the pairs of every id by 'locator' after they have been sorted by id, if the 'locators' have not been added in the ascending order.
+	 * A 'locator' and its count are packed into a long, the 'locator' in the high 32 bits, so they are sorted together.
+	 */
+	private void sortByLocator() {
+		long[] packed = new long[16];
+		int start = 0;
+		while(start < size) {
+			long id = postings[start] & 0xFFFFFFFF00000000L;
+			int end = start + 1;
+			while(end < size && (postings[end] & 0xFFFFFFFF00000000L) == id) end++;
+			if(end - start > packed.length) packed = new long[Math.max(end - start, packed.length * 2)];
+			for(int i = start; i < end; i++) {
+				packed[i - start] = ((long) locator(postings[i]) << 32) | counts[i];
+			}
+			Arrays.sort(packed, 0, end - start);
+			for(int i = start; i < end; i++) {
+				postings[i] = id | (packed[i - start] >>> 32);
+				counts[i] = (int) packed[i - start];
+			}
+			start = end;
+		}
+	}
+
+	/*
+	 * Moves the partial index at the position of the heap down until its next pair is not greater than the next pairs of its children.
+	 */
+	private static void siftDown(int[] heap, int heapSize, int pos, PartialIndex[] sources, int[] next) {
+		int moved = heap[pos];
+		long value = heapSize > 0 ? sources[moved].postings[next[moved]] : 0;
+		while(2 * pos + 1 < heapSize) {
+			int child = 2 * pos + 1;
+			if(child + 1 < heapSize && head(heap[child + 1], sources, next) < head(heap[child], sources, next)) child++;
+			if(head(heap[child], sources, next) >= value) break;
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = moved;
+	}
+
+	/*
+	 * Returns the next pair of the partial index.
+	 */
+	private static long head(int source, PartialIndex[] sources, int[] next) {
+		return sources[source].postings[next[source]];
+	}
+
+	/*
+	 * Returns the id of the pair.
+	 */
+	private static int id(long posting) {
+		return (int) (posting >>> 32);
+	}
+
+	/*
+	 * Returns the 'locator' of the pair.
+	 */
+	private static int locator(long posting) {
+		return (int) posting;
+	}
+
+}
@@ -0,0 +1,110 @@
+package ie.gmit.dip;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The PositionalBenchmark class compares the cost of the positional mode of QueryParser with the default mode, which records only the pages.
+ * <p>
+ * The same text is parsed in both modes with the parse and the parseFile methods. The runs are repeated in turns and the best throughput of every mode is displayed.
+ * The heap taken by the page index (the <code>SealedIndex</code>) and by the <code>PositionalIndex</code> is displayed with the number of bytes per
+ * 'locator' and per occurrence, so the mode can be chosen for the size of the texts and the memory available.
+ * <p>
+ * It is run from the command prompt:
+ * java -XX:+UseParallelGC -cp .\indexer.jar ie.gmit.dip.PositionalBenchmark book.txt [stopwords.txt] [dictionary.csv | dictionary.dict]
+ */
+public class PositionalBenchmark {
+	private static final int RUNS = 5;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path of the text file, optionally followed by the paths of the ignore words and dictionary files
+	 * @throws Exception if a file cannot be parsed
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: PositionalBenchmark book.txt [stopwords.txt] [dictionary.csv | dictionary.dict]");
+			return;
+		}
+		String book = args[0];
+		String stopwords = args.length > 1 ? args[1] : "./stopwords.txt";
+		String dictionaryFile = args.length > 2 ? args[2] : "./dictionary.csv";
+		TermTable terms = new DictionaryCache().getTermTable(stopwords, dictionaryFile);
+
+		// The modes are run in turns, so they are measured in the same conditions, and the best throughput of every mode is kept
+		double[] best = new double[4]; // parse and parseFile of pages, then of positions
+		run(terms, book, false, false); // Warm-up
+		run(terms, book, true, true);
+		for(int i = 0; i < RUNS; i++) {
+			for(int mode = 0; mode < best.length; mode++) {
+				best[mode] = Math.max(best[mode], run(terms, book, mode >= 2, mode % 2 == 1));
+			}
+		}
+		System.out.printf("%1$-12s %2$18s %3$18s%n", "Mode", "parse (w/s)", "parseFile (w/s)");
+		System.out.printf("%1$-12s %2$18.0f %3$18.0f%n", "Pages", best[0], best[1]);
+		System.out.printf("%1$-12s %2$18.0f %3$18.0f%n", "Positional", best[2], best[3]);
+		System.out.printf("%1$-12s %2$17.0f%% %3$17.0f%%%n", "Cost", 100 * (1 - best[2] / best[0]), 100 * (1 - best[3] / best[1]));
+
+		// The heap of both indices of the same text
+		QueryParser parser = new QueryParser(terms);
+		parser.setPositional(true);
+		parser.parseFile(book);
+		Indexable pageIndex = parser.getIndexer();
+		PositionalIndex positionalIndex = parser.getPositionalIndex();
+		parser = null;
+		long locators = 0;
+		long occurrences = 0;
+		for(String heading : pageIndex.getHeadings()) {
+			locators += pageIndex.getFrequency(heading);
+			occurrences += positionalIndex.getPositions(heading).length;
+		}
+		long withIndices = usedHeap();
+		long encoded = positionalIndex.sizeInBytes();
+		positionalIndex = null;
+		long withPageIndex = usedHeap();
+		int headings = pageIndex.indicesTotal(); // Keeps the index reachable until the heap is measured
+		pageIndex = null;
+		long withoutIndices = usedHeap();
+		long pageHeap = Math.max(0, withPageIndex - withoutIndices);
+		long positionalHeap = Math.max(0, withIndices - withPageIndex);
+		System.out.println();
+		System.out.printf("%1$-12s %2$12s %3$14s %4$12s %5$12s%n", "Index", "Headings", "Entries", "Heap (KB)", "Bytes/entry");
+		System.out.printf("%1$-12s %2$12d %3$14d %4$12d %5$12.1f%n", "Pages", headings, locators, pageHeap / 1024,
+				locators == 0 ? 0.0 : (double) pageHeap / locators);
+		System.out.printf("%1$-12s %2$12d %3$14d %4$12d %5$12.1f%n", "Positional", headings, occurrences, positionalHeap / 1024,
+				occurrences == 0 ? 0.0 : (double) positionalHeap / occurrences);
+		System.out.printf("The encoded positions take %d KB, %.2f bytes per occurrence%n", encoded / 1024, occurrences == 0 ? 0.0 : (double) encoded / occurrences);
+	}
+
+	/*
+	 * Parses the text in the given mode and returns the throughput in words per second.
+	 */
+	private static double run(TermTable terms, String book, boolean positional, boolean file) throws Exception {
+		QueryParser parser = new QueryParser(terms);
+		parser.setPositional(positional);
+		long start = System.nanoTime();
+		if(file) {
+			parser.parseFile(book);
+		}else {
+			parser.parse(parser.openBufferReader(book, false));
+		}
+		parser.getIndexer();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return parser.getWordsTotal() / seconds;
+	}
+
+	/*
+	 * Returns the used heap after a garbage collection.
+	 */
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
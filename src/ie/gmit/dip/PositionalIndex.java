@@ -0,0 +1,532 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The PositionalIndex class stores the position of every occurrence of every indexed word of a text, so the phrases and the words near each other can be found.
+ * <p>
+ * A position is the number of words before the occurrence in the whole text, counting all the words (also the 'ignore words' and the words that are not
+ * in the 'dictionary'). So a phrase is a sequence of consecutive positions and the distance of two positions is the number of words between them.
+ * The line, the page and the offset of the word in its line are computed from the position (see lineOf, pageOf and wordOf):
+ * the position of the first word of every line is stored once.
+ * <p>
+ * The positions of a word are stored as gaps encoded as variable-byte integers in one array of bytes for all the words,
+ * so an occurrence usually takes 1 or 2 bytes.
+ * Every 64th position of a word also has a skip offset: its offset in the array and the position before it.
+ * The queries read the positions directly from the encoded bytes, they jump over the skip offsets and decode at most 64 positions at a time,
+ * so a frequent word is not decoded as a whole to find a few positions.
+ * <p>
+ * It is built by QueryParser when the positional mode is set (see QueryParser.setPositional) and it is immutable.
+ * It may be queried by many threads at once.
+ */
+public class PositionalIndex {
+	private static final int SKIP_INTERVAL = 64; // the number of positions between skip offsets
+	private TermTable terms;
+	private int linesNumber;
+	private int[] lineStarts; // the position of the first word of every line, followed by the number of words of the text
+	private byte[] data; // the gaps of the positions of all the words
+	private int[] offsets; // the positions of the word of id i are data[offsets[i]] to data[offsets[i + 1] - 1]
+	private int[] counts; // the number of occurrences of every word
+	private int[] skipStarts; // the skip offsets of the word of id i are skipOffsets[skipStarts[i]] to skipOffsets[skipStarts[i + 1] - 1]
+	private int[] skipOffsets; // the offset in data of the occurrence (j + 1) * SKIP_INTERVAL of a word, where j is the number of the skip offset of the word
+	private int[] skipPositions; // the position of the occurrence before the skip offset, the gap at the skip offset is relative to it
+
+	/*
+	 * Creates the index from the encoded positions.
+	 */
+	private PositionalIndex(TermTable terms, int linesNumber, int[] lineStarts, byte[] data, int[] offsets, int[] counts,
+			int[] skipStarts, int[] skipOffsets, int[] skipPositions) {
+		super();
+		this.terms = terms;
+		this.linesNumber = linesNumber;
+		this.lineStarts = lineStarts;
+		this.data = data;
+		this.offsets = offsets;
+		this.counts = counts;
+		this.skipStarts = skipStarts;
+		this.skipOffsets = skipOffsets;
+		this.skipPositions = skipPositions;
+	}
+
+	/**
+	 * Big-O notation - O(k), where k is the number of occurrences of the word
+	 * <p>
+	 * Returns the positions of all the occurrences of the given word in the ascending order.
+	 *
+	 * @param heading a word
+	 * @return array of positions. It is empty if the word is not in the text
+	 */
+	public int[] getPositions(String heading) {
+		int id = terms.find(heading);
+		return id < 0 ? new int[0] : positions(id);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of words of the text, counting all the words.
+	 *
+	 * @return number of words
+	 */
+	public int wordsTotal() {
+		return lineStarts[lineStarts.length - 1];
+	}
+
+	/**
+	 * Big-O notation - O(log(l)), where l is the number of lines
+	 * <p>
+	 * Returns the line of the position. The first line of the text is 1.
+	 *
+	 * @param position a position returned by a query
+	 * @return the line number
+	 * @throws IndexOutOfBoundsException if the position is not in the text
+	 */
+	public int lineOf(int position) {
+		if(position < 0 || position >= wordsTotal()) throw new IndexOutOfBoundsException("Position: " + position);
+		// The last line starting at or before the position, an empty line starts at the same position as the next one
+		int low = 0;
+		int high = lineStarts.length - 2;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(lineStarts[mid] <= position) low = mid;
+			else high = mid - 1;
+		}
+		return low + 1;
+	}
+
+	/**
+	 * Big-O notation - O(log(l)), where l is the number of lines
+	 * <p>
+	 * Returns the page of the position, the same page as the 'locator' of the word in the page index.
+	 *
+	 * @param position a position returned by a query
+	 * @return the page number
+	 * @throws IndexOutOfBoundsException if the position is not in the text
+	 */
+	public int pageOf(int position) {
+		return (lineOf(position) - 1) / linesNumber + 1;
+	}
+
+	/**
+	 * Big-O notation - O(log(l)), where l is the number of lines
+	 * <p>
+	 * Returns the offset of the word of the position in its line. The first word of a line is 1.
+	 *
+	 * @param position a position returned by a query
+	 * @return the number of the word in its line
+	 * @throws IndexOutOfBoundsException if the position is not in the text
+	 */
+	public int wordOf(int position) {
+		return position - lineStarts[lineOf(position) - 1] + 1;
+	}
+
+	/**
+	 * Big-O notation - O(w min(k (log(K) + B), K)), where w is the number of words of the phrase, k is the number of occurrences
+	 * of the least frequent word, K is the number of occurrences of the most frequent word and B is the number of positions between skip offsets (64)
+	 * <p>
+	 * Returns the positions where the phrase starts, i.e. the words of the phrase are at consecutive positions.
+	 * <p>
+	 * A word of the phrase that is not indexed (an 'ignore word' or a word that is not in the 'dictionary') matches any word,
+	 * e.g. 'cup of coffee' finds 'cup' followed by any word and 'coffee'.
+	 * <p>
+	 * The positions of the least frequent word are decoded in order. The other words are searched by galloping over their skip offsets
+	 * and decoding at most B positions after the skip offset found. Every search continues from the previous one, so no word is decoded more than once.
+	 *
+	 * @param words the words of the phrase in order, in lower case
+	 * @return array of positions of the first word of the phrase. It is empty if the phrase is not in the text or no word of the phrase is indexed
+	 */
+	public int[] getPhrase(List<String> words) {
+		List<Cursor> cursors = new ArrayList<Cursor>();
+		List<Integer> shifts = new ArrayList<Integer>(); // The offset of every indexed word in the phrase
+		int anchor = -1; // The least frequent word
+		for(int i = 0; i < words.size(); i++) {
+			int id = terms.find(words.get(i));
+			if(id < 0) continue; // Matches any word
+			if(counts[id] == 0) return new int[0];
+			if(anchor < 0 || counts[id] < cursors.get(anchor).count) anchor = cursors.size();
+			cursors.add(new Cursor(id));
+			shifts.add(i);
+		}
+		if(anchor < 0) return new int[0];
+		Cursor anchorCursor = cursors.get(anchor);
+		int[] temp = new int[anchorCursor.count];
+		int total = 0;
+		while(anchorCursor.next()) {
+			int start = anchorCursor.position - shifts.get(anchor);
+			if(start < 0) continue;
+			boolean found = true;
+			for(int i = 0; i < cursors.size() && found; i++) {
+				if(i == anchor) continue;
+				Cursor cursor = cursors.get(i);
+				int target = start + shifts.get(i);
+				if(!cursor.advanceTo(target)) return Arrays.copyOf(temp, total); // The word does not occur after the target
+				found = cursor.position == target;
+			}
+			if(found) temp[total++] = start;
+		}
+		return Arrays.copyOf(temp, total);
+	}
+
+	/**
+	 * Big-O notation - O(k + w min(k (log(K) + B), K)), where w is the number of words, k is the number of occurrences of the first word,
+	 * K is the number of occurrences of the most frequent other word and B is the number of positions between skip offsets (64)
+	 * <p>
+	 * Returns the positions of the first word where all the other words are at most 'distance' words before or after it,
+	 * e.g. 'java' and 'coffee' within 5 words.
+	 * <p>
+	 * The positions of the first word are decoded in order, the other words are searched like in getPhrase.
+	 *
+	 * @param words the words, in lower case
+	 * @param distance the maximum difference of the positions, e.g. 1 for the next or the previous word
+	 * @return array of positions of the first word. It is empty if there are no words or they are not near each other
+	 * @throws IllegalArgumentException if the distance is negative
+	 */
+	public int[] getNear(List<String> words, int distance) {
+		if(distance < 0) throw new IllegalArgumentException("The distance must not be negative: " + distance);
+		if(words.isEmpty()) return new int[0];
+		int firstId = terms.find(words.get(0));
+		if(firstId < 0) return new int[0];
+		List<Cursor> others = new ArrayList<Cursor>();
+		for(String word : words.subList(1, words.size())) {
+			int id = terms.find(word);
+			if(id < 0) return new int[0]; // The word never occurs
+			others.add(new Cursor(id));
+		}
+		// The least frequent words are checked first
+		Collections.sort(others, new Comparator<Cursor>() {
+			public int compare(Cursor cursor1, Cursor cursor2) {
+				return Integer.compare(cursor1.count, cursor2.count);
+			}
+		});
+		Cursor first = new Cursor(firstId);
+		int[] temp = new int[first.count];
+		int total = 0;
+		while(first.next()) {
+			int position = first.position;
+			boolean found = true;
+			for(int i = 0; i < others.size() && found; i++) {
+				Cursor cursor = others.get(i);
+				// The first occurrence not before the window, the positions of the first word are ascending so the window only moves forward
+				if(!cursor.advanceTo((int) Math.max(0, (long) position - distance))) return Arrays.copyOf(temp, total);
+				found = cursor.position <= (long) position + distance;
+			}
+			if(found) temp[total++] = position;
+		}
+		return Arrays.copyOf(temp, total);
+	}
+
+	/**
+	 * Big-O notation - O(k log(l)), where k is the number of positions and l is the number of lines
+	 * <p>
+	 * Returns the pages of the positions without duplicates, e.g. to display the pages of a phrase.
+	 *
+	 * @param positions the positions in the ascending order
+	 * @return array of pages in the ascending order
+	 */
+	public int[] pagesOf(int[] positions) {
+		int[] temp = new int[positions.length];
+		int total = 0;
+		for(int position : positions) {
+			int page = pageOf(position);
+			if(total == 0 || temp[total - 1] != page) temp[total++] = page;
+		}
+		return Arrays.copyOf(temp, total);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of bytes of the arrays of the index: the encoded positions, their offsets, counts and skip offsets
+	 * and the first positions of the lines.
+	 *
+	 * @return the size of the index in bytes
+	 */
+	public long sizeInBytes() {
+		return data.length + 4L * (offsets.length + counts.length + lineStarts.length + skipStarts.length + skipOffsets.length + skipPositions.length);
+	}
+
+	/*
+	 * Decodes the positions of the word of the id.
+	 */
+	private int[] positions(int id) {
+		int[] temp = new int[counts[id]];
+		int pos = offsets[id];
+		int position = 0;
+		for(int i = 0; i < temp.length; i++) {
+			int b = data[pos++];
+			int gap = b & 0x7F;
+			for(int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = data[pos++];
+				gap |= (b & 0x7F) << shift;
+			}
+			position += gap;
+			temp[i] = position;
+		}
+		return temp;
+	}
+
+	/*
+	 * A cursor over the encoded positions of a word. It only moves forward.
+	 */
+	private class Cursor {
+		private int id;
+		private int count; // the number of occurrences of the word
+		private int index = -1; // the number of the current occurrence, count if the cursor is after the last one
+		private int position; // the position of the current occurrence, 0 before the first one
+		private int offset; // the offset of the gap of the next occurrence in data
+
+		public Cursor(int id) {
+			this.id = id;
+			this.count = counts[id];
+			this.offset = offsets[id];
+		}
+
+		/*
+		 * Moves to the next occurrence. Returns false if there are no more occurrences.
+		 */
+		public boolean next() {
+			if(index + 1 >= count) {
+				index = count;
+				return false;
+			}
+			int b = data[offset++];
+			int gap = b & 0x7F;
+			for(int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = data[offset++];
+				gap |= (b & 0x7F) << shift;
+			}
+			position += gap;
+			index++;
+			return true;
+		}
+
+		/*
+		 * Moves to the first occurrence at or after the target position, unless the current one is already there.
+		 * Returns false if there is no such occurrence.
+		 * It gallops over the skip offsets after the current occurrence to the last one before the target, then decodes at most SKIP_INTERVAL positions.
+		 */
+		public boolean advanceTo(int target) {
+			if(index >= count) return false;
+			if(index >= 0 && position >= target) return true;
+			int first = skipStarts[id];
+			int skips = skipStarts[id + 1] - first;
+			int low = (index + 1) / SKIP_INTERVAL; // The first skip offset after the next occurrence
+			if(low < skips && skipPositions[first + low] < target) {
+				int step = 1;
+				while(low + step < skips && skipPositions[first + low + step] < target) {
+					low += step;
+					step <<= 1;
+				}
+				int high = Math.min(low + step, skips) - 1; // The skip offset of 'low' is before the target, the one after 'high' is not
+				while(low < high) {
+					int mid = (low + high + 1) >>> 1;
+					if(skipPositions[first + mid] < target) low = mid;
+					else high = mid - 1;
+				}
+				index = (low + 1) * SKIP_INTERVAL - 1;
+				position = skipPositions[first + low];
+				offset = skipOffsets[first + low];
+			}
+			while(next()) {
+				if(position >= target) return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The Builder class collects the positions found by the threads parsing the parts of a text (e.g. the batches of lines)
+	 * and builds the PositionalIndex when the whole text is parsed.
+	 * <p>
+	 * A part counts the words from its own first line, as the number of words of the previous parts is not known while they are parsed in parallel.
+	 * The positions of every part are moved by the number of words of the previous parts when the index is built.
+	 */
+	public static class Builder {
+		private TermTable terms;
+		private int linesNumber;
+		private List<Part> parts = new ArrayList<Part>();
+
+		/**
+		 * Creates a new Builder for the words of the TermTable.
+		 *
+		 * @param terms the words that may be indexed
+		 * @param linesNumber the number of lines per page
+		 */
+		public Builder(TermTable terms, int linesNumber) {
+			super();
+			this.terms = terms;
+			this.linesNumber = linesNumber;
+		}
+
+		/**
+		 * Big-O notation - O(1)
+		 * <p>
+		 * Returns a new part of the text starting at the given line. The part is used by one thread.
+		 *
+		 * @param firstLine the number of the first line of the part, the first line of the text is 0
+		 * @return a new part
+		 */
+		public synchronized Part newPart(int firstLine) {
+			Part part = new Part(firstLine);
+			parts.add(part);
+			return part;
+		}
+
+		/**
+		 * Big-O notation - O(n + l), where n is the number of occurrences of the indexed words and l is the number of lines
+		 * <p>
+		 * Builds the index from all the parts. The parts must cover consecutive lines of the text.
+		 *
+		 * @return the positional index of the text
+		 * @throws IllegalStateException if the text has more words than the range of ints
+		 */
+		public synchronized PositionalIndex build() {
+			Collections.sort(parts, new Comparator<Part>() {
+				public int compare(Part part1, Part part2) {
+					return Integer.compare(part1.firstLine, part2.firstLine);
+				}
+			});
+			int linesTotal = 0;
+			int[] counts = new int[terms.size()];
+			for(Part part : parts) {
+				linesTotal += part.lines;
+				for(int i = 0; i < part.size; i++) {
+					counts[(int) (part.occurrences[i] >>> 32)]++;
+				}
+			}
+			// The first position of every line and of every part
+			int[] lineStarts = new int[linesTotal + 1];
+			int[] bases = new int[parts.size()];
+			long position = 0;
+			int line = 0;
+			for(int p = 0; p < parts.size(); p++) {
+				Part part = parts.get(p);
+				bases[p] = (int) position;
+				for(int i = 0; i < part.lines; i++) {
+					lineStarts[line++] = (int) position;
+					position += part.lineWords[i];
+					if(position > Integer.MAX_VALUE) throw new IllegalStateException("The text is too large for the positional index");
+				}
+			}
+			lineStarts[line] = (int) position;
+
+			// The positions of every word: the parts are in order and the positions within a part are ascending
+			int[] starts = new int[counts.length + 1];
+			for(int id = 0; id < counts.length; id++) {
+				starts[id + 1] = starts[id] + counts[id];
+			}
+			int[] positions = new int[starts[counts.length]];
+			int[] next = Arrays.copyOf(starts, counts.length);
+			for(int p = 0; p < parts.size(); p++) {
+				Part part = parts.get(p);
+				for(int i = 0; i < part.size; i++) {
+					positions[next[(int) (part.occurrences[i] >>> 32)]++] = bases[p] + (int) part.occurrences[i];
+				}
+				part.occurrences = null; // Released as soon as possible
+			}
+
+			// The positions encoded as gaps, with a skip offset before every SKIP_INTERVAL-th position of a word
+			int[] skipStarts = new int[counts.length + 1];
+			for(int id = 0; id < counts.length; id++) {
+				skipStarts[id + 1] = skipStarts[id] + (counts[id] > 0 ? (counts[id] - 1) / SKIP_INTERVAL : 0);
+			}
+			int[] skipOffsets = new int[skipStarts[counts.length]];
+			int[] skipPositions = new int[skipOffsets.length];
+			ByteArray data = new ByteArray(positions.length + positions.length / 2);
+			int[] offsets = new int[counts.length + 1];
+			int skip = 0;
+			for(int id = 0; id < counts.length; id++) {
+				int last = 0;
+				for(int i = starts[id]; i < starts[id + 1]; i++) {
+					if(i > starts[id] && (i - starts[id]) % SKIP_INTERVAL == 0) {
+						skipOffsets[skip] = data.size;
+						skipPositions[skip++] = last;
+					}
+					data.writeVarInt(positions[i] - last);
+					last = positions[i];
+				}
+				offsets[id + 1] = data.size;
+			}
+			return new PositionalIndex(terms, linesNumber, lineStarts, Arrays.copyOf(data.bytes, data.size), offsets, counts,
+					skipStarts, skipOffsets, skipPositions);
+		}
+	}
+
+	/**
+	 * The Part class collects the positions of the indexed words of a part of a text. It must be used by one thread only.
+	 * <p>
+	 * The parser calls word for every word of a line, indexed or not, and endLine at the end of every line.
+	 */
+	public static class Part {
+		private int firstLine;
+		private long[] occurrences = new long[64]; // id in the high 32 bits, position in the part in the low 32 bits
+		private int size;
+		private int[] lineWords = new int[64]; // the number of words of every line of the part
+		private int lines;
+		private int position; // the position of the next word in the part
+		private int lineStart; // the position of the first word of the current line
+
+		/*
+		 * Creates a new part starting at the given line.
+		 */
+		private Part(int firstLine) {
+			this.firstLine = firstLine;
+		}
+
+		/**
+		 * Big-O notation - O(1) amortized
+		 * <p>
+		 * Adds the next word of the text.
+		 *
+		 * @param id the id of the word in the TermTable, or -1 if the word is not indexed
+		 */
+		public void word(int id) {
+			if(id >= 0) {
+				if(size == occurrences.length) occurrences = Arrays.copyOf(occurrences, size * 2);
+				occurrences[size++] = ((long) id << 32) | position;
+			}
+			position++;
+		}
+
+		/**
+		 * Big-O notation - O(1) amortized
+		 * <p>
+		 * Ends the current line. The following words are on the next line.
+		 */
+		public void endLine() {
+			if(lines == lineWords.length) lineWords = Arrays.copyOf(lineWords, lines * 2);
+			lineWords[lines++] = position - lineStart;
+			lineStart = position;
+		}
+	}
+
+	/*
+	 * A growable array of bytes with variable-byte integers.
+	 */
+	private static class ByteArray {
+		private byte[] bytes;
+		private int size;
+
+		public ByteArray(int capacity) {
+			this.bytes = new byte[Math.max(capacity, 16)];
+		}
+
+		public void writeVarInt(int value) {
+			if(size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			while((value & ~0x7F) != 0) {
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package ie.gmit.dip;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The Postings interface represents a sorted set of 'locators' (e.g. page numbers) associated with a 'heading'.
+ * <p>
+ * The 'locators' are primitive ints kept in the ascending order. They cannot be duplicated.
+ * Every 'locator' has a count: the number of occurrences of the 'heading' on the 'locator', e.g. how many times a word appears on a page.
+ * Adding a 'locator' that already exists does not duplicate it, but it increments its count.
+ * The implementations decide how the pairs of 'locator' and count are stored, e.g. as arrays of ints or compressed, they are never boxed.
+ */
+public interface Postings {
+
+	/**
+	 * Adds an occurrence on a 'locator' to the set of 'locators'.
+	 * If the 'locator' already exists, its count is incremented.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public boolean add(int locator);
+
+	/**
+	 * Adds the given number of occurrences on a 'locator' to the set of 'locators'.
+	 * If the 'locator' already exists, the number is added to its count.
+	 *
+	 * @param locator a page number
+	 * @param count the number of occurrences, greater than 0
+	 * @return true if the 'locator' was added, false if it already exists
+	 */
+	public boolean add(int locator, int count);
+
+	/**
+	 * Returns true if the set contains the given 'locator'.
+	 *
+	 * @param locator a page number
+	 * @return true if the 'locator' exists, otherwise false
+	 */
+	public boolean contains(int locator);
+
+	/**
+	 * Returns the number of occurrences on the given 'locator'.
+	 *
+	 * @param locator a page number
+	 * @return the count of the 'locator', 0 if it does not exist
+	 */
+	public int count(int locator);
+
+	/**
+	 * Returns the number of 'locators'.
+	 *
+	 * @return number of 'locators'
+	 */
+	public int size();
+
+	/**
+	 * Returns the total number of occurrences on all the 'locators', i.e. the sum of the counts.
+	 *
+	 * @return number of occurrences
+	 */
+	public long occurrences();
+
+	/**
+	 * Returns a copy of the 'locators' in the ascending order.
+	 *
+	 * @return array of 'locators'
+	 */
+	public int[] toArray();
+
+	/**
+	 * Returns a copy of the counts in the order of the 'locators': the count of the i-th 'locator' returned by toArray is the i-th count.
+	 *
+	 * @return array of counts
+	 */
+	public int[] counts();
+
+	/**
+	 * Returns an iterator over the 'locators' in the ascending order.
+	 * <p>
+	 * The set must not be modified while the iterator is used.
+	 *
+	 * @return iterator over the 'locators'
+	 */
+	public PostingsIterator iterator();
+
+	/**
+	 * Releases the unused capacity.
+	 * It should be called when no more 'locators' are going to be added.
+	 */
+	public void trimToSize();
+
+}
@@ -0,0 +1,39 @@
+package ie.gmit.dip;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The PostingsIterator interface is an iterator over the 'locators' of <code>Postings</code> in the ascending order.
+ * <p>
+ * The 'locators' are returned as primitive ints.
+ * The advance method skips the 'locators' lower than a target, which is what an intersection of two sets of 'locators' needs.
+ */
+public interface PostingsIterator {
+
+	/**
+	 * Returns true if there are more 'locators'.
+	 *
+	 * @return true if there are more 'locators'
+	 */
+	public boolean hasNext();
+
+	/**
+	 * Returns the next 'locator'.
+	 *
+	 * @return the next 'locator'
+	 * @throws java.util.NoSuchElementException if there are no more 'locators'
+	 */
+	public int next();
+
+	/**
+	 * Skips the 'locators' lower than the target.
+	 * If it returns true, the next method returns the first 'locator' greater than or equal to the target.
+	 *
+	 * @param target the lowest 'locator' to be returned by the next method
+	 * @return true if there is a 'locator' greater than or equal to the target, otherwise false
+	 */
+	public boolean advance(int target);
+
+}
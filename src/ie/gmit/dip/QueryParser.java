@@ -1,10 +1,27 @@
 package ie.gmit.dip;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author  Pawel Zamorski
@@ -26,13 +43,34 @@ import java.net.MalformedURLException;
  * - all words included in a 'ignoreWords' set passed to the constructor,
  * - words that are not in a 'dictionary' map passed to the constructor.
  * <p>
+ * The occurrences of every word on every page are counted in the same pass over the text as the pages (see <code>Indexable</code> getOccurrences),
+ * every worker thread counts them in its own <code>PartialIndex</code> and the counts are added up when the partial indices are merged.
+ * <p>
+ * In the positional mode (see setPositional) it also records the position of every occurrence of every word in a <code>PositionalIndex</code>,
+ * which finds the phrases and the words near each other.
+ * <p>
+ * If a log is set (see setLog), every part of the text indexed by a worker thread is appended to the <code>IndexLog</code>,
+ * so a long text interrupted by a crash is parsed again only from the parts that have not been logged.
+ * <p>
  * All keys in an Indexable map are in lower case.
  */
 public class QueryParser extends Parser {
-	private Set<String> ignoreWords;
-	private Map<String, List<WordDetails>> dictionary;
-	private Indexable indexer = new Index();
+	private TermTable terms;
+	private TermIndex termIndex; // Used unless an Indexable is passed to the constructor
+	private Indexable indexer;
+	private volatile Indexable sealed; // The index sealed when parsing ended
 	private int linesNumber = 40;
+	private int threadsNumber = Runtime.getRuntime().availableProcessors();
+	private int batchSize = 500;
+	private int chunkSize = 8 * 1024 * 1024;
+	private boolean partialIndexes = true;
+	private boolean positional;
+	private PositionalIndex.Builder positions; // Used while parsing in the positional mode
+	private PositionalIndex positionalIndex;
+	private IndexLog log; // The log of the parts of the text, or null
+	private String logName; // The name of the document that the parts are logged with
+	private long wordsTotal;
+	private long parseTime;
 		
 	/**
 	 * Constructs an QueryParser object that is ready for parsing a text or file.
@@ -42,13 +80,51 @@ public class QueryParser extends Parser {
 	 * @param dictionary a map words and word details.
 	 */
 	public QueryParser(Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary) {
+		this(new TermTable(ignoreWords, dictionary));
+	}
+	
+	/**
+	 * Constructs an QueryParser object that is ready for parsing a text or file.
+	 * The words that may be indexed are given as a <code>TermTable</code>, so the same table may be used by many QueryParser objects
+	 * (see <code>DictionaryCache</code>).
+	 * <p>
+	 * The words found in a text are identified by their ids in the TermTable while parsing, no String is created for a word.
+	 * 
+	 * @param terms the words of a 'dictionary' that are not 'ignore words'
+	 */
+	public QueryParser(TermTable terms) {
 		super();
-		this.ignoreWords = ignoreWords;
-		this.dictionary = dictionary;
+		this.terms = terms;
+		this.termIndex = new TermIndex(terms);
 	}
 	
 	/**
-	 * Big-O notation - O(n^2)
+	 * Constructs an QueryParser object that parses a text or file into the given object that is Indexable.
+	 * It may be used to choose the implementation of the Indexable, e.g. <code>CompactIndex</code> for large texts.
+	 * 
+	 * @param ignoreWords a set of words to be ignored during a parsing process
+	 * @param dictionary a map words and word details.
+	 * @param indexer an object that is Indexable, that the words are added to
+	 */
+	public QueryParser(Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary, Indexable indexer) {
+		this(new TermTable(ignoreWords, dictionary), indexer);
+	}
+	
+	/**
+	 * Constructs an QueryParser object that parses a text or file into the given object that is Indexable.
+	 * The words that may be indexed are given as a <code>TermTable</code>.
+	 * 
+	 * @param terms the words of a 'dictionary' that are not 'ignore words'
+	 * @param indexer an object that is Indexable, that the words are added to
+	 */
+	public QueryParser(TermTable terms, Indexable indexer) {
+		super();
+		this.terms = terms;
+		this.indexer = indexer;
+	}
+	
+	/**
+	 * Big-O notation - O(n)
 	 * <p>
 	 * Parses a text file into an object that is Indexable.
 	 * <p>
@@ -57,6 +133,11 @@ public class QueryParser extends Parser {
 	 * It reads the single words from the file or URL.
 	 * If the words is included in 'dictionary' map and not included in 'ignoreWords' set it is added altogether with a corresponding page to the object that is Indexable.
 	 * <p>
+	 * The reading thread groups lines into batches of 'batchSize' lines and hands them over to a fixed pool of 'threadsNumber' workers.
+	 * At most two batches per worker are in flight at any time, so the memory used stays flat regardless of the size of the text.
+	 * The method returns when all the batches have been indexed.
+	 * By default every worker adds the words to its own <code>PartialIndex</code> and the partial indices are merged at the end (see setPartialIndexes).
+	 * <p>
 	 * The default number of lines (lines of text or blank spaces) per page is 40.
 	 * 
 	 * @param br BufferedReader
@@ -67,24 +148,161 @@ public class QueryParser extends Parser {
      * 
      */
 	public void parse(BufferedReader br) throws FileNotFoundException, MalformedURLException, IOException, Exception{
+		long start = System.nanoTime();
+		sealed = null;
+		ExecutorService workers = Executors.newFixedThreadPool(threadsNumber);
+		Semaphore inFlight = new Semaphore(threadsNumber * 2); // Back pressure: the reader waits when the workers fall behind
+		AtomicLong words = new AtomicLong();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		positions = positional ? new PositionalIndex.Builder(terms, linesNumber) : null;
+		final Queue<PartialIndex> partials = new ConcurrentLinkedQueue<PartialIndex>();
+		ThreadLocal<PartialIndex> threadPartial = null;
+		boolean logging = logging();
+		if(partialIndexes && !logging) { // Every worker thread adds the words to its own PartialIndex
+			threadPartial = new ThreadLocal<PartialIndex>() {
+				protected PartialIndex initialValue() {
+					PartialIndex partial = new PartialIndex();
+					partials.add(partial);
+					return partial;
+				}
+			};
+		}
 
-		int lineNumber = 0;
-		int page = 1;
-		String line = null;
-		while((line = br.readLine()) != null) {
-			line = line.toLowerCase().replaceAll("[^A-Za-z0-9 ]", "");
-			String[] words = line.split(" ");
-			for(String s : words) {
-				new Thread(new Task(s, page)).start();
+		try {
+			int lineNumber = 0;
+			int number = 0; // The number of the batch, the part of the text logged
+			List<String> lines = new ArrayList<String>(batchSize);
+			String line = null;
+			while((line = br.readLine()) != null && failure.get() == null) {
+				lines.add(line);
+				if(lines.size() == batchSize) {
+					submit(workers, new Task(lines, lineNumber, number++, words, inFlight, failure, threadPartial, partials));
+					lineNumber += lines.size();
+					lines = new ArrayList<String>(batchSize);
+				}
+			}
+			if(lines.size() > 0) {
+				submit(workers, new Task(lines, lineNumber, number, words, inFlight, failure, threadPartial, partials));
+			}
+		} finally {
+			// Completion barrier: no new batches are accepted and all submitted batches are indexed before returning
+			workers.shutdown();
+			while(!workers.awaitTermination(1, TimeUnit.SECONDS));
+			br.close();
+		}
+		if(failure.get() != null) throw new Exception("Indexing failed", failure.get());
+		if(logging) log.commit(); // The last group of batches
 
-//				if(!ignoreWords.contains(s)) {
-//					if(dictionary.containsKey(s)) indexer.addIndex(s, Integer.valueOf(page), dictionary.get(s));
-//				}
+		if(partialIndexes || logging) { // Reduce: merge the partial indices of all the worker threads
+			PartialIndex merged = PartialIndex.merge(new ArrayList<PartialIndex>(partials));
+			if(termIndex != null) {
+				merged.addTo(termIndex);
+			}else {
+				merged.addTo(indexer, terms);
 			}
-			lineNumber++;
-			if((lineNumber % linesNumber) == 0) page++;
 		}
-		br.close();
+		buildPositionalIndex();
+		sealed = seal();
+		this.wordsTotal = words.get();
+		this.parseTime = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Parses a local text file into an object that is Indexable, reading the file in parallel.
+	 * <p>
+	 * The file is memory-mapped and split into chunks of about 'chunkSize' bytes. A chunk always ends after a new line.
+	 * The chunks are parsed in two parallel passes on a ForkJoinPool of 'threadsNumber' threads:
+	 * - the lines of every chunk are counted, and the number of the first line of every chunk is the sum of the lines of the previous chunks,
+	 * - the words of every chunk are added to a <code>PartialIndex</code> with the pages computed from those line numbers.
+	 * The partial indices are then added to the index in the order of the chunks.
+	 * <p>
+	 * The file must be encoded in UTF-8 (ASCII is UTF-8). The lines end with '\n', '\r' or "\r\n", like the lines read by a BufferedReader,
+	 * so the pages are the same as the pages of the parse method.
+	 * 
+	 * @param path the path of a local text file
+	 * @throws FileNotFoundException if the file does not exist
+	 * @throws IOException if an I/O error occurs
+	 * @throws Exception if indexing fails
+	 */
+	public void parseFile(String path) throws FileNotFoundException, IOException, Exception {
+		long start = System.nanoTime();
+		sealed = null;
+		if(!new File(path).isFile()) throw new FileNotFoundException(path + " (No such file)");
+		ForkJoinPool pool = new ForkJoinPool(threadsNumber);
+		positions = positional ? new PositionalIndex.Builder(terms, linesNumber) : null;
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			List<Long> bounds = new ArrayList<Long>();
+			long size = channel.size();
+			setBytesRead(size);
+			bounds.add(0L);
+			while(bounds.get(bounds.size() - 1) < size) {
+				long chunkStart = bounds.get(bounds.size() - 1);
+				long chunkEnd = lineAligned(channel, Math.min(size, chunkStart + chunkSize));
+				if(chunkEnd - chunkStart > Integer.MAX_VALUE) throw new IOException("A line of " + path + " is too long");
+				bounds.add(chunkEnd);
+			}
+
+			// The file is mapped in regions of at most 2 GB. A chunk is a slice of a region, so the number of mappings stays small.
+			List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+			int first = 0; // The first chunk of the region
+			while(first < bounds.size() - 1) {
+				int last = first + 1;
+				while(last < bounds.size() - 1 && bounds.get(last + 1) - bounds.get(first) <= Integer.MAX_VALUE) last++;
+				long regionStart = bounds.get(first);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, bounds.get(last) - regionStart);
+				for(int i = first; i < last; i++) {
+					ByteBuffer chunk = region.duplicate();
+					chunk.limit((int) (bounds.get(i + 1) - regionStart));
+					chunk.position((int) (bounds.get(i) - regionStart));
+					chunks.add(chunk.slice());
+				}
+				first = last;
+			}
+
+			// The first pass: count the lines of every chunk
+			List<Callable<Integer>> counters = new ArrayList<Callable<Integer>>();
+			for(final ByteBuffer chunk : chunks) {
+				counters.add(new Callable<Integer>() {
+					public Integer call() {
+						int lines = 0;
+						for(int pos = 0; pos < chunk.limit(); pos = nextLine(chunk, lineEnd(chunk, pos))) {
+							lines++;
+						}
+						return lines;
+					}
+				});
+			}
+			List<Future<Integer>> lineCounts = pool.invokeAll(counters);
+
+			// The second pass: index every chunk from its first line, the sum of the lines of the previous chunks
+			List<Chunk> tasks = new ArrayList<Chunk>();
+			int firstLine = 0;
+			for(int i = 0; i < chunks.size(); i++) {
+				tasks.add(new Chunk(chunks.get(i), firstLine, i, bounds.get(i), bounds.get(i + 1)));
+				firstLine += lineCounts.get(i).get();
+			}
+			long words = 0;
+			for(Future<PartialIndex> partial : pool.invokeAll(tasks)) {
+				if(termIndex != null) {
+					partial.get().addTo(termIndex);
+				}else {
+					partial.get().addTo(indexer, terms);
+				}
+			}
+			for(Chunk task : tasks) {
+				words += task.words;
+			}
+			buildPositionalIndex();
+			sealed = seal();
+			this.wordsTotal = words;
+		}catch(ExecutionException exEx) {
+			throw new Exception("Indexing failed", exEx.getCause());
+		}finally {
+			pool.shutdown();
+		}
+		this.parseTime = System.nanoTime() - start;
 	}
 	
 	/** 
@@ -93,12 +311,31 @@ public class QueryParser extends Parser {
 	 * Returns object that is Indexable and contains a map of indices.
 	 * <p>
 	 * A map may be empty if no words were parsed to the object.
+	 * <p>
+	 * The returned object is the sealed (immutable and read-optimized) snapshot of the index built by the parse method.
+	 * The index is sealed once when parsing ends, so every call returns the same snapshot.
+	 * The words added to the Indexable passed to the constructor after parsing are not included.
+	 * In the positional mode its searchLocators method finds the phrases by the positions of the words (see getPositionalIndex).
 	 * 
 	 * @return object that is Indexable and contains a map of indices and WordDetails
 	 * 
 	 */
 	public Indexable getIndexer() {
-		return new Index(indexer.getIndices(), indexer.getWordDefinitions());
+		Indexable temp = sealed;
+		if(temp == null) { // Nothing has been parsed yet
+			temp = seal();
+			sealed = temp;
+		}
+		return temp;
+	}
+
+	/*
+	 * Returns the sealed snapshot of the index, with the positional index of the text in the positional mode.
+	 */
+	private Indexable seal() {
+		Indexable temp = termIndex != null ? termIndex.seal() : indexer.seal();
+		if(positionalIndex != null && temp instanceof SealedIndex) ((SealedIndex) temp).withPositions(positionalIndex);
+		return temp;
 	}
 	
 	/**
@@ -110,27 +347,328 @@ public class QueryParser extends Parser {
 		this.linesNumber = linesNumber;
 	}
 	
+	/**
+	 * Sets the number of worker threads used for indexing.
+	 * The default is the number of available processors.
+	 * 
+	 * @param threadsNumber number of worker threads, must be greater than 0
+	 */
+	public void setThreadsNumber(int threadsNumber) {
+		if(threadsNumber < 1) throw new IllegalArgumentException("The number of threads must be greater than 0");
+		this.threadsNumber = threadsNumber;
+	}
+	
+	/**
+	 * Sets the number of lines that are handed over to a worker thread at once.
+	 * The default is 500 lines.
+	 * 
+	 * @param batchSize number of lines per batch, must be greater than 0
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) throw new IllegalArgumentException("The batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Returns the number of words (tokens) read during the last parsing.
+	 * 
+	 * @return number of words read
+	 */
+	public long getWordsTotal() {
+		return wordsTotal;
+	}
+	
+	/**
+	 * Returns the throughput of the last parsing as the number of words (tokens) read per second.
+	 * <p>
+	 * It returns 0 if nothing has been parsed yet.
+	 * 
+	 * @return words per second
+	 */
+	public double getWordsPerSecond() {
+		if(parseTime == 0) return 0;
+		return wordsTotal * 1_000_000_000.0 / parseTime;
+	}
+	
+	/**
+	 * Sets the number of bytes of a chunk of a file parsed by parseFile.
+	 * The default is 8 MB. A chunk is extended to the end of a line.
+	 * 
+	 * @param chunkSize number of bytes per chunk, must be greater than 0
+	 */
+	public void setChunkSize(int chunkSize) {
+		if(chunkSize < 1) throw new IllegalArgumentException("The chunk size must be greater than 0");
+		this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * Sets the indexing mode of the parse method.
+	 * <p>
+	 * If it is true (the default), every worker thread adds the words to its own <code>PartialIndex</code>, which is not shared,
+	 * and the partial indices are merged when all the lines are parsed (map-reduce).
+	 * If it is false, all the worker threads add the words to the same index, which is synchronized.
+	 * 
+	 * @param partialIndexes true for a partial index per thread, false for a shared index
+	 */
+	public void setPartialIndexes(boolean partialIndexes) {
+		this.partialIndexes = partialIndexes;
+	}
+	
+	/**
+	 * Sets the positional mode. If it is true, the position of every occurrence of every word (its line and its offset in the line) is recorded
+	 * in a <code>PositionalIndex</code> besides the pages, so the phrases and the words near each other can be found (see getPositionalIndex).
+	 * <p>
+	 * It is false by default: the positions take more memory than the pages and they make parsing slower (see PositionalBenchmark).
+	 * 
+	 * @param positional true to record the positions of the words
+	 */
+	public void setPositional(boolean positional) {
+		this.positional = positional;
+	}
+	
+	/**
+	 * Returns the positions of the words of the last parsed text.
+	 * 
+	 * @return the positional index, or null if the text was not parsed in the positional mode
+	 */
+	public PositionalIndex getPositionalIndex() {
+		return positionalIndex;
+	}
+	
+	/**
+	 * Sets the log that the parts of the text are appended to while parsing, so a long text interrupted by a crash is not parsed again from the start.
+	 * <p>
+	 * Every chunk of a file (see parseFile) or batch of lines (see parse) indexed by a worker thread is appended to the log as a part of the document:
+	 * its number, its bounds (the bytes of the chunk or the lines of the batch) and the pages and counts of its words.
+	 * The parts are committed in groups: the chunks committed by the workers at once share one fsync,
+	 * the batches are committed when the reading thread has to wait for a worker and when the text is parsed.
+	 * <p>
+	 * When the same document is parsed again, e.g. after a crash, the parts logged with the same bounds are read from the log instead of being indexed.
+	 * The text must not be changed in the meantime. The lines of a URL are still downloaded, only their words are not indexed again.
+	 * Nothing is logged in the positional mode, as the positions are not logged.
+	 * 
+	 * @param log the log of the corpus, or null not to log the parts
+	 * @param name the name of the document in the corpus, e.g. the path of the file or the URL
+	 */
+	public void setLog(IndexLog log, String name) {
+		this.log = log;
+		this.logName = name;
+	}
+	
+	/*
+	 * Returns true if the parts of the text are logged.
+	 */
+	private boolean logging() {
+		return log != null && !positional;
+	}
+	
+	/*
+	 * Hands the batch over to the workers, unless it is read from the log.
+	 * The batches logged so far are committed before the reading thread waits for a worker, so the fsync does not delay the reading.
+	 */
+	private void submit(ExecutorService workers, Task task) throws IOException, InterruptedException {
+		if(task.fromLog()) return;
+		if(logging() && task.inFlight.availablePermits() == 0) log.commit();
+		task.inFlight.acquire();
+		workers.execute(task);
+	}
+	
+	/*
+	 * Builds the positional index from the positions recorded while parsing, if the positional mode is set.
+	 */
+	private void buildPositionalIndex() {
+		positionalIndex = positions != null ? positions.build() : null;
+		positions = null;
+	}
+	
+	/*
+	 * Returns the position after the first '\n' at or after the given position, or the size of the file if there is no '\n'.
+	 */
+	private static long lineAligned(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(position < channel.size()) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if(read <= 0) break;
+			for(int i = 0; i < read; i++) {
+				if(buffer.get(i) == '\n') return position + i + 1;
+			}
+			position += read;
+		}
+		return channel.size();
+	}
+	
+	/*
+	 * Returns the position of the end of the line ('\r', '\n' or the end of the chunk) starting at the given position.
+	 */
+	private static int lineEnd(ByteBuffer chunk, int pos) {
+		while(pos < chunk.limit()) {
+			byte b = chunk.get(pos);
+			if(b == '\n' || b == '\r') return pos;
+			pos++;
+		}
+		return pos;
+	}
+	
+	/*
+	 * Returns the position of the next line after the end of a line. "\r\n" is one end of a line.
+	 */
+	private static int nextLine(ByteBuffer chunk, int end) {
+		if(end < chunk.limit() && chunk.get(end) == '\r' && end + 1 < chunk.limit() && chunk.get(end + 1) == '\n') return end + 2;
+		return end + 1;
+	}
+	
+	/*
+	 * Private class for the tasks of parseFile. It indexes a chunk of a memory-mapped file into a PartialIndex.
+	 */
+	private class Chunk implements Callable<PartialIndex>, Tokenizer.Handler {
+		private ByteBuffer chunk;
+		private int firstLine;
+		private int number;
+		private long start; // The bounds of the chunk in the file
+		private long end;
+		private PartialIndex partial = new PartialIndex();
+		private PositionalIndex.Part part;
+		private long words;
+		private int page;
+		
+		public Chunk(ByteBuffer chunk, int firstLine, int number, long start, long end) {
+			this.chunk = chunk;
+			this.firstLine = firstLine;
+			this.number = number;
+			this.start = start;
+			this.end = end;
+		}
+		
+		public PartialIndex call() throws IOException {
+			if(logging()) {
+				IndexLog.Part logged = log.getPart(logName, number, start, end, terms);
+				if(logged != null) { // Indexed before a crash
+					words = logged.getWords();
+					return logged.getIndex();
+				}
+			}
+			Tokenizer tokenizer = new Tokenizer();
+			if(positions != null) part = positions.newPart(firstLine);
+			int lineNumber = firstLine;
+			int pos = 0;
+			while(pos < chunk.limit()) {
+				int end = lineEnd(chunk, pos);
+				page = lineNumber / linesNumber + 1;
+				words += tokenizer.tokenize(chunk, pos, end - pos, this);
+				if(part != null) part.endLine();
+				lineNumber++;
+				pos = nextLine(chunk, end);
+			}
+			partial.sort(); // Sorted in parallel, before the partial indices are added in order
+			if(logging()) {
+				log.appendPart(logName, number, start, end, words, partial, terms);
+				log.commit(); // The chunks completed at the same time are committed together
+			}
+			return partial;
+		}
+		
+		public void token(char[] buffer, int offset, int length) {
+			int id = terms.find(buffer, offset, length);
+			if(part != null) part.word(id);
+			if(id >= 0) partial.add(id, page);
+		}
+	}
+	
+	/**
+	 * Returns the throughput of reading the text during the last parsing, in bytes read (downloaded for a URL) per second.
+	 * The time includes parsing, which overlaps reading.
+	 * <p>
+	 * It returns 0 if nothing has been parsed yet.
+	 * 
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		if(parseTime == 0) return 0;
+		return getBytesRead() * 1_000_000_000.0 / parseTime;
+	}
+	
 	/*
-	 * Private class for Threads
+	 * Private class for the worker threads. It indexes a batch of lines.
+	 * The page of a line is computed from its number, so batches may be indexed in any order.
+	 * If the parts are logged, every batch has its own PartialIndex, which is logged and then merged.
 	 */
-	private class Task implements Runnable {
-		private String s;
+	private class Task implements Runnable, Tokenizer.Handler {
+		private List<String> lines;
+		private int firstLine;
+		private int number;
+		private AtomicLong words;
+		private Semaphore inFlight;
+		private AtomicReference<Throwable> failure;
+		private ThreadLocal<PartialIndex> threadPartial;
+		private Queue<PartialIndex> partials;
+		private PartialIndex partial;
+		private PositionalIndex.Part part;
 		private int page;
 		
-		public Task(String s, int page) {
-			this.s = s;
-			this.page = page;
+		public Task(List<String> lines, int firstLine, int number, AtomicLong words, Semaphore inFlight, AtomicReference<Throwable> failure,
+				ThreadLocal<PartialIndex> threadPartial, Queue<PartialIndex> partials) {
+			this.lines = lines;
+			this.firstLine = firstLine;
+			this.number = number;
+			this.words = words;
+			this.inFlight = inFlight;
+			this.failure = failure;
+			this.threadPartial = threadPartial;
+			this.partials = partials;
+		}
+		
+		/*
+		 * Takes the batch from the log if it has been logged, then it is not indexed.
+		 */
+		public boolean fromLog() throws IOException {
+			if(!logging()) return false;
+			IndexLog.Part logged = log.getPart(logName, number, firstLine, firstLine + lines.size(), terms);
+			if(logged == null) return false;
+			words.addAndGet(logged.getWords());
+			partials.add(logged.getIndex());
+			return true;
 		}
 
 		public void run() {
-			addToIndexable();
+			try {
+				long count = 0;
+				int lineNumber = firstLine;
+				Tokenizer tokenizer = new Tokenizer();
+				if(logging()) {
+					partial = new PartialIndex();
+				}else if(threadPartial != null) {
+					partial = threadPartial.get();
+				}
+				if(positions != null) part = positions.newPart(firstLine);
+				for(String line : lines) {
+					page = lineNumber / linesNumber + 1;
+					count += tokenizer.tokenize(line, this);
+					if(part != null) part.endLine();
+					lineNumber++;
+				}
+				words.addAndGet(count);
+				if(logging()) {
+					log.appendPart(logName, number, firstLine, firstLine + lines.size(), count, partial, terms);
+					partials.add(partial);
+				}
+			}catch(Throwable t) {
+				failure.compareAndSet(null, t);
+			}finally {
+				inFlight.release();
+			}
 		}
 		
-		public void addToIndexable() {
-			if(!ignoreWords.contains(s)) {
-				if(dictionary.containsKey(s)) {
-					indexer.addIndex(s, Integer.valueOf(page), dictionary.get(s));
-				}
+		public void token(char[] buffer, int offset, int length) {
+			int id = terms.find(buffer, offset, length); // -1 for 'ignore words' and words that are not in the 'dictionary'
+			if(part != null) part.word(id);
+			if(id < 0) return;
+			if(partial != null) {
+				partial.add(id, page);
+			}else if(termIndex != null) {
+				termIndex.add(id, page);
+			}else {
+				indexer.addIndex(terms.term(id), Integer.valueOf(page), terms.definitions(id));
 			}
 		}
 	}
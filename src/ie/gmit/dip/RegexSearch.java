@@ -0,0 +1,163 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The RegexSearch class is used for searching 'headings' that match a regular expression.
+ * <p>
+ * The regular expression is compiled once and the compiled patterns are cached, so repeated queries do not compile them again.
+ * The search does not test every 'heading' if it is not needed:
+ * - a literal word, e.g. 'java', is looked up directly
+ * - 'a.*' (starting with) scans only the sorted range of 'headings' starting with 'a'
+ * - '.*a' (ending with) scans only the sorted range of reversed 'headings' starting with 'a'
+ * - '.*a.*' (containing) tests every 'heading' with a plain substring search instead of a regular expression
+ * - any other regular expression starting with a literal text scans only the 'headings' starting with that text
+ * <p>
+ * Like the search that matches every 'heading', the regular expression is converted to lower case
+ * and it must match the whole 'heading'.
+ */
+public class RegexSearch {
+	private static final int CACHE_SIZE = 64;
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+	private static final Map<String, Pattern> cache = Collections.synchronizedMap(
+			new LinkedHashMap<String, Pattern>(CACHE_SIZE, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+					return size() > CACHE_SIZE; // Remove the least recently used pattern
+				}
+			});
+
+	/**
+	 * The Terms interface is an abstraction of sorted 'headings' that the search runs against.
+	 */
+	public interface Terms {
+
+		/**
+		 * Returns true if the 'heading' exists.
+		 *
+		 * @param heading a word
+		 * @return true if the 'heading' exists
+		 */
+		public boolean contains(String heading);
+
+		/**
+		 * Returns the 'headings' starting with the prefix in the alphanumeric ascending order.
+		 * All the 'headings' are returned for an empty prefix.
+		 *
+		 * @param prefix a prefix
+		 * @return the 'headings' starting with the prefix
+		 */
+		public Iterable<String> startingWith(String prefix);
+
+		/**
+		 * Returns the reversed 'headings' starting with the reversed suffix, that is the 'headings' ending with the suffix.
+		 * The returned words are reversed.
+		 *
+		 * @param reversedSuffix a suffix written backwards
+		 * @return the reversed 'headings' ending with the suffix
+		 */
+		public Iterable<String> reversedStartingWith(String reversedSuffix);
+	}
+
+	/**
+	 * Creates a new RegexSearch object.
+	 */
+	public RegexSearch() {
+		super();
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + k) for a literal prefix or suffix, where k is the number of scanned 'headings', O(n) otherwise
+	 * <p>
+	 * Returns list of 'headings' matching the regular expression in the alphanumeric ascending order.
+	 *
+	 * @param terms the sorted 'headings'
+	 * @param regex a regular expression
+	 * @return list of 'headings' matching the regular expression. It may be empty
+	 * @throws java.util.regex.PatternSyntaxException if the regular expression is not valid
+	 */
+	public List<String> search(Terms terms, String regex) {
+		regex = regex.toLowerCase();
+		Pattern pattern = compile(regex); // Validates the regular expression in all the cases
+		List<String> tempList = new ArrayList<String>();
+
+		if(isLiteral(regex)) { // 'java'
+			if(terms.contains(regex)) tempList.add(regex);
+		}else if(regex.startsWith(".*") && regex.endsWith(".*") && regex.length() > 4 && isLiteral(regex.substring(2, regex.length() - 2))) { // '.*a.*'
+			String infix = regex.substring(2, regex.length() - 2);
+			for(String heading : terms.startingWith("")) {
+				if(heading.contains(infix)) tempList.add(heading);
+			}
+		}else if(regex.endsWith(".*") && isLiteral(regex.substring(0, regex.length() - 2))) { // 'a.*'
+			for(String heading : terms.startingWith(regex.substring(0, regex.length() - 2))) {
+				tempList.add(heading);
+			}
+		}else if(regex.startsWith(".*") && isLiteral(regex.substring(2))) { // '.*a'
+			String suffix = new StringBuilder(regex.substring(2)).reverse().toString();
+			for(String reversed : terms.reversedStartingWith(suffix)) {
+				tempList.add(new StringBuilder(reversed).reverse().toString());
+			}
+			Collections.sort(tempList);
+		}else { // Any other regular expression: match the 'headings' starting with its literal prefix
+			for(String heading : terms.startingWith(literalPrefix(regex))) {
+				if(pattern.matcher(heading).matches()) tempList.add(heading);
+			}
+		}
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(1) for a cached pattern
+	 * <p>
+	 * Returns the compiled pattern of the regular expression.
+	 * The 64 recently used patterns are cached.
+	 *
+	 * @param regex a regular expression
+	 * @return the compiled pattern
+	 * @throws java.util.regex.PatternSyntaxException if the regular expression is not valid
+	 */
+	public static Pattern compile(String regex) {
+		Pattern pattern = cache.get(regex);
+		if(pattern == null) {
+			pattern = Pattern.compile(regex);
+			cache.put(regex, pattern);
+		}
+		return pattern;
+	}
+
+	/*
+	 * Returns true if the text contains no meta characters of a regular expression.
+	 */
+	private static boolean isLiteral(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			if(META_CHARACTERS.indexOf(text.charAt(i)) >= 0) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Returns the literal text that every match must start with.
+	 * The last literal character is excluded if it is followed by a quantifier, e.g. 'ab' for 'abc?d'.
+	 * The prefix is empty if the regular expression contains an alternative ('|').
+	 */
+	private static String literalPrefix(String regex) {
+		if(regex.indexOf('|') >= 0) return "";
+		int end = 0;
+		while(end < regex.length() && META_CHARACTERS.indexOf(regex.charAt(end)) < 0) {
+			end++;
+		}
+		if(end < regex.length() && end > 0 && "?*+{".indexOf(regex.charAt(end)) >= 0) end--;
+		return regex.substring(0, end);
+	}
+
+}
@@ -0,0 +1,68 @@
+package ie.gmit.dip;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The ScalingBenchmark class compares how the parse method of QueryParser scales with the number of worker threads
+ * when all the threads add the words to one shared index and when every thread adds them to its own <code>PartialIndex</code>.
+ * <p>
+ * The same text is parsed with 1 to N threads in both modes. Every run is repeated and the best throughput is displayed,
+ * with the speedup against the shared index parsed by one thread.
+ * <p>
+ * It is run from the command prompt:
+ * java -cp .\indexer.jar ie.gmit.dip.ScalingBenchmark book.txt [stopwords.txt] [dictionary.csv | dictionary.dict] [threads]
+ */
+public class ScalingBenchmark {
+	private static final int RUNS = 3;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path of the text file, optionally followed by the paths of the ignore words and dictionary files
+	 * 			and the maximum number of threads (the number of available processors by default)
+	 * @throws Exception if a file cannot be parsed
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: ScalingBenchmark book.txt [stopwords.txt] [dictionary.csv | dictionary.dict] [threads]");
+			return;
+		}
+		String book = args[0];
+		String stopwords = args.length > 1 ? args[1] : "./stopwords.txt";
+		String dictionaryFile = args.length > 2 ? args[2] : "./dictionary.csv";
+		int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		TermTable terms = new DictionaryCache().getTermTable(stopwords, dictionaryFile);
+
+		run(terms, book, 1, false); // Warm-up
+		run(terms, book, 1, true);
+		double base = run(terms, book, 1, false);
+
+		System.out.printf("%1$-8s %2$16s %3$8s %4$16s %5$8s%n", "Threads", "Shared (w/s)", "Speedup", "Partial (w/s)", "Speedup");
+		for(int threads = 1; threads <= maxThreads; threads++) {
+			double shared = run(terms, book, threads, false);
+			double partial = run(terms, book, threads, true);
+			System.out.printf("%1$-8d %2$16.0f %3$8.2f %4$16.0f %5$8.2f%n", threads, shared, shared / base, partial, partial / base);
+		}
+	}
+
+	/*
+	 * Parses the text with the given number of threads and mode and returns the best throughput of the runs in words per second.
+	 */
+	private static double run(TermTable terms, String book, int threads, boolean partialIndexes) throws Exception {
+		double best = 0;
+		for(int i = 0; i < RUNS; i++) {
+			QueryParser parser = new QueryParser(terms);
+			parser.setThreadsNumber(threads);
+			parser.setPartialIndexes(partialIndexes);
+			long start = System.nanoTime();
+			parser.parse(parser.openBufferReader(book, false));
+			parser.getIndexer();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			best = Math.max(best, parser.getWordsTotal() / seconds);
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,969 @@
+package ie.gmit.dip;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The SealedIndex is an immutable implementation of Indexable interface that is optimized for queries.
+ * <p>
+ * An index is built in two phases: the words are added during parsing, then the index is only queried.
+ * A mutable index (e.g. <code>Index</code>) is converted to a SealedIndex by its seal method when parsing is completed.
+ * <p>
+ * It stores:
+ * - the 'headings' as a sorted array, a 'heading' is identified by its position in the array
+ * - the 'locators' of all the 'headings' in a single array of ints, with the offset of every 'heading'
+ * - the count of every 'locator' (the number of occurrences of the 'heading' on it) in an array of bytes at the same positions,
+ *   the few counts greater than 254 are kept in two small arrays sorted by their positions, so a count usually takes 1 byte
+ * - the total number of occurrences of every 'heading'
+ * - the lists of 'wordDetails', equal lists are stored once
+ *   (if they are views of a <code>MappedDictionary</code>, only their offsets in the dictionary file are stored,
+ *   the 'wordDetails' are decoded when they are read)
+ * - the 'headings' sorted by frequency and the 'headings' sorted by their reversed text (for searching by the end of a word,
+ *   they are sorted by the first such search)
+ * <p>
+ * A 'heading' is found by a binary search. The queries by frequency read a range of the array sorted by frequency.
+ * It cannot be modified, so the addIndex method throws an <code>UnsupportedOperationException</code>.
+ * It may be given the <code>PositionalIndex</code> of the same text, then searchLocators finds the phrases by the positions of the words.
+ * It is safe to query it from many threads at once.
+ */
+public class SealedIndex implements Indexable {
+	private static final int OVERFLOW = 0xFF; // The byte of a count greater than 254
+	private String[] terms;
+	private int[] offsets; // 'locators' of terms[i] are locators[offsets[i]] to locators[offsets[i + 1] - 1]
+	private int[] locators;
+	private byte[] counts; // counts[j] is the number of occurrences on locators[j], or OVERFLOW
+	private int[] overflowPositions; // the positions of the counts greater than 254 in the ascending order
+	private int[] overflowCounts;
+	private long[] occurrences; // the sum of the counts of terms[i]
+	private List<List<WordDetails>> definitions;
+	private int[] byFrequency; // positions of 'headings' sorted by frequency, then alphanumerically
+	private volatile int[] bySuffix; // positions of 'headings' sorted by their reversed text, built by the first search by the end of a word
+	private NavigableSet<String> headings;
+	private PositionalIndex positions; // The positional index of the same text, or null
+
+	/**
+	 * Big-O notation - O(n log(n) + k), where k is the total number of 'locators'
+	 * <p>
+	 * Constructs a new SealedIndex object with the same 'headings', 'locators' and 'wordDetails' as the given Indexable.
+	 * The given Indexable must not be modified while it is copied.
+	 *
+	 * @param source an object that is Indexable
+	 */
+	public SealedIndex(Indexable source) {
+		super();
+		List<String> tempTerms = new ArrayList<String>(source.indicesTotal());
+		List<List<WordDetails>> tempDefinitions = new ArrayList<List<WordDetails>>(source.indicesTotal());
+		int[] tempOffsets = new int[source.indicesTotal() + 1];
+		int[] tempLocators = new int[16];
+		int[] tempCounts = new int[16];
+		int total = 0;
+		for(String heading : source.getHeadings()) {
+			int[] headingLocators = source.getLocators(heading);
+			int[] headingCounts = countsOf(source, heading, headingLocators);
+			if(total + headingLocators.length > tempLocators.length) {
+				tempLocators = Arrays.copyOf(tempLocators, Math.max(total + headingLocators.length, tempLocators.length * 2));
+				tempCounts = Arrays.copyOf(tempCounts, tempLocators.length);
+			}
+			System.arraycopy(headingLocators, 0, tempLocators, total, headingLocators.length);
+			System.arraycopy(headingCounts, 0, tempCounts, total, headingLocators.length);
+			total += headingLocators.length;
+			if(tempTerms.size() + 1 >= tempOffsets.length) tempOffsets = Arrays.copyOf(tempOffsets, tempOffsets.length * 2);
+			tempTerms.add(heading);
+			tempOffsets[tempTerms.size()] = total;
+			tempDefinitions.add(source.getWordDetails(heading));
+		}
+		init(tempTerms.toArray(new String[0]), Arrays.copyOf(tempOffsets, tempTerms.size() + 1), Arrays.copyOf(tempLocators, total),
+				Arrays.copyOf(tempCounts, total), compact(tempDefinitions));
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where k is the total number of 'locators'
+	 * <p>
+	 * Constructs a new SealedIndex object from the arrays of 'headings', 'locators' and counts.
+	 * The arrays are not copied.
+	 *
+	 * @param terms the 'headings' in the alphanumeric ascending order
+	 * @param offsets the offset of the first 'locator' of every 'heading', followed by the total number of 'locators'
+	 * @param locators the 'locators' of all the 'headings', in the ascending order for every 'heading'
+	 * @param counts the number of occurrences on every 'locator', at the positions of the 'locators'
+	 * @param definitions the lists of 'wordDetails' of every 'heading'
+	 */
+	SealedIndex(String[] terms, int[] offsets, int[] locators, int[] counts, List<List<WordDetails>> definitions) {
+		super();
+		init(terms, offsets, locators, counts, compact(definitions));
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>, because a SealedIndex cannot be modified.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param wordDetails word details
+	 * @return never returns
+	 */
+	public boolean addIndex(String heading, Integer locator, List<WordDetails> wordDetails) {
+		throw new UnsupportedOperationException("The index is sealed");
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>, because a SealedIndex cannot be modified.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @param count the number of occurrences on the 'locator'
+	 * @param wordDetails word details
+	 * @return never returns
+	 */
+	public boolean addIndex(String heading, int locator, int count, List<WordDetails> wordDetails) {
+		throw new UnsupportedOperationException("The index is sealed");
+	}
+
+	/**
+	 * Big-O notation - O(n log(n) + k), where k is the total number of 'locators'
+	 * <p>
+	 * Returns the indices as a map of 'headings' and associated set of 'locators'.
+	 * <p>
+	 * The 'locators' are boxed to Integers, so the method should be used only if a map is needed.
+	 * Use getLocators to read 'locators' of a single 'heading'.
+	 * <p>
+	 * The returned map may be empty.
+	 *
+	 * @return a map of 'headings' and associated set of 'locators'
+	 */
+	public Map<String, Set<Integer>> getIndices() {
+		Map<String, Set<Integer>> temp = new TreeMap<String, Set<Integer>>();
+		for(int i = 0; i < terms.length; i++) {
+			Set<Integer> tempLocators = new TreeSet<Integer>();
+			for(int j = offsets[i]; j < offsets[i + 1]; j++) {
+				tempLocators.add(locators[j]);
+			}
+			temp.put(terms[i], tempLocators);
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(n log(n))
+	 * <p>
+	 * Returns the words definitions as a map of 'headings' and an associated list of 'wordDetails'.
+	 * <p>
+	 * The map is built on every call, so the method should be used only if a map is needed.
+	 * Use getWordDetails to read 'wordDetails' of a single 'heading'.
+	 * <p>
+	 * The returned map may be empty.
+	 *
+	 * @return a map of words definitions
+	 */
+	public Map<String, List<WordDetails>> getWordDefinitions() {
+		Map<String, List<WordDetails>> temp = new TreeMap<String, List<WordDetails>>();
+		for(int i = 0; i < terms.length; i++) {
+			temp.put(terms[i], definitions.get(i));
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the list of 'wordDetails' of the given 'heading'.
+	 *
+	 * @param heading a word
+	 * @return list of 'wordDetails' or null if the 'heading' does not exist
+	 */
+	public List<WordDetails> getWordDetails(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		return i >= 0 ? definitions.get(i) : null;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns a total number of unique 'headings' (words).
+	 *
+	 * @return int a total number of 'headings'
+	 */
+	public int indicesTotal() {
+		return terms.length;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a sorted list of 'headings' in the alphanumeric ascending order.
+	 *
+	 * @return 'headings' in the alphanumeric ascending order
+	 */
+	public List<String> getHeadingsSetAsc() {
+		return new ArrayList<String>(headings);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns a sorted list of 'headings' in the alphanumeric descending order.
+	 *
+	 * @return list of 'headings' in the alphanumeric descending order
+	 */
+	public List<String> getHeadingsSetDesc() {
+		return new ArrayList<String>(headings.descendingSet());
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the 'headings' as a sorted set in the alphanumeric ascending order.
+	 * The returned set is an unmodifiable view of the sorted array of 'headings'.
+	 *
+	 * @return sorted set of 'headings'
+	 */
+	public NavigableSet<String> getHeadings() {
+		return headings;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the 'headings' from 'fromHeading' (inclusive) to 'toHeading' (exclusive) as a sorted set in the alphanumeric ascending order.
+	 * The returned set is an unmodifiable view of the sorted array of 'headings'.
+	 *
+	 * @param fromHeading the lowest 'heading' (inclusive)
+	 * @param toHeading the highest 'heading' (exclusive)
+	 * @return sorted set of 'headings' in the range
+	 */
+	public NavigableSet<String> getHeadingsRange(String fromHeading, String toHeading) {
+		return headings.subSet(fromHeading, true, toHeading, false);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns sorted list of 'headings' in an ascending or descending order.
+	 * The 'headings' with the same frequency are sorted in the alphanumeric ascending order.
+	 *
+	 * @param asc sorts ascending if true
+	 * @return list of 'headings' in the frequency order
+	 */
+	public List<String> sortFrequency(boolean asc) {
+		return getXFrequent(Integer.MAX_VALUE, asc);
+	}
+
+	/**
+	 * Big-O notation - O(k), where k is 'minAmount'
+	 * <p>
+	 * Returns list of 'headings' containing the most or less frequent 'headings' (words).
+	 * The list is in the same order as the one returned by sortFrequency: by frequency, then in the alphanumeric ascending order.
+	 * <p>
+	 * Returns the less frequent 'headings' if the 'lessFrequent' parameter is true. Otherwise returns the most frequent 'headings'.
+	 *
+	 * @param minAmount number of returned 'headings'
+	 * @param lessFrequent if <code>true</code> it returns the less frequent 'headings'. If <code>false</code> it returns the most frequent 'headings'
+	 * @return list of the most or less frequent 'headings'
+	 */
+	public List<String> getXFrequent(int minAmount, boolean lessFrequent) {
+		List<String> tempList = new ArrayList<String>(Math.max(0, Math.min(minAmount, terms.length)));
+		if(lessFrequent) {
+			for(int i = 0; i < byFrequency.length && tempList.size() < minAmount; i++) {
+				tempList.add(terms[byFrequency[i]]);
+			}
+			return tempList;
+		}
+		// From the highest frequency, each group of the same frequency in the alphanumeric ascending order
+		int end = byFrequency.length;
+		while(end > 0 && tempList.size() < minAmount) {
+			int start = firstWithFrequency(frequency(byFrequency[end - 1]));
+			for(int i = start; i < end && tempList.size() < minAmount; i++) {
+				tempList.add(terms[byFrequency[i]]);
+			}
+			end = start;
+		}
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(m log(n)), where m is the number of searched words
+	 * <p>
+	 * Returns list of 'headings' containing the searched words.
+	 *
+	 * @param words words to be searched for in the map of indices
+	 * @return list of headings containing the searched words. It may be empty if no words given as an argument were found
+	 */
+	public List<String> getWord(Set<String> words) {
+		List<String> tempList = new ArrayList<String>();
+		for(String word : words) {
+			if(Arrays.binarySearch(terms, word.toLowerCase()) >= 0) {
+				tempList.add(word);
+			}
+		}
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + k) for 'a.*' and '.*a' patterns, where k is the number of scanned 'headings', O(n) otherwise,
+	 * and O(n log(n)) for sorting the 'headings' by their reversed text by the first '.*a' search
+	 * <p>
+	 * Returns list of 'headings' containing the searched words based on a regex passed to the method as an argument.
+	 * The 'headings' are in the alphanumeric ascending order.
+	 *
+	 * @param regex a regular expression that is used for searching a words in the map of indices
+	 * @return list of 'headings' containing the searched words. The size may be 0 if no words were found
+	 */
+	public List<String> getWordsWithRegex(String regex) {
+		return new RegexSearch().search(new Terms(), regex);
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + k), where k is the number of returned 'headings'
+	 * <p>
+	 * Returns an list o 'headings' containing the searched words based on a frequency passed to the method as an argument.
+	 * The 'headings' are in the alphanumeric ascending order.
+	 *
+	 * @param freq a frequency
+	 * @return an list of 'headings' containing the searched words with the given frequency
+	 */
+	public List<String> getWordsGivenFrequency(int freq) {
+		List<String> tempList = new ArrayList<String>();
+		for(int i = firstWithFrequency(freq); i < byFrequency.length && frequency(byFrequency[i]) == freq; i++) {
+			tempList.add(terms[byFrequency[i]]);
+		}
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the frequency for the given 'heading' (word) that was passed to the method as an argument.
+	 *
+	 * @param heading a word
+	 * @return frequency of the given 'headings'
+	 */
+	public int getFrequency(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		return i >= 0 ? frequency(i) : 0;
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Returns the frequency histogram: a map of frequencies and the number of 'headings' with that frequency.
+	 *
+	 * @return a map of frequencies and number of 'headings' in the ascending order of frequencies
+	 */
+	public SortedMap<Integer, Integer> getFrequencyHistogram() {
+		SortedMap<Integer, Integer> temp = new TreeMap<Integer, Integer>();
+		int start = 0;
+		while(start < byFrequency.length) {
+			int freq = frequency(byFrequency[start]);
+			int end = start;
+			while(end < byFrequency.length && frequency(byFrequency[end]) == freq) end++;
+			temp.put(freq, end - start);
+			start = end;
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + k), where k is the number of 'locators'
+	 * <p>
+	 * Returns the 'locators' of the given 'heading' in the ascending order.
+	 *
+	 * @param heading a word
+	 * @return array of 'locators'. It is empty if the 'heading' does not exist
+	 */
+	public int[] getLocators(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		if(i < 0) return new int[0];
+		return Arrays.copyOfRange(locators, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + k), where k is the number of 'locators'
+	 * <p>
+	 * Returns the counts of the 'locators' of the given 'heading' in the order of the 'locators'.
+	 *
+	 * @param heading a word
+	 * @return array of counts. It is empty if the 'heading' does not exist
+	 */
+	public int[] getCounts(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		if(i < 0) return new int[0];
+		int[] temp = new int[offsets[i + 1] - offsets[i]];
+		for(int j = offsets[i]; j < offsets[i + 1]; j++) {
+			temp[j - offsets[i]] = count(j);
+		}
+		return temp;
+	}
+
+	/**
+	 * Big-O notation - O(log(n) + log(k)), where k is the number of 'locators'
+	 * <p>
+	 * Returns the number of occurrences of the given 'heading' on the given 'locator'.
+	 *
+	 * @param heading a word
+	 * @param locator a page number
+	 * @return number of occurrences, 0 if the 'heading' is not on the 'locator'
+	 */
+	public int getOccurrences(String heading, int locator) {
+		int i = Arrays.binarySearch(terms, heading);
+		if(i < 0) return 0;
+		int j = lowerBound(offsets[i], offsets[i + 1], locator);
+		return j < offsets[i + 1] && locators[j] == locator ? count(j) : 0;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns the total number of occurrences of the given 'heading'.
+	 *
+	 * @param heading a word
+	 * @return number of occurrences, 0 if the 'heading' does not exist
+	 */
+	public long getOccurrences(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		return i >= 0 ? occurrences[i] : 0;
+	}
+
+	/**
+	 * Big-O notation - O(n log(k)), where k is 'amount'
+	 * <p>
+	 * Returns list of the 'headings' with the most occurrences.
+	 * The list is sorted by the number of occurrences in the descending order, then in the alphanumeric ascending order.
+	 * <p>
+	 * A min-heap keeps the positions of the 'amount' 'headings' with the most occurrences found so far, so the 'headings' are not sorted.
+	 *
+	 * @param amount number of returned 'headings'
+	 * @return list of the most occurring 'headings'
+	 */
+	public List<String> getMostOccurring(int amount) {
+		List<String> tempList = new ArrayList<String>();
+		if(amount <= 0) return tempList;
+		// The root of the heap is the 'heading' that would be dropped first: the fewest occurrences, then the last alphanumerically
+		Comparator<Integer> order = new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				if(occurrences[o1] != occurrences[o2]) return Long.compare(occurrences[o1], occurrences[o2]);
+				return o2 - o1;
+			}
+		};
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(Math.max(1, Math.min(amount, terms.length)), order);
+		for(int i = 0; i < terms.length; i++) {
+			if(heap.size() < amount) {
+				heap.add(i);
+			}else if(order.compare(i, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(i);
+			}
+		}
+		while(!heap.isEmpty()) {
+			tempList.add(terms[heap.poll()]);
+		}
+		Collections.reverse(tempList);
+		return tempList;
+	}
+
+	/**
+	 * Big-O notation - O(log(n))
+	 * <p>
+	 * Returns an iterator over the 'locators' of the given 'heading' in the ascending order. The 'locators' are not copied.
+	 *
+	 * @param heading a word
+	 * @return iterator over the 'locators'. It has no 'locators' if the 'heading' does not exist
+	 */
+	public PostingsIterator getLocatorsIterator(String heading) {
+		int i = Arrays.binarySearch(terms, heading);
+		if(i < 0) return IntPostings.iterator(locators, 0, 0);
+		return IntPostings.iterator(locators, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * Big-O notation - O(w k log(K)), where w is the number of words, k is the number of 'locators' of the least frequent word
+	 * and K is the number of 'locators' of the most frequent word
+	 * <p>
+	 * Returns the 'locators' containing all the given 'headings' (AND) in the ascending order.
+	 *
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if there are no words or any of them does not exist
+	 */
+	public int[] getLocatorsAnd(Collection<String> headings) {
+		return new PageQuery(this).and(headings);
+	}
+
+	/**
+	 * Big-O notation - O(w k), where w is the number of words and k is the total number of 'locators' of the words
+	 * <p>
+	 * Returns the 'locators' containing any of the given 'headings' (OR) in the ascending order.
+	 *
+	 * @param headings the words
+	 * @return array of 'locators'. It is empty if none of the words exist
+	 */
+	public int[] getLocatorsOr(Collection<String> headings) {
+		return new PageQuery(this).or(headings);
+	}
+
+	/**
+	 * Big-O notation - O(w^2 k log(K)), where w is the number of words of the phrase
+	 * <p>
+	 * Returns the 'locators' where the given 'headings' may follow each other as a phrase, in the ascending order.
+	 *
+	 * @param headings the words of the phrase in order
+	 * @return array of 'locators' where the phrase may start
+	 */
+	public int[] getLocatorsAdjacent(List<String> headings) {
+		return new PageQuery(this).adjacent(headings);
+	}
+
+	/**
+	 * Big-O notation - O(q w k log(K)), where q is the number of words of the query
+	 * <p>
+	 * Returns the 'locators' matching a Boolean query, see <code>PageQuery</code>.
+	 *
+	 * @param query the query
+	 * @return array of 'locators' in the ascending order. It is empty if no 'locators' match the query
+	 */
+	public int[] searchLocators(String query) {
+		return new PageQuery(this, positions).search(query);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Sets the positional index of the same text, used by searchLocators for the phrases and the words near each other.
+	 * It must be called before the index is shared with other threads, e.g. right after it is built.
+	 *
+	 * @param positions the positional index of the text, or null
+	 * @return this object
+	 */
+	SealedIndex withPositions(PositionalIndex positions) {
+		this.positions = positions;
+		return this;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns this object, as it is already sealed.
+	 *
+	 * @return this object
+	 */
+	public Indexable seal() {
+		return this;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the total number of 'locators' of all the 'headings'.
+	 *
+	 * @return number of 'locators'
+	 */
+	int locatorsTotal() {
+		return locators.length;
+	}
+
+	/**
+	 * Big-O notation - O(n log(k) + m), where k is the number of 'locators' of a 'heading' and m is the number of 'locators' in the range
+	 * <p>
+	 * Returns a new SealedIndex of the 'locators' from 'fromLocator' (inclusive) to 'toLocator' (exclusive), e.g. the pages of one document of a corpus.
+	 * The 'locators' are moved to start from 0: 'fromLocator' is subtracted from them, their counts are kept. The 'headings' without any 'locators' in the range are left out.
+	 *
+	 * @param fromLocator the lowest 'locator' (inclusive)
+	 * @param toLocator the highest 'locator' (exclusive)
+	 * @return a SealedIndex of the range
+	 */
+	SealedIndex slice(int fromLocator, int toLocator) {
+		List<String> tempTerms = new ArrayList<String>();
+		List<List<WordDetails>> tempDefinitions = new ArrayList<List<WordDetails>>();
+		int[] tempOffsets = new int[terms.length + 1];
+		int[] tempLocators = new int[16];
+		int[] tempCounts = new int[16];
+		int total = 0;
+		for(int i = 0; i < terms.length; i++) {
+			int from = lowerBound(offsets[i], offsets[i + 1], fromLocator);
+			int to = lowerBound(from, offsets[i + 1], toLocator);
+			if(from == to) continue;
+			if(total + to - from > tempLocators.length) {
+				tempLocators = Arrays.copyOf(tempLocators, Math.max(total + to - from, tempLocators.length * 2));
+				tempCounts = Arrays.copyOf(tempCounts, tempLocators.length);
+			}
+			for(int j = from; j < to; j++) {
+				tempCounts[total] = count(j);
+				tempLocators[total++] = locators[j] - fromLocator;
+			}
+			tempTerms.add(terms[i]);
+			tempDefinitions.add(definitions.get(i));
+			tempOffsets[tempTerms.size()] = total;
+		}
+		return new SealedIndex(tempTerms.toArray(new String[0]), Arrays.copyOf(tempOffsets, tempTerms.size() + 1),
+				Arrays.copyOf(tempLocators, total), Arrays.copyOf(tempCounts, total), tempDefinitions);
+	}
+
+	/**
+	 * Big-O notation - O(n log(s) + k), where n is the number of 'headings', s is the number of indices and k is the total number of 'locators'
+	 * <p>
+	 * Returns a new SealedIndex with the 'headings' of all the given indices.
+	 * The 'locators' of a 'heading' and their counts are concatenated in the order of the indices, so every index must have greater 'locators' than the previous ones,
+	 * e.g. indices of consecutive ranges of pages.
+	 * <p>
+	 * The indices are merged with a k-way merge: a heap holds the next 'heading' of every index and the lowest 'heading' is taken from the heap.
+	 *
+	 * @param indices the indices in the ascending order of their 'locators'
+	 * @return a SealedIndex of all the indices
+	 */
+	static SealedIndex merge(List<SealedIndex> indices) {
+		SealedIndex[] sources = indices.toArray(new SealedIndex[0]);
+		int termsTotal = 0;
+		int locatorsTotal = 0;
+		for(SealedIndex index : sources) {
+			termsTotal += index.terms.length;
+			locatorsTotal += index.locators.length;
+		}
+		List<String> tempTerms = new ArrayList<String>();
+		List<List<WordDetails>> tempDefinitions = new ArrayList<List<WordDetails>>();
+		int[] tempOffsets = new int[termsTotal + 1];
+		int[] tempLocators = new int[locatorsTotal];
+		int[] tempCounts = new int[locatorsTotal];
+		int total = 0;
+
+		// Min-heap of the indices ordered by their next 'heading', then by their position in the list
+		int[] next = new int[sources.length];
+		int[] heap = new int[sources.length];
+		int heapSize = 0;
+		for(int s = 0; s < sources.length; s++) {
+			if(sources[s].terms.length > 0) heap[heapSize++] = s;
+		}
+		for(int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(heap, heapSize, i, sources, next);
+		}
+		while(heapSize > 0) {
+			String term = sources[heap[0]].terms[next[heap[0]]];
+			List<WordDetails> wordDetails = sources[heap[0]].definitions.get(next[heap[0]]);
+			// The indices with the same 'heading' are taken from the heap in the order of the list, so the 'locators' stay ascending
+			do {
+				int top = heap[0];
+				SealedIndex index = sources[top];
+				int i = next[top]++;
+				System.arraycopy(index.locators, index.offsets[i], tempLocators, total, index.offsets[i + 1] - index.offsets[i]);
+				for(int j = index.offsets[i]; j < index.offsets[i + 1]; j++) {
+					tempCounts[total++] = index.count(j);
+				}
+				if(next[top] == index.terms.length) heap[0] = heap[--heapSize]; // The index is exhausted
+				siftDown(heap, heapSize, 0, sources, next);
+			}while(heapSize > 0 && sources[heap[0]].terms[next[heap[0]]].equals(term));
+			tempTerms.add(term);
+			tempDefinitions.add(wordDetails);
+			tempOffsets[tempTerms.size()] = total;
+		}
+		return new SealedIndex(tempTerms.toArray(new String[0]), Arrays.copyOf(tempOffsets, tempTerms.size() + 1), tempLocators, tempCounts,
+				tempDefinitions);
+	}
+
+	/*
+	 * Moves the index at the position of the heap down until its next 'heading' is not greater than the next 'headings' of its children.
+	 */
+	private static void siftDown(int[] heap, int heapSize, int pos, SealedIndex[] sources, int[] next) {
+		int moved = heap[pos];
+		while(2 * pos + 1 < heapSize) {
+			int child = 2 * pos + 1;
+			if(child + 1 < heapSize && compareHeads(heap[child + 1], heap[child], sources, next) < 0) child++;
+			if(compareHeads(heap[child], moved, sources, next) >= 0) break;
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = moved;
+	}
+
+	/*
+	 * Compares the next 'headings' of two indices. If they are equal, the index that is earlier in the list is lower.
+	 */
+	private static int compareHeads(int source1, int source2, SealedIndex[] sources, int[] next) {
+		int result = sources[source1].terms[next[source1]].compareTo(sources[source2].terms[next[source2]]);
+		return result != 0 ? result : Integer.compare(source1, source2);
+	}
+
+	/*
+	 * Sets the arrays, stores the counts as bytes, sums the counts of every 'heading' and builds the array sorted by frequency.
+	 */
+	private void init(String[] terms, int[] offsets, int[] locators, int[] counts, List<List<WordDetails>> definitions) {
+		this.terms = terms;
+		this.offsets = offsets;
+		this.locators = locators;
+		this.definitions = definitions;
+		this.occurrences = new long[terms.length];
+		this.counts = new byte[counts.length];
+		int overflows = 0;
+		for(int i = 0; i < terms.length; i++) {
+			for(int j = offsets[i]; j < offsets[i + 1]; j++) {
+				occurrences[i] += counts[j];
+				if(counts[j] >= OVERFLOW) overflows++;
+				this.counts[j] = (byte) Math.min(counts[j], OVERFLOW);
+			}
+		}
+		this.overflowPositions = new int[overflows];
+		this.overflowCounts = new int[overflows];
+		overflows = 0;
+		for(int j = 0; j < counts.length && overflows < overflowPositions.length; j++) {
+			if(counts[j] < OVERFLOW) continue;
+			overflowPositions[overflows] = j;
+			overflowCounts[overflows++] = counts[j];
+		}
+		this.headings = new SortedArraySet(terms);
+
+		// Counting sort by frequency. It is stable, so the 'headings' stay in the alphanumeric order within a frequency.
+		int maxFreq = 0;
+		for(int i = 0; i < terms.length; i++) {
+			maxFreq = Math.max(maxFreq, frequency(i));
+		}
+		int[] starts = new int[maxFreq + 2];
+		for(int i = 0; i < terms.length; i++) {
+			starts[frequency(i) + 1]++;
+		}
+		for(int i = 1; i < starts.length; i++) {
+			starts[i] += starts[i - 1];
+		}
+		this.byFrequency = new int[terms.length];
+		for(int i = 0; i < terms.length; i++) {
+			byFrequency[starts[frequency(i)]++] = i;
+		}
+	}
+
+	/*
+	 * Returns the positions of the 'headings' sorted by their reversed text. They are sorted by the first search by the end of a word,
+	 * so the sealed indices and the merged segments that are never searched that way do not sort them.
+	 * Two threads may sort them at once, then both get the same array.
+	 */
+	private int[] bySuffix() {
+		int[] sorted = bySuffix;
+		if(sorted != null) return sorted;
+		// Bottom-up merge sort of the positions, it is stable and does not box them
+		sorted = new int[terms.length];
+		for(int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		int[] temp = new int[terms.length];
+		for(int width = 1; width < sorted.length; width *= 2) {
+			for(int low = 0; low < sorted.length - width; low += 2 * width) {
+				int mid = low + width;
+				int high = Math.min(low + 2 * width, sorted.length);
+				int i = low, j = mid, k = low;
+				while(i < mid && j < high) {
+					temp[k++] = compareSuffixes(terms[sorted[j]], terms[sorted[i]]) < 0 ? sorted[j++] : sorted[i++];
+				}
+				while(i < mid) temp[k++] = sorted[i++];
+				while(j < high) temp[k++] = sorted[j++];
+				System.arraycopy(temp, low, sorted, low, high - low);
+			}
+		}
+		bySuffix = sorted;
+		return sorted;
+	}
+
+	/**
+	 * Big-O notation - O(k), where k is the number of 'locators'
+	 * <p>
+	 * Returns the counts of the given 'locators' of the 'heading' in the order of the 'locators'.
+	 * If 'locators' were added to the 'heading' after the given ones were read, the counts of the given 'locators' are read one by one,
+	 * so the counts always match the 'locators'.
+	 *
+	 * @param source an object that is Indexable
+	 * @param heading a word
+	 * @param locators the 'locators' of the 'heading' read from the source
+	 * @return array of counts of the same length as the 'locators'
+	 */
+	static int[] countsOf(Indexable source, String heading, int[] locators) {
+		int[] counts = source.getCounts(heading);
+		if(counts.length == locators.length) return counts;
+		counts = new int[locators.length];
+		for(int j = 0; j < locators.length; j++) {
+			counts[j] = source.getOccurrences(heading, locators[j]);
+		}
+		return counts;
+	}
+
+	/*
+	 * Returns the count of the 'locator' at the given position in the array of 'locators'.
+	 */
+	private int count(int j) {
+		int count = counts[j] & 0xFF;
+		if(count != OVERFLOW) return count;
+		return overflowCounts[Arrays.binarySearch(overflowPositions, j)];
+	}
+
+	/*
+	 * Returns the frequency of the 'heading' at the given position.
+	 */
+	private int frequency(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	/*
+	 * Returns the first position from 'from' to 'to' in the array of 'locators' with a 'locator' greater than or equal to the given one.
+	 */
+	private int lowerBound(int from, int to, int locator) {
+		while(from < to) {
+			int mid = (from + to) >>> 1;
+			if(locators[mid] < locator) from = mid + 1;
+			else to = mid;
+		}
+		return from;
+	}
+
+	/*
+	 * Returns the first position in the array sorted by frequency with a frequency greater than or equal to the given one.
+	 */
+	private int firstWithFrequency(int freq) {
+		int low = 0;
+		int high = byFrequency.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(frequency(byFrequency[mid]) < freq) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/*
+	 * Compares the reversed 'heading' with the given text without reversing the 'heading'.
+	 */
+	private static int compareReversed(String heading, String text) {
+		int length = Math.min(heading.length(), text.length());
+		for(int i = 0; i < length; i++) {
+			int diff = heading.charAt(heading.length() - 1 - i) - text.charAt(i);
+			if(diff != 0) return diff;
+		}
+		return heading.length() - text.length();
+	}
+
+	/*
+	 * Compares two 'headings' by their reversed text without reversing them.
+	 */
+	private static int compareSuffixes(String heading1, String heading2) {
+		int length = Math.min(heading1.length(), heading2.length());
+		for(int i = 1; i <= length; i++) {
+			int diff = heading1.charAt(heading1.length() - i) - heading2.charAt(heading2.length() - i);
+			if(diff != 0) return diff;
+		}
+		return heading1.length() - heading2.length();
+	}
+
+	/*
+	 * Returns the lists of 'wordDetails' stored in the most compact way.
+	 * If all the lists are views of the same MappedDictionary, only their offsets in the dictionary file are kept.
+	 * Otherwise the equal lists are stored once.
+	 */
+	private static List<List<WordDetails>> compact(List<List<WordDetails>> definitions) {
+		MappedDictionary dictionary = null;
+		int[] entries = new int[definitions.size()];
+		for(int i = 0; i < entries.length; i++) {
+			List<WordDetails> wordDetails = definitions.get(i);
+			entries[i] = -1;
+			if(wordDetails == null) continue;
+			if(dictionary == null) dictionary = MappedDictionary.dictionaryOf(wordDetails);
+			if(dictionary != null) entries[i] = dictionary.entryOf(wordDetails);
+			if(entries[i] < 0) return intern(definitions); // Not a view of the dictionary
+		}
+		if(dictionary == null) return intern(definitions);
+		return new MappedDefinitions(dictionary, entries);
+	}
+
+	/*
+	 * Returns the lists of 'wordDetails' where all the equal lists are replaced by one of them.
+	 */
+	private static List<List<WordDetails>> intern(List<List<WordDetails>> definitions) {
+		Map<List<WordDetails>, List<WordDetails>> interned = new HashMap<List<WordDetails>, List<WordDetails>>();
+		List<List<WordDetails>> temp = new ArrayList<List<WordDetails>>(definitions.size());
+		for(List<WordDetails> wordDetails : definitions) {
+			if(wordDetails == null) {
+				temp.add(null);
+				continue;
+			}
+			List<WordDetails> previous = interned.putIfAbsent(wordDetails, wordDetails);
+			temp.add(previous == null ? wordDetails : previous);
+		}
+		return temp;
+	}
+
+	/*
+	 * The lists of 'wordDetails' stored as the offsets of their entries in a MappedDictionary file.
+	 * A list is created when it is read, the 'wordDetails' are decoded when they are read from the list.
+	 */
+	private static class MappedDefinitions extends AbstractList<List<WordDetails>> {
+		private MappedDictionary dictionary;
+		private int[] entries; // -1 if a 'heading' has no 'wordDetails'
+
+		public MappedDefinitions(MappedDictionary dictionary, int[] entries) {
+			this.dictionary = dictionary;
+			this.entries = entries;
+		}
+
+		public int size() {
+			return entries.length;
+		}
+
+		public List<WordDetails> get(int index) {
+			return entries[index] < 0 ? null : dictionary.definitionsAt(entries[index]);
+		}
+	}
+
+	/*
+	 * The sorted 'headings' used for searching by a regular expression.
+	 */
+	private class Terms implements RegexSearch.Terms {
+
+		public boolean contains(String heading) {
+			return Arrays.binarySearch(terms, heading) >= 0;
+		}
+
+		public Iterable<String> startingWith(String prefix) {
+			if(prefix.isEmpty()) return headings;
+			return headings.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+		}
+
+		public Iterable<String> reversedStartingWith(String reversedSuffix) {
+			// The first 'heading' whose reversed text is not lower than the suffix
+			final int[] bySuffix = bySuffix();
+			int low = 0;
+			int high = bySuffix.length;
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				if(compareReversed(terms[bySuffix[mid]], reversedSuffix) < 0) low = mid + 1;
+				else high = mid;
+			}
+			final int first = low;
+			final String suffix = new StringBuilder(reversedSuffix).reverse().toString();
+			return new Iterable<String>() {
+				public Iterator<String> iterator() {
+					return new Iterator<String>() {
+						private int next = first;
+
+						public boolean hasNext() {
+							return next < bySuffix.length && terms[bySuffix[next]].endsWith(suffix);
+						}
+
+						public String next() {
+							if(!hasNext()) throw new NoSuchElementException();
+							return new StringBuilder(terms[bySuffix[next++]]).reverse().toString();
+						}
+					};
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package ie.gmit.dip;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The SortedArraySet class is an unmodifiable <code>NavigableSet</code> of Strings backed by a sorted array.
+ * <p>
+ * The array must be sorted in the alphanumeric ascending order and must not contain duplicates. It is not copied.
+ * The ranges (subSet, headSet, tailSet) and the descendingSet are views of the same array, so they take O(log(n)) and copy nothing.
+ * Searching (contains, ceiling, floor etc.) uses a binary search.
+ */
+public class SortedArraySet extends AbstractSet<String> implements NavigableSet<String> {
+	private String[] array;
+	private int from; // inclusive
+	private int to; // exclusive
+	private boolean descending;
+
+	/**
+	 * Creates a new SortedArraySet backed by the given sorted array.
+	 *
+	 * @param array an array sorted in the alphanumeric ascending order without duplicates
+	 */
+	public SortedArraySet(String[] array) {
+		this(array, 0, array.length, false);
+	}
+
+	/*
+	 * Creates a view of the range of the array.
+	 */
+	private SortedArraySet(String[] array, int from, int to, boolean descending) {
+		super();
+		this.array = array;
+		this.from = from;
+		this.to = Math.max(from, to);
+		this.descending = descending;
+	}
+
+	public int size() {
+		return to - from;
+	}
+
+	public boolean contains(Object o) {
+		if(!(o instanceof String)) return false;
+		int i = lowerBound((String) o);
+		return i < to && array[i].equals(o);
+	}
+
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = descending ? to - 1 : from;
+
+			public boolean hasNext() {
+				return descending ? next >= from : next < to;
+			}
+
+			public String next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				return descending ? array[next--] : array[next++];
+			}
+		};
+	}
+
+	public Iterator<String> descendingIterator() {
+		return descendingSet().iterator();
+	}
+
+	public NavigableSet<String> descendingSet() {
+		return new SortedArraySet(array, from, to, !descending);
+	}
+
+	public Comparator<? super String> comparator() {
+		return descending ? Collections.reverseOrder() : null;
+	}
+
+	public String first() {
+		if(size() == 0) throw new NoSuchElementException();
+		return descending ? array[to - 1] : array[from];
+	}
+
+	public String last() {
+		if(size() == 0) throw new NoSuchElementException();
+		return descending ? array[from] : array[to - 1];
+	}
+
+	public String lower(String e) {
+		return descending ? element(upperBound(e)) : element(lowerBound(e) - 1);
+	}
+
+	public String floor(String e) {
+		return descending ? element(lowerBound(e)) : element(upperBound(e) - 1);
+	}
+
+	public String ceiling(String e) {
+		return descending ? element(upperBound(e) - 1) : element(lowerBound(e));
+	}
+
+	public String higher(String e) {
+		return descending ? element(lowerBound(e) - 1) : element(upperBound(e));
+	}
+
+	public String pollFirst() {
+		throw new UnsupportedOperationException("The set is unmodifiable");
+	}
+
+	public String pollLast() {
+		throw new UnsupportedOperationException("The set is unmodifiable");
+	}
+
+	public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive) {
+		if(descending) {
+			return new SortedArraySet(array, start(toElement, toInclusive), end(fromElement, fromInclusive), true);
+		}
+		return new SortedArraySet(array, start(fromElement, fromInclusive), end(toElement, toInclusive), false);
+	}
+
+	public NavigableSet<String> headSet(String toElement, boolean inclusive) {
+		if(descending) return new SortedArraySet(array, start(toElement, inclusive), to, true);
+		return new SortedArraySet(array, from, end(toElement, inclusive), false);
+	}
+
+	public NavigableSet<String> tailSet(String fromElement, boolean inclusive) {
+		if(descending) return new SortedArraySet(array, from, end(fromElement, inclusive), true);
+		return new SortedArraySet(array, start(fromElement, inclusive), to, false);
+	}
+
+	public SortedSet<String> subSet(String fromElement, String toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+
+	public SortedSet<String> headSet(String toElement) {
+		return headSet(toElement, false);
+	}
+
+	public SortedSet<String> tailSet(String fromElement) {
+		return tailSet(fromElement, true);
+	}
+
+	/*
+	 * Returns the element at the index or null if the index is out of the range.
+	 */
+	private String element(int i) {
+		return i >= from && i < to ? array[i] : null;
+	}
+
+	/*
+	 * Returns the first index of the range whose element is greater than (or equal to, if inclusive) the given element.
+	 */
+	private int start(String e, boolean inclusive) {
+		return inclusive ? lowerBound(e) : upperBound(e);
+	}
+
+	/*
+	 * Returns the index after the last element of the range that is lower than (or equal to, if inclusive) the given element.
+	 */
+	private int end(String e, boolean inclusive) {
+		return inclusive ? upperBound(e) : lowerBound(e);
+	}
+
+	/*
+	 * Returns the first index in the range whose element is greater than or equal to the given element.
+	 */
+	private int lowerBound(String e) {
+		int low = from;
+		int high = to;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(array[mid].compareTo(e) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/*
+	 * Returns the first index in the range whose element is greater than the given element.
+	 */
+	private int upperBound(String e) {
+		int low = from;
+		int high = to;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(array[mid].compareTo(e) <= 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+}
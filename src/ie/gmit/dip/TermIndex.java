@@ -0,0 +1,115 @@
+package ie.gmit.dip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The TermIndex class collects the 'locators' of words identified by their ids in a <code>TermTable</code>.
+ * <p>
+ * It is used by QueryParser while parsing. The 'locators' of a word are stored in an array at the position of its id,
+ * so adding a 'locator' needs no hashing and no String. The occurrences of a word on every 'locator' are counted by its <code>Postings</code>. The 'headings' and 'wordDetails' are taken from the TermTable
+ * when the index is sealed into a <code>SealedIndex</code>.
+ * <p>
+ * It may be used by many threads at once.
+ */
+public class TermIndex {
+	private TermTable terms;
+	private AtomicReferenceArray<Postings> postings;
+
+	/**
+	 * Creates a new empty TermIndex for the words of the TermTable.
+	 *
+	 * @param terms the words that may be indexed
+	 */
+	public TermIndex(TermTable terms) {
+		super();
+		this.terms = terms;
+		this.postings = new AtomicReferenceArray<Postings>(terms.size());
+	}
+
+	/**
+	 * Big-O notation - O(log(k)), where k is the number of 'locators' of the word
+	 * <p>
+	 * Adds an occurrence on the 'locator' to the word of the given id.
+	 *
+	 * @param id the id of a word in the TermTable
+	 * @param locator a page number
+	 * @return true if the 'locator' was added, false if it already existed
+	 */
+	public boolean add(int id, int locator) {
+		return add(id, locator, 1);
+	}
+
+	/**
+	 * Big-O notation - O(log(k)), where k is the number of 'locators' of the word
+	 * <p>
+	 * Adds the given number of occurrences on the 'locator' to the word of the given id, e.g. the occurrences counted by a <code>PartialIndex</code>.
+	 *
+	 * @param id the id of a word in the TermTable
+	 * @param locator a page number
+	 * @param count the number of occurrences, greater than 0
+	 * @return true if the 'locator' was added, false if it already existed
+	 */
+	public boolean add(int id, int locator, int count) {
+		Postings temp = postings.get(id);
+		if(temp == null) {
+			postings.compareAndSet(id, null, new IntPostings());
+			temp = postings.get(id);
+		}
+		return temp.add(locator, count);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the words that may be indexed.
+	 *
+	 * @return the TermTable
+	 */
+	public TermTable getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Big-O notation - O(n + k), where k is the total number of 'locators'
+	 * <p>
+	 * Returns an immutable SealedIndex of the words that have any 'locators'.
+	 * The words are already sorted by the TermTable, so nothing is sorted except for the frequencies.
+	 * It should be called when no more 'locators' are going to be added.
+	 *
+	 * @return a SealedIndex
+	 */
+	public Indexable seal() {
+		int[] ids = terms.sortedIds();
+		List<String> tempTerms = new ArrayList<String>();
+		List<List<WordDetails>> tempDefinitions = new ArrayList<List<WordDetails>>();
+		int[] offsets = new int[ids.length + 1];
+		int[] locators = new int[16];
+		int[] counts = new int[16];
+		int total = 0;
+		for(int id : ids) {
+			Postings temp = postings.get(id);
+			if(temp == null) continue;
+			int[] headingLocators = temp.toArray();
+			if(total + headingLocators.length > locators.length) {
+				locators = Arrays.copyOf(locators, Math.max(total + headingLocators.length, locators.length * 2));
+				counts = Arrays.copyOf(counts, locators.length);
+			}
+			System.arraycopy(headingLocators, 0, locators, total, headingLocators.length);
+			System.arraycopy(temp.counts(), 0, counts, total, headingLocators.length);
+			total += headingLocators.length;
+			tempTerms.add(terms.term(id));
+			tempDefinitions.add(terms.definitions(id));
+			offsets[tempTerms.size()] = total;
+		}
+		return new SealedIndex(tempTerms.toArray(new String[0]), Arrays.copyOf(offsets, tempTerms.size() + 1),
+				Arrays.copyOf(locators, total), Arrays.copyOf(counts, total), tempDefinitions);
+	}
+
+}
@@ -0,0 +1,298 @@
+package ie.gmit.dip;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The TermTable class is a hash table of the words that may be indexed: the words of a 'dictionary' that are not 'ignore words'.
+ * <p>
+ * Every word (term) has a dense id from 0 to size() - 1. A word is found by the id, so a word found in a text
+ * may be identified by an int instead of a String.
+ * <p>
+ * It uses open addressing with linear probing, so a word is looked up without creating any object.
+ * It may be probed with a range of a char array, e.g. a word passed by the <code>Tokenizer</code>.
+ * Only the words that the Tokenizer can produce (lower case a-z and 0-9) are stored, other words could never be found.
+ * <p>
+ * The characters of all the words are stored in a single array of bytes (the words are ASCII), a String of a word is created when it is first read.
+ * If the 'dictionary' is a <code>MappedDictionary</code>, the words are copied from its key table without decoding them
+ * and only the offsets of the definitions are stored, so creating the table allocates no object per word.
+ * <p>
+ * It cannot be modified after it is created, so it may be shared by many threads.
+ */
+public class TermTable {
+	private byte[] chars; // the characters of all the words
+	private int[] starts; // the word of the id is chars[starts[id]] to chars[starts[id + 1] - 1]
+	private String[] terms; // created by the first call of term
+	private int[] hashes;
+	private List<List<WordDetails>> definitions; // null if the definitions are read from the MappedDictionary
+	private MappedDictionary dictionary;
+	private int[] entries; // the offsets of the definitions in the MappedDictionary
+	private int[] slots; // id + 1 of the term in the slot, 0 if the slot is empty
+	private int mask;
+	private int[] sortedIds;
+
+	/**
+	 * Big-O notation - O(n log(n)), O(n) for a <code>MappedDictionary</code>
+	 * <p>
+	 * Creates a new TermTable of the words of the 'dictionary' that are not in the 'ignoreWords' set.
+	 * <p>
+	 * The words of a MappedDictionary are read from its sorted key table, so they are not sorted again.
+	 *
+	 * @param ignoreWords a set of words to be ignored
+	 * @param dictionary a map of words and word details
+	 */
+	public TermTable(Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary) {
+		super();
+		if(dictionary instanceof MappedDictionary) {
+			initMapped(ignoreWords, (MappedDictionary) dictionary);
+		}else {
+			init(ignoreWords, dictionary);
+		}
+
+		hashes = new int[size()];
+		int capacity = 16;
+		while(capacity < size() * 2) capacity <<= 1; // The load factor is at most 0.5
+		slots = new int[capacity];
+		mask = capacity - 1;
+		for(int id = 0; id < size(); id++) {
+			int hash = 0; // Equal to the hash of a String or a char array of the same characters
+			for(int i = starts[id]; i < starts[id + 1]; i++) {
+				hash = 31 * hash + chars[i];
+			}
+			hashes[id] = hash;
+			int slot = spread(hash) & mask;
+			while(slots[slot] != 0) slot = (slot + 1) & mask;
+			slots[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the number of words.
+	 *
+	 * @return number of words
+	 */
+	public int size() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * Big-O notation - O(1) on average
+	 * <p>
+	 * Returns the id of the word in the range of the array. No object is created.
+	 *
+	 * @param buffer an array containing the word
+	 * @param offset the first character of the word
+	 * @param length the number of characters of the word
+	 * @return the id of the word or -1 if the word is not in the table
+	 */
+	public int find(char[] buffer, int offset, int length) {
+		int hash = 0;
+		for(int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int slot = spread(hash) & mask;
+		for(int id = slots[slot] - 1; id >= 0; id = slots[slot] - 1) {
+			if(hashes[id] == hash && equals(id, buffer, offset, length)) return id;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Big-O notation - O(1) on average
+	 * <p>
+	 * Returns the id of the word.
+	 *
+	 * @param term a word
+	 * @return the id of the word or -1 if the word is not in the table
+	 */
+	public int find(String term) {
+		int hash = term.hashCode();
+		int slot = spread(hash) & mask;
+		for(int id = slots[slot] - 1; id >= 0; id = slots[slot] - 1) {
+			if(hashes[id] == hash && equals(id, term)) return id;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the word of the id. The String is created by the first call and the same String is returned by the following calls.
+	 *
+	 * @param id the id of a word
+	 * @return the word
+	 */
+	public String term(int id) {
+		String term = terms[id];
+		if(term == null) {
+			term = new String(chars, starts[id], starts[id + 1] - starts[id], StandardCharsets.US_ASCII);
+			terms[id] = term; // A String is immutable, so it may be published without a lock
+		}
+		return term;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the list of 'wordDetails' of the word from the 'dictionary'.
+	 * The list of a MappedDictionary is a view of the file, it is created for every call.
+	 *
+	 * @param id the id of a word
+	 * @return list of 'wordDetails'
+	 */
+	public List<WordDetails> definitions(int id) {
+		return definitions != null ? definitions.get(id) : dictionary.definitionsAt(entries[id]);
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the ids of the words sorted by the words in the alphanumeric ascending order.
+	 * The returned array is not copied, so it must not be modified.
+	 *
+	 * @return ids in the alphanumeric order of words
+	 */
+	int[] sortedIds() {
+		return sortedIds;
+	}
+
+	/*
+	 * Stores the words of the map that are not ignored and sorts their ids.
+	 */
+	private void init(Set<String> ignoreWords, Map<String, List<WordDetails>> dictionary) {
+		List<String> tempTerms = new ArrayList<String>(dictionary.size());
+		definitions = new ArrayList<List<WordDetails>>(dictionary.size());
+		int length = 0;
+		for(Map.Entry<String, List<WordDetails>> entry : dictionary.entrySet()) {
+			String term = entry.getKey();
+			if(isToken(term) && !ignoreWords.contains(term)) {
+				tempTerms.add(term);
+				definitions.add(entry.getValue());
+				length += term.length();
+			}
+		}
+		terms = tempTerms.toArray(new String[0]);
+		chars = new byte[length];
+		starts = new int[terms.length + 1];
+		for(int id = 0; id < terms.length; id++) {
+			for(int i = 0; i < terms[id].length(); i++) {
+				chars[starts[id] + i] = (byte) terms[id].charAt(i);
+			}
+			starts[id + 1] = starts[id] + terms[id].length();
+		}
+
+		Integer[] order = new Integer[terms.length];
+		for(int id = 0; id < terms.length; id++) {
+			order[id] = id;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				return terms[o1].compareTo(terms[o2]);
+			}
+		});
+		sortedIds = new int[terms.length];
+		for(int i = 0; i < terms.length; i++) {
+			sortedIds[i] = order[i];
+		}
+	}
+
+	/*
+	 * Copies the words of the key table of the MappedDictionary that are not ignored.
+	 * The key table is sorted by the UTF-8 bytes, which is the alphanumeric order of the ASCII words, so the ids are already sorted.
+	 */
+	private void initMapped(Set<String> ignoreWords, MappedDictionary dictionary) {
+		this.dictionary = dictionary;
+		boolean[] ignored = new boolean[dictionary.size()];
+		for(String word : ignoreWords) {
+			int index = dictionary.indexOf(word);
+			if(index >= 0) ignored[index] = true;
+		}
+		byte[] tempChars = new byte[Math.max(16, dictionary.size() * 8)];
+		int[] tempStarts = new int[dictionary.size() + 1];
+		int[] tempEntries = new int[dictionary.size()];
+		int id = 0;
+		for(int index = 0; index < dictionary.size(); index++) {
+			int length = dictionary.keyLength(index);
+			if(ignored[index] || length == 0) continue;
+			int start = tempStarts[id];
+			if(start + length > tempChars.length) tempChars = Arrays.copyOf(tempChars, Math.max(start + length, tempChars.length * 2));
+			dictionary.keyBytes(index, tempChars, start);
+			if(!isToken(tempChars, start, length)) continue; // The word is overwritten by the next one
+			tempEntries[id] = dictionary.entryAt(index);
+			tempStarts[++id] = start + length;
+		}
+		chars = Arrays.copyOf(tempChars, tempStarts[id]);
+		starts = Arrays.copyOf(tempStarts, id + 1);
+		entries = Arrays.copyOf(tempEntries, id);
+		terms = new String[id];
+		sortedIds = new int[id];
+		for(int i = 0; i < id; i++) {
+			sortedIds[i] = i;
+		}
+	}
+
+	/*
+	 * Returns true if the word contains only the characters that the Tokenizer produces.
+	 */
+	private static boolean isToken(String term) {
+		if(term.isEmpty()) return false;
+		for(int i = 0; i < term.length(); i++) {
+			char c = term.charAt(i);
+			if(Tokenizer.normalize(c) != c) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Returns true if the UTF-8 bytes contain only the characters that the Tokenizer produces, which are ASCII.
+	 */
+	private static boolean isToken(byte[] bytes, int offset, int length) {
+		for(int i = offset; i < offset + length; i++) {
+			if(bytes[i] < 0 || Tokenizer.normalize((char) bytes[i]) != bytes[i]) return false;
+		}
+		return length > 0;
+	}
+
+	/*
+	 * Returns true if the word of the id has the same characters as the range of the array.
+	 */
+	private boolean equals(int id, char[] buffer, int offset, int length) {
+		if(starts[id + 1] - starts[id] != length) return false;
+		for(int i = 0; i < length; i++) {
+			if(chars[starts[id] + i] != buffer[offset + i]) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Returns true if the word of the id has the same characters as the String.
+	 */
+	private boolean equals(int id, String term) {
+		if(starts[id + 1] - starts[id] != term.length()) return false;
+		for(int i = 0; i < term.length(); i++) {
+			if(chars[starts[id] + i] != term.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Spreads the higher bits of the hash to the lower bits, which select the slot.
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+}
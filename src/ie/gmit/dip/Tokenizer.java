@@ -0,0 +1,166 @@
+package ie.gmit.dip;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author  Pawel Zamorski
+ * @version 1.0
+ * @since 1.8
+ *
+ * The Tokenizer class splits a text into words (tokens) without creating Strings or arrays.
+ * <p>
+ * The text is scanned once. The characters are lower-cased in place and every word is passed to a <code>Handler</code>
+ * as a range of a char array, so the handler decides if a String is needed.
+ * <p>
+ * The words are normalized in the same way by all the parsers:
+ * - only a space separates words
+ * - all the characters other than A-Z, a-z and 0-9 are removed, e.g. "don't" is "dont"
+ * - all the words are in lower case
+ * - empty words are not passed to the handler
+ * <p>
+ * A Tokenizer reuses its buffer, so it must not be shared by threads. Create one Tokenizer per thread.
+ */
+public class Tokenizer {
+	private char[] buffer = new char[256];
+
+	/**
+	 * The Handler interface receives the words found by the Tokenizer.
+	 */
+	public interface Handler {
+
+		/**
+		 * Receives a word. The word is the range of the array from 'offset' to 'offset + length' (exclusive).
+		 * <p>
+		 * The array is reused for the following words, so the range must be copied (e.g. to a String) if it is kept.
+		 *
+		 * @param buffer an array containing the word
+		 * @param offset the first character of the word
+		 * @param length the number of characters of the word, greater than 0
+		 */
+		public void token(char[] buffer, int offset, int length);
+	}
+
+	/**
+	 * Creates a new Tokenizer object.
+	 */
+	public Tokenizer() {
+		super();
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Splits the text into words and passes them to the handler.
+	 * The text is copied to the buffer of the Tokenizer, which grows only if the text is longer than any previous one.
+	 *
+	 * @param text a text, e.g. a line
+	 * @param handler a handler receiving the words
+	 * @return the number of words
+	 */
+	public int tokenize(String text, Handler handler) {
+		int length = text.length();
+		if(length > buffer.length) buffer = new char[Math.max(length, buffer.length * 2)];
+		text.getChars(0, length, buffer, 0);
+		return tokenize(buffer, 0, length, handler);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Splits the range of the bytes into words and passes them to the handler.
+	 * The bytes are decoded as UTF-8 into the buffer of the Tokenizer, an invalid sequence of bytes is decoded as U+FFFD (removed).
+	 * The bytes are read with absolute gets, so the position of the ByteBuffer is not changed and it may be shared by threads.
+	 *
+	 * @param bytes bytes containing a text encoded in UTF-8, e.g. a memory-mapped file
+	 * @param offset the first byte of the text
+	 * @param length the number of bytes of the text
+	 * @param handler a handler receiving the words
+	 * @return the number of words
+	 */
+	public int tokenize(ByteBuffer bytes, int offset, int length, Handler handler) {
+		if(length > buffer.length) buffer = new char[Math.max(length, buffer.length * 2)]; // A byte is decoded to one char at most
+		int chars = 0;
+		int end = offset + length;
+		int i = offset;
+		while(i < end) {
+			int b = bytes.get(i) & 0xFF;
+			if(b < 0x80) { // ASCII
+				buffer[chars++] = (char) b;
+				i++;
+				continue;
+			}
+			int size = b >= 0xF8 ? 0 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 0;
+			int codePoint = size == 4 ? b & 0x07 : size == 3 ? b & 0x0F : b & 0x1F;
+			boolean valid = size > 0 && i + size <= end;
+			for(int j = 1; valid && j < size; j++) {
+				int next = bytes.get(i + j) & 0xFF;
+				valid = (next & 0xC0) == 0x80;
+				codePoint = (codePoint << 6) | (next & 0x3F);
+			}
+			if(valid) {
+				buffer[chars++] = codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? (char) codePoint : '\uFFFD';
+				i += size;
+			}else {
+				buffer[chars++] = '\uFFFD';
+				i++;
+			}
+		}
+		return tokenize(buffer, 0, chars, handler);
+	}
+
+	/**
+	 * Big-O notation - O(n)
+	 * <p>
+	 * Splits the range of the array into words and passes them to the handler.
+	 * The range is normalized in place: the words are moved to the beginning of their original position and lower-cased.
+	 *
+	 * @param text an array containing a text
+	 * @param offset the first character of the text
+	 * @param length the number of characters of the text
+	 * @param handler a handler receiving the words
+	 * @return the number of words
+	 */
+	public static int tokenize(char[] text, int offset, int length, Handler handler) {
+		int count = 0;
+		int end = offset + length;
+		int start = offset; // The first character of the current word
+		int next = offset; // The position where the next kept character is written
+		for(int i = offset; i < end; i++) {
+			char c = text[i];
+			if(c == ' ') {
+				if(next > start) {
+					handler.token(text, start, next - start);
+					count++;
+				}
+				start = i + 1;
+				next = start;
+				continue;
+			}
+			char lower = normalize(c);
+			if(lower != 0) text[next++] = lower;
+		}
+		if(next > start) {
+			handler.token(text, start, next - start);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Big-O notation - O(1)
+	 * <p>
+	 * Returns the lower-case character that is kept in a word or 0 if the character is removed.
+	 * A character other than A-Z, a-z and 0-9 is kept only if its lower case is one of them, e.g. the Kelvin sign is 'k'.
+	 *
+	 * @param c a character
+	 * @return a character a-z or 0-9, or 0 if the character is removed
+	 */
+	public static char normalize(char c) {
+		if(c >= 'a' && c <= 'z' || c >= '0' && c <= '9') return c;
+		if(c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+		if(c < 128) return 0;
+		char lower = Character.toLowerCase(c);
+		return lower >= 'a' && lower <= 'z' || lower >= '0' && lower <= '9' ? lower : 0;
+	}
+
+}